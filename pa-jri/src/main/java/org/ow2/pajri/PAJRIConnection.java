@@ -28,34 +28,128 @@ package org.ow2.pajri;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.script.ScriptContext;
 import javax.script.ScriptException;
 
+import org.apache.log4j.Logger;
 import org.ow2.parengine.PARConnection;
+import org.ow2.parengine.PAREngine;
+import org.ow2.parengine.convert.RexpConvert;
+import org.ow2.parengine.util.HeapWatchdog;
 import org.rosuda.REngine.JRI.JRIEngine;
 import org.rosuda.REngine.REXP;
 import org.rosuda.REngine.REXPMismatchException;
 import org.rosuda.REngine.REngineException;
+import org.rosuda.REngine.RList;
 
 
 /**
  * Abstract dialog with JRI sessions.
  *
+ * Between {@link #beginTask(ScriptContext)} and {@link #endTask(ScriptContext)}, variables are assigned, read and
+ * evaluated in a child environment of the global environment, dropped at the end of the task.
+ *
  * @author Activeeon Team
  */
 public class PAJRIConnection implements PARConnection {
 
+    private static final Logger logger = Logger.getLogger(PAJRIConnection.class);
+
+    /**
+     * Name of the global R variable referencing the environment of the running task
+     */
+    public static final String TASK_ENVIRONMENT_VARIABLE = ".pa.task";
+
     private JRIEngine engine;
 
+    /**
+     * environment of the running task, null to use the global environment
+     */
+    private REXP taskEnvironment;
+
+    /**
+     * gc() is called after this number of tasks, 0 to never call it
+     */
+    private int gcInterval;
+
+    private int taskCount = 0;
+
     public PAJRIConnection(JRIEngine engine) {
         this.engine = engine;
     }
 
+    /**
+     * Sets the garbage collection policy applied at the end of each task, collections depending on the memory used
+     * are run by the heap watchdog of the engine
+     *
+     * @param interval number of tasks between two calls to gc(), 0 to disable
+     */
+    public void setGcPolicy(int interval) {
+        this.gcInterval = interval;
+    }
+
+    /**
+     * Brings the interpreter back to a clean state between two tasks, as the embedded R cannot be restarted inside
+     * the JVM: all objects of the global environment are removed, then a full garbage collection is run
+     *
+     * @return the memory still used by R, in megabytes
+     */
+    public double recycle() throws REngineException, REXPMismatchException {
+        engine.parseAndEval("rm(list = ls(globalenv(), all.names = TRUE), envir = globalenv())");
+        return engine.parseAndEval(HeapWatchdog.COLLECT_EXPRESSION).asDouble();
+    }
+
+    /**
+     * Creates the environment of a new task, a child of the global environment
+     */
+    public void beginTask(ScriptContext ctx) {
+        try {
+            taskEnvironment = engine.parseAndEval("assign(\"" + TASK_ENVIRONMENT_VARIABLE +
+                                                  "\", new.env(parent = globalenv()), envir = globalenv())",
+                                                  null,
+                                                  false);
+        } catch (REngineException e) {
+            writeMessageToError(e, ctx);
+        } catch (REXPMismatchException e) {
+            writeExceptionToError(e, ctx);
+        }
+    }
+
+    /**
+     * Drops the environment of the task if any, then applies the garbage collection policy
+     */
+    public void endTask(ScriptContext ctx) {
+        taskCount++;
+        try {
+            if (taskEnvironment != null) {
+                taskEnvironment = null;
+                engine.parseAndEval("rm(\"" + TASK_ENVIRONMENT_VARIABLE + "\", envir = globalenv())");
+            }
+            if (gcInterval > 0 && taskCount % gcInterval == 0) {
+                engine.parseAndEval("invisible(gc())");
+            }
+        } catch (REngineException e) {
+            writeMessageToError(e, ctx);
+        } catch (REXPMismatchException e) {
+            writeExceptionToError(e, ctx);
+        }
+    }
+
+    /**
+     * @return the R expression of the environment in which the task variables are defined
+     */
+    private String environmentExpression() {
+        return taskEnvironment != null ? TASK_ENVIRONMENT_VARIABLE : "globalenv()";
+    }
+
     @Override
     public REXP engineEval(String expr, ScriptContext ctx) {
         try {
-            return engine.parseAndEval(expr);
+            return engine.parseAndEval(expr, taskEnvironment, true);
         } catch (REngineException e) {
             writeMessageToError(e, ctx);
         } catch (REXPMismatchException e) {
@@ -69,7 +163,7 @@ public class PAJRIConnection implements PARConnection {
 
         if (engineCast(engineEval("exists(\"" + variable + "\")", ctx), Boolean.class, ctx)) {
             try {
-                return engine.get(variable, null, true);
+                return engine.get(variable, taskEnvironment, true);
             } catch (REngineException e) {
                 writeMessageToError(e, ctx);
             } catch (REXPMismatchException e) {
@@ -82,12 +176,55 @@ public class PAJRIConnection implements PARConnection {
     @Override
     public void engineSet(String variableName, Object javaValue, ScriptContext ctx) {
         try {
-            engine.assign(variableName, RexpConvert.jobj2rexp(javaValue));
+            engine.assign(variableName, RexpConvert.jobj2rexp(javaValue), taskEnvironment);
         } catch (Exception ex) {
             writeExceptionToError(ex, ctx);
         }
     }
 
+    @Override
+    public <T> T engineAssignAndEval(Map<String, Object> variables, String expr, ScriptContext ctx) {
+        try {
+            StringBuilder command = new StringBuilder();
+            if (!variables.isEmpty()) {
+                Map<String, RuntimeException> failures = new LinkedHashMap<>();
+                engine.assign(PAREngine.PREAMBLE_VARIABLE,
+                              RexpConvert.variables2rexp(variables, failures),
+                              taskEnvironment);
+                for (Map.Entry<String, RuntimeException> failure : failures.entrySet()) {
+                    writeExceptionToError(new IllegalArgumentException("Unable to assign variable " +
+                                                                       failure.getKey(), failure.getValue()), ctx);
+                }
+                command.append("list2env(" + PAREngine.PREAMBLE_VARIABLE + ", envir = " + environmentExpression() +
+                               "); rm(" + PAREngine.PREAMBLE_VARIABLE + ")\n");
+            }
+            command.append(expr);
+            return (T) engine.parseAndEval(command.toString(), taskEnvironment, true);
+        } catch (REngineException e) {
+            writeMessageToError(e, ctx);
+        } catch (Exception e) {
+            writeExceptionToError(e, ctx);
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> engineHarvest(List<String> variables, ScriptContext ctx) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        REXP rexp = engineEval(PAREngine.harvestExpression(variables, environmentExpression()), ctx);
+        if (rexp != null) {
+            try {
+                RList list = rexp.asList();
+                for (int i = 0; i < list.size(); i++) {
+                    values.put(list.keyAt(i), list.at(i));
+                }
+            } catch (REXPMismatchException e) {
+                writeExceptionToError(e, ctx);
+            }
+        }
+        return values;
+    }
+
     @Override
     public <T> T engineCast(Object rvalue, Class<T> type, ScriptContext ctx) {
         try {
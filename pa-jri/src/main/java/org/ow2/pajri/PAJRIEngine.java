@@ -26,25 +26,31 @@
 package org.ow2.pajri;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
 import javax.script.ScriptException;
 
 import org.ow2.parengine.PAREngine;
+import org.ow2.parengine.util.CoalescingWriter;
+import org.ow2.parengine.util.HeapWatchdog;
 import org.ow2.parengine.util.RLibPathConfigurator;
 import org.ow2.proactive.scheduler.common.SchedulerConstants;
-import org.ow2.proactive.scheduler.common.task.flow.FlowScript;
-import org.ow2.proactive.scripting.SelectionScript;
-import org.ow2.proactive.scripting.TaskScript;
 import org.rosuda.REngine.JRI.JRIEngine;
 import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPMismatchException;
 import org.rosuda.REngine.REngine;
 import org.rosuda.REngine.REngineCallbacks;
+import org.rosuda.REngine.REngineException;
 import org.rosuda.REngine.REngineOutputInterface;
 
 import com.google.common.io.CharStreams;
@@ -59,6 +65,58 @@ import com.google.common.io.CharStreams;
  */
 public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineOutputInterface {
 
+    /**
+     * System property giving the maximum number of evaluations waiting for the R interpreter, further evaluations
+     * are rejected
+     */
+    public static final String PAJRI_QUEUE_CAPACITY_PROPERTY = "pajri.queue.capacity";
+
+    /**
+     * System property giving the maximum time in milliseconds an evaluation waits for the R interpreter, 0 to wait
+     * as long as needed
+     */
+    public static final String PAJRI_QUEUE_TIMEOUT_PROPERTY = "pajri.queue.timeout";
+
+    /**
+     * Job variable giving the priority of the task evaluations in the queue of the R interpreter, evaluations of
+     * higher priority are run first (default 0)
+     */
+    public static final String PAJRI_PRIORITY = "pajri.priority";
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * System property used to disable the task environments, and evaluate all tasks in the global environment
+     */
+    public static final String PAJRI_TASK_ENVIRONMENT_PROPERTY = "pajri.task.environment";
+
+    /**
+     * System property giving the number of tasks between two full garbage collections of R (0, the default, to rely
+     * on R only)
+     */
+    public static final String PAJRI_GC_INTERVAL_PROPERTY = "pajri.gc.interval";
+
+    /**
+     * System property giving the R heap size in megabytes above which a full garbage collection of R is run at the
+     * end of a task, and R recycled if it stays above (0, the default, to rely on R only). It is the default value
+     * of {@link PAREngine#HEAP_THRESHOLD_PROPERTY}, which takes precedence.
+     */
+    public static final String PAJRI_GC_THRESHOLD_PROPERTY = "pajri.gc.threshold";
+
+    /**
+     * System property giving the number of console characters buffered before being written to the task output
+     */
+    public static final String PAJRI_CONSOLE_BUFFER_SIZE_PROPERTY = "pajri.console.buffer.size";
+
+    /**
+     * System property giving the maximum time in milliseconds console output stays buffered while R writes
+     */
+    public static final String PAJRI_CONSOLE_BUFFER_DELAY_PROPERTY = "pajri.console.buffer.delay";
+
+    public static final int DEFAULT_CONSOLE_BUFFER_SIZE = 8192;
+
+    public static final long DEFAULT_CONSOLE_BUFFER_DELAY = 200;
+
     private static String tmpDir = System.getProperty("java.io.tmpdir");
 
     private static PAJRIEngine instance;
@@ -68,10 +126,43 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
      */
     private final boolean dumpErrorsIfNotForked;
 
+    private final int consoleBufferSize = Integer.getInteger(PAJRI_CONSOLE_BUFFER_SIZE_PROPERTY,
+                                                             DEFAULT_CONSOLE_BUFFER_SIZE);
+
+    private final long consoleBufferDelay = Long.getLong(PAJRI_CONSOLE_BUFFER_DELAY_PROPERTY,
+                                                         DEFAULT_CONSOLE_BUFFER_DELAY);
+
+    /**
+     * Buffered console output and error, one per stream so that each stream keeps its order
+     */
+    private CoalescingWriter consoleOutput;
+
+    private CoalescingWriter consoleError;
+
+    /**
+     * Copy of the console error when not running inside a forked node
+     */
+    private final CoalescingWriter systemError;
+
+    /**
+     * Memory used by R, sampled after each task when enabled
+     */
+    private final HeapWatchdog heapWatchdog = createHeapWatchdog("PAJRI R heap",
+                                                                Integer.getInteger(PAJRI_GC_THRESHOLD_PROPERTY, 0));
+
+    /**
+     * Owner of the R thread, all evaluations are queued to it
+     */
+    private final RExecutor executor = new RExecutor(Integer.getInteger(PAJRI_QUEUE_CAPACITY_PROPERTY,
+                                                                        DEFAULT_QUEUE_CAPACITY));
+
     protected PAJRIEngine(PAJRIFactory factory) {
         this.factory = factory;
         // Fix for PRC-36: With Scheduling 6.0.1 if script tasks are not forked the error output is lost
         this.dumpErrorsIfNotForked = !isInForkedTask();
+        this.systemError = new CoalescingWriter(new OutputStreamWriter(System.err),
+                                                consoleBufferSize,
+                                                consoleBufferDelay);
     }
 
     /**
@@ -86,6 +177,7 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
             Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
                 @Override
                 public void run() {
+                    instance.executor.close();
                     instance.engine.end();
                 }
             }));
@@ -108,7 +200,9 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
 
         PAJRIEngine instance = new PAJRIEngine(factory);
         try {
-            instance.engine = new PAJRIConnection((JRIEngine) JRIEngine.createEngine(args, instance, false));
+            PAJRIConnection connection = new PAJRIConnection((JRIEngine) JRIEngine.createEngine(args, instance, false));
+            connection.setGcPolicy(Integer.getInteger(PAJRI_GC_INTERVAL_PROPERTY, 0));
+            instance.engine = connection;
         } catch (Exception ex) {
             logger.error("Unable to instantiate the PAJRIEngine", ex);
             throw new IllegalStateException("Unable to instantiate the PAJRIEngine", ex);
@@ -117,23 +211,117 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
         return instance;
     }
 
+    /**
+     * Queues the evaluation to the R thread and waits for its result
+     *
+     * @throws ScriptException if the evaluation failed, or if it could not be queued or did not start in time
+     */
     @Override
-    public Object eval(String script, ScriptContext ctx) throws ScriptException {
+    public Object eval(final String script, final ScriptContext ctx) throws ScriptException {
         // Transfer all bindings from context into the rengine env
         if (ctx == null) {
             throw new ScriptException("No script context specified");
         }
-        Bindings bindings = ctx.getBindings(ScriptContext.ENGINE_SCOPE);
+        final Bindings bindings = ctx.getBindings(ScriptContext.ENGINE_SCOPE);
         if (bindings == null) {
             throw new ScriptException("No bindings specified in the script context");
         }
 
+        try {
+            return executor.execute(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return evalOnRThread(script, ctx, bindings);
+                }
+            }, getPriority(bindings), Long.getLong(PAJRI_QUEUE_TIMEOUT_PROPERTY, 0));
+        } catch (RejectedExecutionException | TimeoutException e) {
+            logger.warn(e.getMessage() + ", " + executor);
+            throw new ScriptException(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptException("Interrupted while waiting for the R interpreter");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScriptException) {
+                throw (ScriptException) e.getCause();
+            }
+            throw new ScriptException(e);
+        }
+    }
+
+    /**
+     * @return the memory metrics of the R interpreter
+     */
+    public HeapWatchdog getHeapWatchdog() {
+        return heapWatchdog;
+    }
+
+    /**
+     * @return the queue of the R interpreter, with its metrics
+     */
+    public RExecutor getExecutor() {
+        return executor;
+    }
+
+    private int getPriority(Bindings bindings) {
         Map<String, Serializable> jobVariables = (Map<String, Serializable>) bindings.get(SchedulerConstants.VARIABLES_BINDING_NAME);
+        Serializable priority = jobVariables == null ? null : jobVariables.get(PAJRI_PRIORITY);
+        if (priority == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(priority.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid " + PAJRI_PRIORITY + " job variable: " + priority);
+            return 0;
+        }
+    }
 
-        Map<String, String> resultMetadata = (Map<String, String>) bindings.get(SchedulerConstants.RESULT_METADATA_VARIABLE);
+    /**
+     * Evaluates the task in its own R environment, dropped once the task is done
+     */
+    private Object evalOnRThread(String script, ScriptContext ctx, Bindings bindings) throws ScriptException {
+        PAJRIConnection connection = (PAJRIConnection) engine;
+        if (Boolean.parseBoolean(System.getProperty(PAJRI_TASK_ENVIRONMENT_PROPERTY, "true"))) {
+            connection.beginTask(ctx);
+        }
+        try {
+            return evalInTask(script, ctx, bindings);
+        } finally {
+            connection.endTask(ctx);
+            if (checkHeap(heapWatchdog, true, ctx)) {
+                recycleWhenDrained(connection);
+            }
+            flushConsole();
+            flushProgress();
+        }
+    }
 
-        Map<String, Serializable> resultMap = (Map<String, Serializable>) bindings.get(SchedulerConstants.RESULT_MAP_BINDING_NAME);
+    /**
+     * Recycles the R interpreter once the tasks already queued are done, the tasks submitted in the meantime wait
+     * for the end of the recycling
+     */
+    private void recycleWhenDrained(final PAJRIConnection connection) {
+        logger.warn(heapWatchdog.getName() + " stays above " + heapWatchdog.getLimit() +
+                    "MB after a full garbage collection, R will be recycled once the queued tasks are done");
+        executor.drain(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    double used = connection.recycle();
+                    if (heapWatchdog.recycled(used)) {
+                        logger.warn("R still uses " + used + "MB after being recycled, it will not be recycled " +
+                                    "again before it uses more than " + heapWatchdog.getLimit() + "MB");
+                    } else {
+                        logger.info("R recycled, it uses " + used + "MB");
+                    }
+                } catch (REngineException | REXPMismatchException e) {
+                    logger.error("Unable to recycle R", e);
+                }
+            }
+        });
+    }
 
+    private Object evalInTask(String script, ScriptContext ctx, Bindings bindings) throws ScriptException {
         // Assign all script task related objects
         prepareExecution(ctx, bindings);
 
@@ -148,17 +336,7 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
             if (this.lastErrorMessage != null) {
                 toThrow = new ScriptException(this.lastErrorMessage);
             }
-            resultValue = retrieveResultVariable(ctx, bindings, rexp);
-
-            retrieveOtherVariable(SelectionScript.RESULT_VARIABLE, ctx, bindings);
-
-            retrieveOtherVariable(FlowScript.loopVariable, ctx, bindings);
-            retrieveOtherVariable(FlowScript.branchSelectionVariable, ctx, bindings);
-            retrieveOtherVariable(FlowScript.replicateRunsVariable, ctx, bindings);
-
-            this.updateJobVariables(jobVariables, ctx);
-            this.updateResultMetadata(resultMetadata, ctx);
-            this.updateResultMap(resultMap, ctx);
+            resultValue = retrieveBindings(rexp, bindings, ctx);
 
             // PRC-32 A ScriptException() must be thrown if the script calls stop() function
             if (toThrow != null) {
@@ -167,6 +345,7 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
 
             return resultValue;
         } catch (Exception e) {
+            flushConsole();
             engine.writeExceptionToError(e, ctx);
             throw new ScriptException(e);
         } finally {
@@ -178,35 +357,6 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
         }
     }
 
-    /**
-     * Retrieve another binding from the engine, such as selection, control flow, etc
-     */
-    private void retrieveOtherVariable(String variableName, ScriptContext ctx, Bindings bindings) {
-        // in case the SelectionScript result is assigned in the engine, retrieve it
-        REXP ssResultRexp = engine.engineGet(variableName, ctx);
-        if (ssResultRexp != null) {
-            bindings.put(variableName, engine.engineCast(ssResultRexp, null, ctx));
-        }
-    }
-
-    private Object retrieveResultVariable(ScriptContext ctx, Bindings bindings, REXP rexp) {
-        Object resultValue;
-        // If the 'result' variable is explicitly defined in the global
-        // environment it is considered as the task result instead of the
-        // result exp
-        REXP resultRexp = engine.engineGet(TaskScript.RESULT_VARIABLE, ctx);
-        if (resultRexp != null) {
-            resultValue = engine.engineCast(resultRexp, null, ctx);
-        } else {
-            resultValue = engine.engineCast(rexp, null, ctx);
-        }
-        if (resultValue == null) {
-            resultValue = true; // TaskResult.getResult() returns true by default
-        }
-        bindings.put(TaskScript.RESULT_VARIABLE, resultValue);
-        return resultValue;
-    }
-
     @Override
     public Object eval(Reader reader, ScriptContext ctx) throws ScriptException {
         String s;
@@ -227,35 +377,61 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
      */
     @Override
     public void RWriteConsole(REngine eng, String text, int oType) {
-        Writer writer = null;
-
         text = filterErrorsAndProgress(text, false);
 
-        if (oType == 0) {
-            writer = getContext().getWriter();
-        } else if (oType == 1) {
-
-            writer = getContext().getErrorWriter();
-
-            // Fix for PRC-36: With Scheduling 6.0.1 if script tasks are not forked the error output is lost
-            // Dump errors if not inside a forked node
-            if (this.dumpErrorsIfNotForked) {
-                System.err.print(text);
-            }
-        }
         try {
-            if (writer != null) {
-                writer.write(text);
-                writer.flush();
+            if (oType == 0) {
+                consoleOutput = coalescing(consoleOutput, getContext().getWriter());
+                consoleOutput.write(text);
+            } else if (oType == 1) {
+                consoleError = coalescing(consoleError, getContext().getErrorWriter());
+                consoleError.write(text);
+
+                // Fix for PRC-36: With Scheduling 6.0.1 if script tasks are not forked the error output is lost
+                // Dump errors if not inside a forked node
+                if (this.dumpErrorsIfNotForked) {
+                    systemError.write(text);
+                }
             }
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         }
     }
 
+    /**
+     * @return the buffer of the given console writer, a new one if the writer changed
+     */
+    private CoalescingWriter coalescing(CoalescingWriter current, Writer target) throws IOException {
+        if (current != null && current.getTarget() == target) {
+            return current;
+        }
+        if (current != null) {
+            current.flush();
+        }
+        return new CoalescingWriter(target, consoleBufferSize, consoleBufferDelay);
+    }
+
+    /**
+     * Writes the buffered console output and error
+     */
+    private void flushConsole() {
+        try {
+            if (consoleOutput != null) {
+                consoleOutput.flush();
+            }
+            if (consoleError != null) {
+                consoleError.flush();
+            }
+            systemError.flush();
+        } catch (IOException e) {
+            logger.warn("Unable to write the R console output", e);
+        }
+    }
+
     // REngineOutputInterface methods
     @Override
     public void RFlushConsole(REngine eng) {
+        flushConsole();
         Writer outWriter = getContext().getWriter();
         Writer errWriter = getContext().getErrorWriter();
         try {
@@ -268,6 +444,7 @@ public class PAJRIEngine extends PAREngine implements REngineCallbacks, REngineO
 
     @Override
     public void RShowMessage(REngine eng, String msg) {
+        flushConsole();
         Writer writer = getContext().getErrorWriter();
         try {
             writer.write(msg);
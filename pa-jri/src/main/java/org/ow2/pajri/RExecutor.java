@@ -0,0 +1,388 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.pajri;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.ow2.parengine.util.DurationStatistics;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+
+/**
+ * Runs all evaluations of the embedded R interpreter on one owned thread.
+ *
+ * Requests wait in a bounded queue, ordered by priority then in arrival order. A request submitted while the queue
+ * is full is rejected immediately, and a request which is not started before its deadline is removed from the
+ * queue. A request which has started always runs to completion, as R evaluations cannot be interrupted.
+ *
+ * A maintenance action of the R interpreter can be run once the queue is drained: new requests wait until the
+ * action is done, while the requests already queued are run before it.
+ *
+ * @author Activeeon Team
+ */
+public class RExecutor {
+
+    private static final Logger logger = Logger.getLogger(RExecutor.class);
+
+    private final PriorityBlockingQueue<Request<?>> queue = new PriorityBlockingQueue<>();
+
+    /**
+     * one permit per free place in the queue
+     */
+    private final Semaphore places;
+
+    private final int capacity;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong expired = new AtomicLong();
+
+    private final DurationStatistics waitStatistics = new DurationStatistics("PAJRI queue wait");
+
+    private final DurationStatistics evaluationStatistics = new DurationStatistics("PAJRI evaluation");
+
+    /**
+     * guards the maintenance action, new requests wait on it while an action is pending
+     */
+    private final Object drainLock = new Object();
+
+    private Runnable drainAction;
+
+    private long drainCount = 0;
+
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity maximum number of requests waiting to be run
+     */
+    public RExecutor(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.places = new Semaphore(this.capacity);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runRequests();
+            }
+        }, "PAJRI R executor");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs a task on the R thread and waits for its result
+     *
+     * @param task     the task to run
+     * @param priority requests of higher priority are run first
+     * @param timeout  maximum time in milliseconds spent in the queue before the task starts, 0 to wait as long as
+     *                 needed
+     * @return the result of the task
+     * @throws RejectedExecutionException if the queue is full or the executor is closed
+     * @throws TimeoutException           if the task did not start before the timeout, a started task is always
+     *                                    waited for
+     * @throws ExecutionException         if the task threw an exception
+     */
+    public <T> T execute(Callable<T> task, int priority, long timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (Thread.currentThread() == thread) {
+            // nested evaluation, from a R callback
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+        awaitDrain(deadline);
+        if (closed) {
+            throw new RejectedExecutionException("The R executor is closed");
+        }
+        if (timeout > 0) {
+            timeout = Math.max(1, deadline - System.currentTimeMillis());
+        }
+        if (!places.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("The R evaluation queue is full (" + capacity + " waiting requests)");
+        }
+        Request<T> request = new Request<>(task, priority, sequence.incrementAndGet());
+        queue.put(request);
+        updateMaxDepth();
+        try {
+            if (timeout <= 0) {
+                return request.get();
+            }
+            try {
+                return request.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (queue.remove(request)) {
+                    // never taken by the R thread, it will not start
+                    request.cancel(false);
+                    places.release();
+                    expired.incrementAndGet();
+                    throw new TimeoutException("The R evaluation did not start after waiting " + timeout +
+                                               "ms in the queue");
+                }
+                // already started, it cannot be interrupted
+                return request.get();
+            }
+        } catch (InterruptedException e) {
+            if (queue.remove(request)) {
+                request.cancel(false);
+                places.release();
+            } else {
+                // already started, the caller gets control back once the evaluation is over
+                try {
+                    Uninterruptibles.getUninterruptibly(request);
+                } catch (ExecutionException | CancellationException ignored) {
+                    // the caller is interrupted, the result is dropped
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the given action on the R thread once all queued requests are done, requests submitted in the meantime
+     * wait until the action is done. Must be called from the R thread, by a running request.
+     */
+    public void drain(Runnable action) {
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("The R queue can only be drained from the R thread");
+        }
+        synchronized (drainLock) {
+            drainAction = action;
+        }
+    }
+
+    /**
+     * Stops the R thread once the running request completes, waiting requests are cancelled
+     */
+    public void close() {
+        closed = true;
+        synchronized (drainLock) {
+            drainLock.notifyAll();
+        }
+        thread.interrupt();
+        Request<?> request;
+        while ((request = queue.poll()) != null) {
+            request.cancel(false);
+            places.release();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting to be run
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of requests rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of requests removed from the queue because they did not start before their timeout
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * @return the number of maintenance actions run after draining the queue
+     */
+    public long getDrainCount() {
+        synchronized (drainLock) {
+            return drainCount;
+        }
+    }
+
+    /**
+     * @return statistics of the time spent by the requests in the queue
+     */
+    public DurationStatistics getWaitStatistics() {
+        return waitStatistics;
+    }
+
+    /**
+     * @return statistics of the time spent running the requests
+     */
+    public DurationStatistics getEvaluationStatistics() {
+        return evaluationStatistics;
+    }
+
+    @Override
+    public String toString() {
+        return "RExecutor[depth=" + getQueueDepth() + ", max depth=" + getMaxQueueDepth() + ", rejected=" +
+               getRejectedCount() + ", expired=" + getExpiredCount() + ", " + waitStatistics + ", " +
+               evaluationStatistics + "]";
+    }
+
+    private void runRequests() {
+        while (!closed) {
+            Request<?> request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            places.release();
+            if (!request.isCancelled() && !request.isStarted()) {
+                long start = System.nanoTime();
+                waitStatistics.record(start - request.submitted);
+                request.run();
+                evaluationStatistics.record(System.nanoTime() - start);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("R request completed, " + this);
+                }
+            }
+            runDrainAction();
+        }
+    }
+
+    /**
+     * Waits until no maintenance action is pending
+     *
+     * @param deadline time after which the request expires, 0 to wait as long as needed
+     */
+    private void awaitDrain(long deadline) throws InterruptedException, TimeoutException {
+        synchronized (drainLock) {
+            while (drainAction != null && !closed) {
+                if (deadline == 0) {
+                    drainLock.wait();
+                    continue;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    expired.incrementAndGet();
+                    throw new TimeoutException("The R evaluation did not start before its timeout, the R queue is " +
+                                               "being drained");
+                }
+                drainLock.wait(remaining);
+            }
+        }
+    }
+
+    /**
+     * Runs the pending maintenance action if all queued requests are done
+     */
+    private void runDrainAction() {
+        Runnable action;
+        synchronized (drainLock) {
+            action = drainAction;
+        }
+        if (action == null || !queue.isEmpty()) {
+            return;
+        }
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.error("Error during the maintenance of the R interpreter", e);
+        } finally {
+            synchronized (drainLock) {
+                drainAction = null;
+                drainCount++;
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    private void updateMaxDepth() {
+        int depth = queue.size();
+        int max;
+        do {
+            max = maxDepth.get();
+        } while (depth > max && !maxDepth.compareAndSet(max, depth));
+    }
+
+    private static final class Request<T> extends FutureTask<T> implements Comparable<Request<?>> {
+
+        final int priority;
+
+        final long order;
+
+        final long submitted = System.nanoTime();
+
+        /**
+         * set by the R thread when the request starts, the request then runs to completion
+         */
+        private final AtomicBoolean started = new AtomicBoolean(false);
+
+        Request(Callable<T> task, int priority, long order) {
+            super(task);
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                super.run();
+            }
+        }
+
+        boolean isStarted() {
+            return started.get();
+        }
+
+        @Override
+        public int compareTo(Request<?> other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.pajri.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.pajri.RExecutor;
+
+
+/**
+ * Checks the ordering, back-pressure, deadlines and draining of the R executor, without R.
+ *
+ * @author Activeeon Team
+ */
+public class TestRExecutor {
+
+    private RExecutor executor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    private final List<Integer> order = new CopyOnWriteArrayList<>();
+
+    @After
+    public void close() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    public void requestsRunByPriorityThenInArrivalOrder() throws Exception {
+        executor = new RExecutor(10);
+        block();
+        List<Thread> callers = Arrays.asList(submit(1, 0), submit(2, 0), submit(3, 5), submit(4, 0));
+        waitForDepth(4);
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+        assertEquals(Arrays.asList(3, 1, 2, 4), order);
+        assertEquals(4, executor.getMaxQueueDepth());
+        assertEquals(5, executor.getEvaluationStatistics().getCount());
+    }
+
+    @Test
+    public void requestsAreRejectedWhenTheQueueIsFull() throws Exception {
+        executor = new RExecutor(1);
+        block();
+        submit(1, 0);
+        waitForDepth(1);
+        try {
+            executor.execute(record(2), 0, 0);
+            fail("The request must be rejected");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, executor.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void requestsExpireWhenNotStartedInTime() throws Exception {
+        executor = new RExecutor(10);
+        block();
+        try {
+            executor.execute(record(1), 0, 100);
+            fail("The request must expire");
+        } catch (TimeoutException e) {
+            assertEquals(1, executor.getExpiredCount());
+            assertEquals(0, executor.getQueueDepth());
+        }
+        release.countDown();
+        assertEquals(Integer.valueOf(2), executor.execute(record(2), 0, 1000));
+        assertEquals(Arrays.asList(2), order);
+    }
+
+    @Test
+    public void startedRequestsAreWaitedForAfterTheirTimeout() throws Exception {
+        executor = new RExecutor(10);
+        long start = System.currentTimeMillis();
+        Integer result = executor.execute(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Thread.sleep(500);
+                return 1;
+            }
+        }, 0, 100);
+        assertEquals(Integer.valueOf(1), result);
+        assertTrue(System.currentTimeMillis() - start >= 500);
+        assertEquals(0, executor.getExpiredCount());
+    }
+
+    @Test
+    public void interruptedCallersWaitForTheirStartedRequest() throws Exception {
+        executor = new RExecutor(10);
+        final CountDownLatch running = new CountDownLatch(1);
+        final List<String> events = new CopyOnWriteArrayList<>();
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            running.countDown();
+                            release.await();
+                            events.add("done");
+                            return null;
+                        }
+                    }, 0, 0);
+                } catch (InterruptedException e) {
+                    events.add("interrupted");
+                } catch (Exception e) {
+                    events.add("failed");
+                }
+            }
+        });
+        caller.start();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        Thread.sleep(100);
+        assertTrue("The caller must wait for the running request", events.isEmpty());
+        release.countDown();
+        caller.join(5000);
+        assertEquals(Arrays.asList("done", "interrupted"), events);
+    }
+
+    @Test
+    public void failuresAreGivenToTheCaller() throws Exception {
+        executor = new RExecutor(10);
+        try {
+            executor.execute(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    throw new IllegalStateException("failure");
+                }
+            }, 0, 0);
+            fail("The failure must be given to the caller");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void drainActionRunsAfterQueuedRequests() throws Exception {
+        executor = new RExecutor(10);
+        block();
+        final List<Thread> late = new CopyOnWriteArrayList<>();
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            order.add(9);
+                            executor.drain(new Runnable() {
+                                @Override
+                                public void run() {
+                                    order.add(0);
+                                }
+                            });
+                            // submitted while the drain is pending, it waits for the drain action
+                            Thread caller = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        executor.execute(record(3), 0, 0);
+                                    } catch (Exception e) {
+                                        // the test fails on the ordering
+                                    }
+                                }
+                            });
+                            late.add(caller);
+                            caller.start();
+                            return null;
+                        }
+                    }, 5, 0);
+                } catch (Exception e) {
+                    // the test fails on the ordering
+                }
+            }
+        });
+        drainer.start();
+        waitForDepth(1);
+        List<Thread> callers = Arrays.asList(submit(1, 0), submit(2, 0));
+        release.countDown();
+        drainer.join(5000);
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+        late.get(0).join(5000);
+        assertEquals(Arrays.asList(9, 1, 2, 0, 3), order);
+        assertEquals(1, executor.getDrainCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void drainIsOnlyAllowedFromTheRThread() {
+        executor = new RExecutor(10);
+        executor.drain(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * Occupies the R thread until the release latch is opened
+     */
+    private void block() throws Exception {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            blocked.countDown();
+                            release.await();
+                            return null;
+                        }
+                    }, 0, 0);
+                } catch (Exception e) {
+                    // the test fails on the ordering
+                }
+            }
+        }).start();
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    }
+
+    private Thread submit(final int id, final int priority) throws Exception {
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(record(id), priority, 0);
+                } catch (Exception e) {
+                    // the test fails on the ordering
+                }
+            }
+        });
+        int depth = executor.getQueueDepth();
+        caller.start();
+        waitForDepth(depth + 1);
+        return caller;
+    }
+
+    private Callable<Integer> record(final int id) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                order.add(id);
+                return id;
+            }
+        };
+    }
+
+    private void waitForDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueueDepth() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(depth, executor.getQueueDepth());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.pajri.tests;
+
+import java.io.Serializable;
+
+import org.apache.log4j.BasicConfigurator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.pajri.PAJRIEngine;
+import org.ow2.pajri.PAJRIFactory;
+import org.ow2.proactive.scripting.ScriptResult;
+import org.ow2.proactive.scripting.SimpleScript;
+import org.ow2.proactive.scripting.TaskScript;
+
+
+/**
+ * Objects created by a task are not visible from the following tasks of the embedded interpreter.
+ *
+ * @author Activeeon Team
+ */
+public class TestTaskEnvironment {
+
+    @After
+    public void clearProperties() {
+        System.clearProperty(PAJRIEngine.PAJRI_TASK_ENVIRONMENT_PROPERTY);
+    }
+
+    @Test
+    public void objectsAreDroppedAfterTheTask() throws Exception {
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure();
+        Assert.assertEquals(Boolean.TRUE, execute("big <- numeric(1e6); result <- exists('big')"));
+        Assert.assertEquals(Boolean.FALSE, execute("result <- exists('big')"));
+    }
+
+    @Test
+    public void globalEnvironmentCanBeRestored() throws Exception {
+        System.setProperty(PAJRIEngine.PAJRI_TASK_ENVIRONMENT_PROPERTY, "false");
+        execute("kept <- 1; result <- TRUE");
+        Assert.assertEquals(Boolean.TRUE, execute("result <- exists('kept'); rm(kept); result"));
+    }
+
+    private Serializable execute(String rScript) throws Exception {
+        ScriptResult<Serializable> res = new TaskScript(new SimpleScript(rScript, PAJRIFactory.ENGINE_NAME)).execute();
+        return res.getResult();
+    }
+}
@@ -26,6 +26,8 @@
 package org.ow2.parengine;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
 
 import javax.script.ScriptContext;
 import javax.script.ScriptException;
@@ -68,6 +70,28 @@ public interface PARConnection {
      */
     void engineSet(String variableName, Object javaValue, ScriptContext ctx);
 
+    /**
+     * Assigns all the given variables in the R engine and then evaluates the given expression, using a single
+     * transfer for all values and a single evaluation
+     *
+     * @param variables map of variable names to java values, converted to R
+     * @param expr      expression evaluated once the variables are assigned
+     * @param ctx
+     * @param <T>       return type expected
+     * @return the result of the expression
+     */
+    <T> T engineAssignAndEval(Map<String, Object> variables, String expr, ScriptContext ctx);
+
+    /**
+     * Reads all the given variables in the R engine with a single evaluation
+     *
+     * @param variables names of the variables to read
+     * @param ctx
+     * @return map of variable names to R values (to be converted with engineCast), containing only the variables
+     * present in the R engine
+     */
+    Map<String, Object> engineHarvest(List<String> variables, ScriptContext ctx);
+
     /**
      * Casts the given rObject value (received from eval or get calls) into a Java object
      *
@@ -31,7 +31,10 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.script.AbstractScriptEngine;
@@ -42,12 +45,18 @@ import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 
 import org.apache.log4j.Logger;
+import org.ow2.parengine.convert.RexpConvert;
+import org.ow2.parengine.data.RSerialized;
+import org.ow2.parengine.util.HeapWatchdog;
+import org.ow2.parengine.util.ProgressReporter;
 import org.ow2.proactive.scheduler.common.SchedulerConstants;
 import org.ow2.proactive.scheduler.common.task.TaskResult;
+import org.ow2.proactive.scheduler.common.task.flow.FlowScript;
 import org.ow2.proactive.scheduler.core.properties.PASchedulerProperties;
 import org.ow2.proactive.scheduler.task.SchedulerVars;
 import org.ow2.proactive.scripting.Script;
-import org.ow2.proactive.scripting.helper.progress.ProgressFile;
+import org.ow2.proactive.scripting.SelectionScript;
+import org.ow2.proactive.scripting.TaskScript;
 
 
 /**
@@ -59,6 +68,11 @@ public abstract class PAREngine extends AbstractScriptEngine {
 
     public static final String TASK_PROGRESS_MSG = "TaskProgress";
 
+    /**
+     * Start of the console record sent by the R progress function, followed by the progress value
+     */
+    private static final String TASK_PROGRESS_RECORD = TASK_PROGRESS_MSG + "=";
+
     public static final String ERROR_TAG_BEGIN = "<PARError>";
 
     public static final String ERROR_TAG_END = "</PARError>";
@@ -68,6 +82,85 @@ public abstract class PAREngine extends AbstractScriptEngine {
      */
     public static final String NODE_DATASPACE_SCRATCHDIR = "node.dataspace.scratchdir";
 
+    /**
+     * System property used to disable the batched task preamble, and go back to one engine call per binding
+     */
+    public static final String BATCHED_PREAMBLE_PROPERTY = "pa.rengine.preamble.batched";
+
+    /**
+     * Name of the temporary R variable containing all bindings sent by the batched preamble
+     */
+    public static final String PREAMBLE_VARIABLE = ".pa.preamble";
+
+    /**
+     * System property used to store the task results as serialized R values (see {@link RSerialized}), which the
+     * following R tasks unserialize without decoding them into java objects
+     */
+    public static final String SERIALIZED_RESULTS_PROPERTY = "pa.rengine.results.serialized";
+
+    /**
+     * System property used to stage the results of the parent tasks in the task local space, the "results" list
+     * of the script then reads each result when it is accessed
+     */
+    public static final String LAZY_RESULTS_PROPERTY = "pa.rengine.results.lazy";
+
+    /**
+     * System property giving the minimum time in milliseconds between two writes of the task progress file, the
+     * progress reported in between is coalesced
+     */
+    public static final String PROGRESS_INTERVAL_PROPERTY = "pa.rengine.progress.interval";
+
+    public static final long DEFAULT_PROGRESS_INTERVAL = 500;
+
+    /**
+     * System property used to sample the memory used by R after each evaluation, see {@link HeapWatchdog}
+     */
+    public static final String HEAP_WATCHDOG_PROPERTY = "pa.rengine.heap.watchdog";
+
+    /**
+     * System property giving the memory used by R, in megabytes, above which the engine runs a full garbage
+     * collection then recycles the R interpreter between tasks. Setting it also enables the sampling.
+     */
+    public static final String HEAP_THRESHOLD_PROPERTY = "pa.rengine.heap.threshold";
+
+    /**
+     * Name under which the harvest expression gives the serialized value of the result variable
+     */
+    public static final String SERIALIZED_RESULT_VARIABLE = ".pa.result.serialized";
+
+    /**
+     * Bindings, other than the result, which the script may define and which are given back to the scheduler
+     */
+    private static final List<String> OTHER_VARIABLES = Arrays.asList(SelectionScript.RESULT_VARIABLE,
+                                                                      FlowScript.loopVariable,
+                                                                      FlowScript.branchSelectionVariable,
+                                                                      FlowScript.replicateRunsVariable);
+
+    /**
+     * All variables read from the engine after the script evaluation
+     */
+    private static final List<String> HARVESTED_VARIABLES = Arrays.asList(TaskScript.RESULT_VARIABLE,
+                                                                          SelectionScript.RESULT_VARIABLE,
+                                                                          FlowScript.loopVariable,
+                                                                          FlowScript.branchSelectionVariable,
+                                                                          FlowScript.replicateRunsVariable,
+                                                                          SchedulerConstants.VARIABLES_BINDING_NAME,
+                                                                          SchedulerConstants.RESULT_METADATA_VARIABLE,
+                                                                          SchedulerConstants.RESULT_MAP_BINDING_NAME);
+
+    /**
+     * Variables read from the engine after the script evaluation when the results are serialized, the result
+     * variable is read as a serialized value
+     */
+    private static final List<String> SERIALIZED_HARVESTED_VARIABLES = Arrays.asList(SERIALIZED_RESULT_VARIABLE,
+                                                                                     SelectionScript.RESULT_VARIABLE,
+                                                                                     FlowScript.loopVariable,
+                                                                                     FlowScript.branchSelectionVariable,
+                                                                                     FlowScript.replicateRunsVariable,
+                                                                                     SchedulerConstants.VARIABLES_BINDING_NAME,
+                                                                                     SchedulerConstants.RESULT_METADATA_VARIABLE,
+                                                                                     SchedulerConstants.RESULT_MAP_BINDING_NAME);
+
     /**
      * logger
      */
@@ -85,6 +178,11 @@ public abstract class PAREngine extends AbstractScriptEngine {
      */
     protected String taskProgressFile;
 
+    /**
+     * Writer of the task progress file, null if the task has no progress file
+     */
+    protected ProgressReporter progressReporter;
+
     /**
      * The last error message generated by a call to stop() or an error
      */
@@ -97,6 +195,13 @@ public abstract class PAREngine extends AbstractScriptEngine {
 
     private boolean readError = false;
 
+    /**
+     * Bindings and setup expressions recorded while preparing a batched preamble, null when not batching
+     */
+    private Map<String, Object> preambleBindings;
+
+    private StringBuilder preambleSetup;
+
     protected static boolean isInForkedTask() {
         return "true".equals(System.getProperty(PASchedulerProperties.TASK_FORK.getKey()));
     }
@@ -118,69 +223,196 @@ public abstract class PAREngine extends AbstractScriptEngine {
         return new SimpleBindings();
     }
 
+    /**
+     * @return true if the task preamble must be sent to the engine in a single call
+     */
+    protected boolean isBatchedPreamble() {
+        return Boolean.parseBoolean(System.getProperty(BATCHED_PREAMBLE_PROPERTY, "true"));
+    }
+
+    /**
+     * Assigns a preamble variable, or records it if the preamble is batched
+     */
+    protected void preambleSet(String variableName, Object javaValue, ScriptContext ctx) {
+        if (preambleBindings != null) {
+            preambleBindings.put(variableName, javaValue);
+        } else {
+            engine.engineSet(variableName, javaValue, ctx);
+        }
+    }
+
+    /**
+     * @return true if the task result must be stored as a serialized R value
+     */
+    protected boolean isSerializedResults() {
+        return Boolean.getBoolean(SERIALIZED_RESULTS_PROPERTY);
+    }
+
+    /**
+     * @return true if the results of the parent tasks must be staged and read when accessed by the script
+     */
+    protected boolean isLazyResults() {
+        return Boolean.getBoolean(LAZY_RESULTS_PROPERTY);
+    }
+
+    /**
+     * @return true if the engine runs on this node and can read the files of its local space
+     */
+    protected boolean isLocalSpaceShared() {
+        return true;
+    }
+
+    /**
+     * Evaluates a preamble expression, or records it if the preamble is batched
+     *
+     * @return the evaluation result, or null if the expression was recorded
+     */
+    protected <T> T preambleEval(String expr, ScriptContext ctx) {
+        if (preambleSetup != null) {
+            preambleSetup.append(expr).append('\n');
+            return null;
+        } else {
+            return engine.engineEval(expr, ctx);
+        }
+    }
+
+    /**
+     * Returns the setup of a session through a runtime already loaded in the engine (warnings, numeric locale, error
+     * handler and progress function).
+     *
+     * @param progress true if the task progress function must be defined
+     * @return the runtime setup, or null if the engine has no runtime and the setup code is sent for each task
+     */
+    protected RuntimeSetup getRuntimeSetup(boolean progress) {
+        return null;
+    }
+
     /**
      * Turn warnings on
      *
      * @param ctx
      */
     protected void enableWarnings(ScriptContext ctx) {
-        engine.engineEval("options(warn=1)", ctx);
+        preambleEval("options(warn=1)", ctx);
     }
 
     /**
-     * Retrieve variables map from R and merge them with the java one
+     * Builds the R expression returning a named list of the given variables, restricted to the existing ones.
+     * If {@link #SERIALIZED_RESULT_VARIABLE} is requested, the list contains under this name the compressed
+     * serialization of the result variable.
      */
-    protected void updateJobVariables(Map<String, Serializable> jobVariables, ScriptContext ctx) {
-        if (jobVariables == null) {
-            return;
-        }
-        if (engine.engineCast(engine.engineEval("exists(\"" + SchedulerConstants.VARIABLES_BINDING_NAME + "\")", ctx),
-                              Boolean.class,
-                              ctx)) {
-            Object variablesRexp = engine.engineEval(SchedulerConstants.VARIABLES_BINDING_NAME, ctx);
-            if (variablesRexp == null) {
-                return;
+    public static String harvestExpression(List<String> variables) {
+        return harvestExpression(variables, "globalenv()");
+    }
+
+    /**
+     * Builds the R expression returning a named list of the given variables, read from the given environment
+     *
+     * @param environment R expression of the environment containing the variables
+     */
+    public static String harvestExpression(List<String> variables, String environment) {
+        StringBuilder names = new StringBuilder("c(");
+        boolean serializedResult = false;
+        for (String variable : variables) {
+            if (SERIALIZED_RESULT_VARIABLE.equals(variable)) {
+                serializedResult = true;
+                continue;
             }
-            Map newMap = engine.engineCast(variablesRexp, Map.class, ctx);
-            jobVariables.putAll(newMap);
+            names.append(names.length() > 2 ? ", " : "").append('"').append(variable).append('"');
+        }
+        names.append(")");
+        String values = "mget(.names, envir = " + environment + ", inherits = TRUE)";
+        if (serializedResult) {
+            values = ".values <- " + values + "; if (exists(\"" + TaskScript.RESULT_VARIABLE +
+                     "\", envir = " + environment + ")) " + ".values[[\"" + SERIALIZED_RESULT_VARIABLE +
+                     "\"]] <- memCompress(serialize(get(\"" + TaskScript.RESULT_VARIABLE +
+                     "\", envir = " + environment + "), NULL), \"gzip\"); .values";
         }
+        return "local({ .names <- " + names + "; .names <- .names[vapply(.names, exists, logical(1), envir = " +
+               environment + ")]; " + values + " })";
     }
 
     /**
-     * Retrieve variables map from R and merge them with the java one
+     * @return the R string literal of the given text
      */
-    protected void updateResultMetadata(Map<String, String> metadata, ScriptContext ctx) {
-        if (metadata == null) {
-            return;
+    protected static String toRString(String text) {
+        return '"' + text.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * Reads with a single engine call the bindings which may be defined by the script (result, selection and control
+     * flow variables, job variables, result metadata and result map), and stores them in the script bindings
+     *
+     * @param scriptResult engine value of the last script expression, used as result if no result variable exists
+     * @return the task result
+     */
+    protected Object retrieveBindings(Object scriptResult, Bindings bindings, ScriptContext ctx) {
+        boolean serialized = isSerializedResults();
+        Map<String, Object> values = engine.engineHarvest(serialized ? SERIALIZED_HARVESTED_VARIABLES
+                                                                     : HARVESTED_VARIABLES,
+                                                          ctx);
+
+        // If the 'result' variable is explicitly defined in the global
+        // environment it is considered as the task result instead of the
+        // result exp
+        Object resultValue;
+        if (serialized && values.containsKey(SERIALIZED_RESULT_VARIABLE)) {
+            resultValue = engine.engineCast(values.get(SERIALIZED_RESULT_VARIABLE), RSerialized.class, ctx);
+        } else {
+            resultValue = engine.engineCast(values.containsKey(TaskScript.RESULT_VARIABLE) ? values.get(TaskScript.RESULT_VARIABLE)
+                                                                                           : scriptResult,
+                                            null,
+                                            ctx);
         }
-        if (engine.engineCast(engine.engineEval("exists(\"" + SchedulerConstants.RESULT_METADATA_VARIABLE + "\")", ctx),
-                              Boolean.class,
-                              ctx)) {
-            Object metadataRexp = engine.engineEval(SchedulerConstants.RESULT_METADATA_VARIABLE, ctx);
-            if (metadataRexp == null) {
-                return;
+        if (resultValue == null) {
+            resultValue = true; // TaskResult.getResult() returns true by default
+        }
+        // the lists are converted when read or serialized, a value which cannot be converted must fail the task now
+        RexpConvert.checkViews(resultValue);
+        bindings.put(TaskScript.RESULT_VARIABLE, resultValue);
+
+        for (String variableName : OTHER_VARIABLES) {
+            Object value = values.get(variableName);
+            if (value != null) {
+                bindings.put(variableName, engine.engineCast(value, null, ctx));
             }
-            Map newMap = engine.engineCast(metadataRexp, Map.class, ctx);
-            metadata.putAll(newMap);
-            metadata.remove("r.result");
         }
-    }
 
-    protected void updateResultMap(Map<String, Serializable> resultMap, ScriptContext ctx) {
-        if (resultMap == null) {
-            return;
+        Map<String, Serializable> jobVariables = (Map<String, Serializable>) bindings.get(SchedulerConstants.VARIABLES_BINDING_NAME);
+        Map newVariables = castToMap(values.get(SchedulerConstants.VARIABLES_BINDING_NAME), jobVariables, ctx);
+        if (newVariables != null) {
+            jobVariables.putAll(newVariables);
         }
-        if (engine.engineCast(engine.engineEval("exists(\"" + SchedulerConstants.RESULT_MAP_BINDING_NAME + "\")", ctx),
-                              Boolean.class,
-                              ctx)) {
-            Object resultMapRexp = engine.engineEval(SchedulerConstants.RESULT_MAP_BINDING_NAME, ctx);
-            if (resultMapRexp == null) {
-                return;
+
+        Map<String, String> metadata = (Map<String, String>) bindings.get(SchedulerConstants.RESULT_METADATA_VARIABLE);
+        Map newMetadata = castToMap(values.get(SchedulerConstants.RESULT_METADATA_VARIABLE), metadata, ctx);
+        if (newMetadata != null) {
+            metadata.putAll(newMetadata);
+            metadata.remove("r.result");
+        }
+
+        Map<String, Serializable> resultMap = (Map<String, Serializable>) bindings.get(SchedulerConstants.RESULT_MAP_BINDING_NAME);
+        Map newResultMap = castToMap(values.get(SchedulerConstants.RESULT_MAP_BINDING_NAME), resultMap, ctx);
+        if (newResultMap != null) {
+            for (Object entry : newResultMap.entrySet()) {
+                Map.Entry<String, Object> result = (Map.Entry<String, Object>) entry;
+                RexpConvert.checkViews(result.getValue());
+                resultMap.put(result.getKey(), (Serializable) result.getValue());
             }
-            Map newMap = engine.engineCast(resultMapRexp, Map.class, ctx);
-            resultMap.putAll(newMap);
             resultMap.remove("r.result");
         }
+
+        return resultValue;
+    }
+
+    /**
+     * @return the given engine value as a map, or null if there is no value or no java map to merge it into
+     */
+    private Map castToMap(Object value, Map<String, ?> target, ScriptContext ctx) {
+        if (value == null || target == null) {
+            return null;
+        }
+        return engine.engineCast(value, Map.class, ctx);
     }
 
     /**
@@ -195,18 +427,31 @@ public abstract class PAREngine extends AbstractScriptEngine {
         for (int i = 0; i < args.length; i++) {
             args[i] = serializable_args[i].toString();
         }
-        engine.engineSet("args", args, ctx);
+        preambleSet("args", args, ctx);
     }
 
     /**
-     * Assign results from previous tasks to the variable "results"
+     * Assign results from previous tasks to the variable "results". Serialized R results are sent as raw vectors and
+     * unserialized in the engine. With lazy results, the results are staged in the local space instead and read
+     * by the engine when the script accesses them, if the engine can read the local space.
      */
     protected void assignResults(Bindings bindings, ScriptContext ctx) {
         TaskResult[] results = (TaskResult[]) bindings.get(SchedulerConstants.RESULTS_VARIABLE);
         if (results == null) {
             return;
         }
+        String localSpace = (String) bindings.get(SchedulerConstants.DS_SCRATCH_BINDING_NAME);
+        if (isLazyResults() && localSpace != null && isLocalSpaceShared()) {
+            try {
+                preambleEval(StagedResults.stage(results, new File(localSpace, StagedResults.DIRECTORY)), ctx);
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Unable to stage the results of the parent tasks, they are sent with the task preamble",
+                            e);
+            }
+        }
         Map<String, Object> resultsMap = new LinkedHashMap<>(results.length);
+        List<String> serializedResults = new ArrayList<>();
         for (TaskResult r : results) {
             Object value;
             try {
@@ -214,9 +459,23 @@ public abstract class PAREngine extends AbstractScriptEngine {
             } catch (Throwable e) {
                 value = null;
             }
-            resultsMap.put(r.getTaskId().getReadableName(), value);
+            String name = r.getTaskId().getReadableName();
+            resultsMap.put(name, value);
+            if (value instanceof RSerialized) {
+                serializedResults.add(name);
+            }
+        }
+        preambleSet(SchedulerConstants.RESULTS_VARIABLE, resultsMap, ctx);
+        if (!serializedResults.isEmpty()) {
+            StringBuilder names = new StringBuilder("c(");
+            for (int i = 0; i < serializedResults.size(); i++) {
+                names.append(i > 0 ? ", " : "").append(toRString(serializedResults.get(i)));
+            }
+            names.append(")");
+            preambleEval("for (.name in " + names + ") " + SchedulerConstants.RESULTS_VARIABLE + "[[.name]] <- " +
+                         "unserialize(memDecompress(" + SchedulerConstants.RESULTS_VARIABLE +
+                         "[[.name]], \"gzip\")); rm(.name)", ctx);
         }
-        engine.engineSet(SchedulerConstants.RESULTS_VARIABLE, resultsMap, ctx);
     }
 
     /**
@@ -225,7 +484,7 @@ public abstract class PAREngine extends AbstractScriptEngine {
     protected Map<String, Serializable> assignVariables(Bindings bindings, ScriptContext ctx) {
         Map<String, Serializable> variables = (Map<String, Serializable>) bindings.get(SchedulerConstants.VARIABLES_BINDING_NAME);
         if (variables != null) {
-            engine.engineSet(SchedulerConstants.VARIABLES_BINDING_NAME, variables, ctx);
+            preambleSet(SchedulerConstants.VARIABLES_BINDING_NAME, variables, ctx);
         }
         return variables;
     }
@@ -236,7 +495,7 @@ public abstract class PAREngine extends AbstractScriptEngine {
     protected Map<String, String> assignGenericInformation(Bindings bindings, ScriptContext ctx) {
         Map<String, String> genericInformation = (Map<String, String>) bindings.get(SchedulerConstants.GENERIC_INFO_BINDING_NAME);
         if (genericInformation != null) {
-            engine.engineSet(SchedulerConstants.GENERIC_INFO_BINDING_NAME, genericInformation, ctx);
+            preambleSet(SchedulerConstants.GENERIC_INFO_BINDING_NAME, genericInformation, ctx);
         }
         return genericInformation;
     }
@@ -254,7 +513,7 @@ public abstract class PAREngine extends AbstractScriptEngine {
         if (metadata.isEmpty()) {
             metadata.put("r.result", "true");
         }
-        engine.engineSet(SchedulerConstants.RESULT_METADATA_VARIABLE, metadata, ctx);
+        preambleSet(SchedulerConstants.RESULT_METADATA_VARIABLE, metadata, ctx);
 
         return metadata;
     }
@@ -272,7 +531,7 @@ public abstract class PAREngine extends AbstractScriptEngine {
         if (resultMap.isEmpty()) {
             resultMap.put("r.result", "true");
         }
-        engine.engineSet(SchedulerConstants.RESULT_MAP_BINDING_NAME, resultMap, ctx);
+        preambleSet(SchedulerConstants.RESULT_MAP_BINDING_NAME, resultMap, ctx);
 
         return resultMap;
     }
@@ -291,8 +550,8 @@ public abstract class PAREngine extends AbstractScriptEngine {
         if (Files.exists(fpath) && Files.isWritable(fpath)) {
             // convert it to be accepted by R
             localSpace = toRpath(fpath.toString());
-            engine.engineEval("setwd('" + localSpace + "')", ctx);
-            engine.engineSet("localspace", localSpace, ctx);
+            preambleEval("setwd('" + localSpace + "')", ctx);
+            preambleSet("localspace", localSpace, ctx);
         }
     }
 
@@ -305,26 +564,52 @@ public abstract class PAREngine extends AbstractScriptEngine {
             return;
         }
         space = toRpath(space);
-        engine.engineSet(bindingName, space, ctx);
+        preambleSet(bindingName, space, ctx);
     }
 
     /**
-     * Create a function in the R Engine which allows to set the progress
+     * Reads the task progress file from the job variables
+     *
+     * @return true if the task has a progress file
      */
-    protected void assignProgress(Bindings bindings, ScriptContext ctx) {
-
+    protected boolean initializeProgressFile(Bindings bindings) {
         Map<String, Serializable> variables = (Map<String, Serializable>) bindings.get(SchedulerConstants.VARIABLES_BINDING_NAME);
         if (variables != null) {
             this.taskProgressFile = (String) variables.get(SchedulerVars.PA_TASK_PROGRESS_FILE.toString());
-
             if (taskProgressFile != null) {
                 this.taskProgressFile = toRpath(this.taskProgressFile.replace("\\", "/"));
-                String command = ".set_progress <- function(x) { message('" + TASK_PROGRESS_MSG +
-                                 "=', as.integer(x), appendLF = TRUE) }";
-                engine.engineEval(command, ctx);
+                if (progressReporter == null || !taskProgressFile.equals(progressReporter.getProgressFile())) {
+                    progressReporter = new ProgressReporter(taskProgressFile,
+                                                            Long.getLong(PROGRESS_INTERVAL_PROPERTY,
+                                                                         DEFAULT_PROGRESS_INTERVAL));
+                }
+                return true;
             }
         }
+        progressReporter = null;
+        return false;
+    }
+
+    /**
+     * Writes the last progress reported by the task, called once the task output is read
+     */
+    protected void flushProgress() {
+        if (progressReporter != null) {
+            progressReporter.flush();
+        }
+    }
 
+    /**
+     * Create a function in the R Engine which allows to set the progress, only the changes of the progress value
+     * are printed
+     */
+    protected void assignProgress(Bindings bindings, ScriptContext ctx) {
+        if (initializeProgressFile(bindings)) {
+            String command = ".set_progress <- local({ last <- NA_integer_; function(x) { x <- as.integer(x); " +
+                             "if (!identical(x, last)) { last <<- x; message('" + TASK_PROGRESS_RECORD +
+                             "', x, appendLF = TRUE) }; invisible(x) } })";
+            preambleEval(command, ctx);
+        }
     }
 
     protected File createOuputFile(Bindings bindings) throws ScriptException {
@@ -349,21 +634,60 @@ public abstract class PAREngine extends AbstractScriptEngine {
     }
 
     protected void customizeErrors(ScriptContext ctx) {
-        engine.engineEval("options( error = function() { sysc = sys.calls(); sysc = sysc[1:length(sysc)-1]; cat('" +
+        preambleEval("options( error = function() { sysc = sys.calls(); sysc = sysc[1:length(sysc)-1]; cat('" +
                           ERROR_TAG_BEGIN + "',geterrmessage(),'Call Stack :',  paste(rev(sysc), collapse ='\\n'),'" +
                           ERROR_TAG_END + "', sep='\\n') })", ctx);
     }
 
     protected void setNumericLocale(ScriptContext ctx) {
-        engine.engineEval("Sys.setlocale(category = 'LC_NUMERIC', locale = 'C')", ctx);
+        preambleEval("Sys.setlocale(category = 'LC_NUMERIC', locale = 'C')", ctx);
     }
 
+    /**
+     * Sends the task preamble (options, error handler, script bindings) to the engine. In batched mode, all bindings
+     * are sent in one list which is unpacked by the same evaluation that runs the setup expressions.
+     */
     protected void prepareExecution(ScriptContext ctx, Bindings bindings) {
-        this.enableWarnings(ctx);
-        this.setNumericLocale(ctx);
-        this.customizeErrors(ctx);
+        Object runtimeStatus;
+        if (!isBatchedPreamble()) {
+            runtimeStatus = assignPreamble(ctx, bindings);
+        } else {
+            preambleBindings = new LinkedHashMap<>();
+            preambleSetup = new StringBuilder();
+            try {
+                assignPreamble(ctx, bindings);
+                runtimeStatus = engine.engineAssignAndEval(preambleBindings, preambleSetup.toString(), ctx);
+            } finally {
+                preambleBindings = null;
+                preambleSetup = null;
+            }
+        }
+        RuntimeSetup runtimeSetup = getRuntimeSetup(taskProgressFile != null);
+        if (runtimeSetup != null && runtimeStatus != null &&
+            Boolean.FALSE.equals(engine.engineCast(runtimeStatus, Boolean.class, ctx))) {
+            logger.debug("R runtime missing or outdated in the session, reloading it");
+            engine.engineEval(runtimeSetup.getSource(), ctx);
+            engine.engineEval(runtimeSetup.getExpression(), ctx);
+        }
+    }
+
+    /**
+     * Sends or records the preamble. When the engine has a runtime, its setup expression comes last so that its
+     * status is also the result of the batched evaluation.
+     *
+     * @return the runtime setup status when the preamble is not batched, null otherwise
+     */
+    private Object assignPreamble(ScriptContext ctx, Bindings bindings) {
+        RuntimeSetup runtimeSetup = getRuntimeSetup(initializeProgressFile(bindings));
+        if (runtimeSetup == null) {
+            this.enableWarnings(ctx);
+            this.setNumericLocale(ctx);
+            this.customizeErrors(ctx);
+        }
         this.assignArguments(bindings, ctx);
-        this.assignProgress(bindings, ctx);
+        if (runtimeSetup == null) {
+            this.assignProgress(bindings, ctx);
+        }
         this.assignResults(bindings, ctx);
         this.assignLocalSpace(bindings, ctx);
         this.assignSpace(bindings, ctx, SchedulerConstants.DS_USER_BINDING_NAME);
@@ -374,9 +698,77 @@ public abstract class PAREngine extends AbstractScriptEngine {
         this.assignGenericInformation(bindings, ctx);
         this.assignResultMetadata(bindings, ctx);
         this.assignResultMap(bindings, ctx);
+        if (runtimeSetup != null) {
+            return preambleEval(runtimeSetup.getExpression(), ctx);
+        }
+        return null;
     }
 
+    /**
+     * @return a heap watchdog configured from the system properties
+     */
+    protected static HeapWatchdog createHeapWatchdog(String name) {
+        return createHeapWatchdog(name, 0);
+    }
+
+    /**
+     * @param defaultThreshold threshold used when {@link #HEAP_THRESHOLD_PROPERTY} is not set
+     * @return a heap watchdog configured from the system properties
+     */
+    protected static HeapWatchdog createHeapWatchdog(String name, double defaultThreshold) {
+        double threshold = defaultThreshold;
+        String thresholdProperty = System.getProperty(HEAP_THRESHOLD_PROPERTY);
+        if (thresholdProperty != null) {
+            try {
+                threshold = Double.parseDouble(thresholdProperty.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid " + HEAP_THRESHOLD_PROPERTY + " system property: " + thresholdProperty);
+            }
+        }
+        return new HeapWatchdog(name, Boolean.getBoolean(HEAP_WATCHDOG_PROPERTY), threshold);
+    }
+
+    /**
+     * Samples the memory used by R after an evaluation. When it is above the watchdog threshold and collect is
+     * true, a full garbage collection is run and the memory sampled again.
+     *
+     * @return true if the memory used is still above the threshold, the R interpreter should then be recycled
+     */
+    protected boolean checkHeap(HeapWatchdog watchdog, boolean collect, ScriptContext ctx) {
+        if (!watchdog.isEnabled()) {
+            return false;
+        }
+        try {
+            Double used = evalHeap(HeapWatchdog.SAMPLE_EXPRESSION, ctx);
+            if (used == null || !watchdog.record(used) || !collect) {
+                return false;
+            }
+            logger.info(watchdog.getName() + " uses " + used + "MB, running a full garbage collection");
+            used = evalHeap(HeapWatchdog.COLLECT_EXPRESSION, ctx);
+            return used != null && watchdog.recordCollection(used);
+        } catch (RuntimeException e) {
+            logger.warn("Unable to sample the memory used by R", e);
+            return false;
+        }
+    }
+
+    private Double evalHeap(String expression, ScriptContext ctx) {
+        return engine.engineCast(engine.engineEval(expression, ctx), Double.class, ctx);
+    }
+
+    /**
+     * Extracts the error messages and the progress records from the R output
+     *
+     * @return the text to show in the task output
+     */
     protected String filterErrorsAndProgress(String text, boolean addNL) {
+        if (text.startsWith(TASK_PROGRESS_RECORD)) {
+            return readProgress(text);
+        }
+        if (!readError && text.indexOf('<') < 0) {
+            // neither an error tag nor the content of an error
+            return text;
+        }
         if (text.contains(ERROR_TAG_BEGIN)) {
             readError = true;
             int bi = text.indexOf(ERROR_TAG_BEGIN) + ERROR_TAG_BEGIN.length();
@@ -388,13 +780,64 @@ public abstract class PAREngine extends AbstractScriptEngine {
             text = text.replace(ERROR_TAG_END, "");
             lastErrorMessage = error.toString();
             readError = false;
-        } else if (text.startsWith(TASK_PROGRESS_MSG)) {
-            Integer value = Integer.parseInt(text.split("=")[1].trim());
-            ProgressFile.setProgress(taskProgressFile, value);
-            text = text.replace(TASK_PROGRESS_MSG + "=" + value, "");
         } else if (readError) {
             error.append(text + (addNL ? "\n" : ""));
         }
         return text;
     }
+
+    /**
+     * Passes the value of a progress record, clamped between 0 and 100, to the progress reporter
+     *
+     * @return the text following the record
+     */
+    private String readProgress(String text) {
+        int end = TASK_PROGRESS_RECORD.length();
+        boolean negative = end < text.length() && text.charAt(end) == '-';
+        if (negative) {
+            end++;
+        }
+        int start = end;
+        int value = 0;
+        while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+            value = Math.min(value * 10 + text.charAt(end) - '0', 100);
+            end++;
+        }
+        if (end > start && progressReporter != null) {
+            progressReporter.report(negative ? 0 : value);
+        }
+        if (end < text.length() && text.charAt(end) == '\n') {
+            end++;
+        }
+        return text.substring(end);
+    }
+
+    /**
+     * Setup of a session through a R runtime, with the runtime source used to reload the runtime in the sessions
+     * where it is missing or outdated
+     */
+    protected static class RuntimeSetup {
+
+        private final String expression;
+
+        private final String source;
+
+        /**
+         * @param expression R expression configuring the session, must evaluate to FALSE when the runtime is missing
+         *                   or outdated, in which case the source is evaluated and the expression evaluated again
+         * @param source     R source of the runtime
+         */
+        public RuntimeSetup(String expression, String source) {
+            this.expression = expression;
+            this.source = source;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        public String getSource() {
+            return source;
+        }
+    }
 }
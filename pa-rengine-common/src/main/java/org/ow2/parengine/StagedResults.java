@@ -0,0 +1,124 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.ow2.parengine.convert.RSerializer;
+import org.ow2.parengine.convert.RexpConvert;
+import org.ow2.parengine.data.RSerialized;
+import org.ow2.proactive.scheduler.common.SchedulerConstants;
+import org.ow2.proactive.scheduler.common.task.TaskResult;
+
+
+/**
+ * Stages the results of the parent tasks in files, one per parent written in the R serialization format, and
+ * builds the R expression which defines the "results" list reading these files when its elements are accessed
+ * (see pa-results.R).
+ *
+ * Serialized R results ({@link RSerialized}) are written as they are, other values are converted one at a time,
+ * so that neither the whole results map nor its R conversion is kept in memory before the script starts.
+ *
+ * @author Activeeon Team
+ */
+final class StagedResults {
+
+    static final String RESOURCE = "pa-results.R";
+
+    /**
+     * directory of the staged files, in the task local space
+     */
+    static final String DIRECTORY = ".pa-results";
+
+    private static final String SOURCE = readSource();
+
+    private StagedResults() {
+
+    }
+
+    /**
+     * Writes the results in the given directory
+     *
+     * @return the R expression assigning the lazy results list
+     */
+    static String stage(TaskResult[] results, File directory) throws IOException {
+        FileUtils.forceMkdir(directory);
+        StringBuilder files = new StringBuilder("c(");
+        for (int i = 0; i < results.length; i++) {
+            Object value;
+            try {
+                value = results[i].value();
+            } catch (Throwable e) {
+                value = null;
+            }
+            File file = new File(directory, i + ".rds");
+            write(value, file);
+            files.append(i > 0 ? ", " : "")
+                 .append(PAREngine.toRString(results[i].getTaskId().getReadableName()))
+                 .append(" = ")
+                 .append(PAREngine.toRString(PAREngine.toRpath(file.getAbsolutePath())));
+        }
+        files.append(")");
+        return SOURCE + "\n" + SchedulerConstants.RESULTS_VARIABLE + " <- .pa.results(" + files +
+               "); rm(\".pa.results\", envir = globalenv())";
+    }
+
+    /**
+     * Writes a value in the R serialization format, as read by readRDS()
+     */
+    static void write(Object value, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            if (value instanceof RSerialized) {
+                try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(((RSerialized) value).getBytes()))) {
+                    IOUtils.copy(in, out);
+                }
+            } else {
+                RSerializer.write(RexpConvert.jobj2rexp(value), out);
+            }
+        }
+    }
+
+    private static String readSource() {
+        try (InputStream in = StagedResults.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("R source " + RESOURCE + " not found in the classpath");
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the R source " + RESOURCE, e);
+        }
+    }
+}
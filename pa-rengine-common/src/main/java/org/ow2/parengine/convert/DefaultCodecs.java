@@ -0,0 +1,345 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.util.List;
+import java.util.Map;
+
+import org.ow2.parengine.RObject;
+import org.ow2.parengine.data.RDataFrame;
+import org.ow2.parengine.data.RDictionaryStringVector;
+import org.ow2.parengine.data.RDoubleMatrix;
+import org.ow2.parengine.data.RMatrix;
+import org.ow2.parengine.data.RSerialized;
+import org.ow2.parengine.data.RVector;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPLogical;
+import org.rosuda.REngine.REXPMismatchException;
+import org.rosuda.REngine.REXPRaw;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Codecs of the types listed in {@link RexpConvert}.
+ *
+ * @author Activeeon Team
+ */
+final class DefaultCodecs {
+
+    private DefaultCodecs() {
+
+    }
+
+    /**
+     * @return the value, if the expression could be converted to the requested type
+     */
+    private static <T> T checked(T value, REXP rexp, Class<?> type) throws REXPMismatchException {
+        if (value == null) {
+            throw new REXPMismatchException(rexp, type.getSimpleName());
+        }
+        return value;
+    }
+
+    static void registerAll(RCodecRegistry registry) {
+        registry.registerDefault(REXP.class, new RCodec<REXP>() {
+            @Override
+            public REXP toR(REXP value) {
+                return value;
+            }
+
+            @Override
+            public REXP fromR(REXP rexp, Class<?> type) {
+                return rexp;
+            }
+        });
+        RCodec<String> stringCodec = new RCodec<String>() {
+            @Override
+            public REXP toR(String value) {
+                return new REXPString(value);
+            }
+
+            @Override
+            public String fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asString();
+            }
+        };
+        registry.registerDefault(String.class, stringCodec);
+        RCodec<Boolean> booleanCodec = new RCodec<Boolean>() {
+            @Override
+            public REXP toR(Boolean value) {
+                return new REXPLogical(value);
+            }
+
+            @Override
+            public Boolean fromR(REXP rexp, Class<?> type) {
+                return RexpConvert.asBooleans(rexp)[0];
+            }
+        };
+        registry.registerDefault(Boolean.class, booleanCodec);
+        registry.registerDefault(Boolean.TYPE, booleanCodec);
+        RCodec<Integer> integerCodec = new RCodec<Integer>() {
+            @Override
+            public REXP toR(Integer value) {
+                return new REXPInteger(value);
+            }
+
+            @Override
+            public Integer fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asInteger();
+            }
+        };
+        registry.registerDefault(Integer.class, integerCodec);
+        registry.registerDefault(Integer.TYPE, integerCodec);
+        RCodec<Double> doubleCodec = new RCodec<Double>() {
+            @Override
+            public REXP toR(Double value) {
+                return new REXPDouble(value);
+            }
+
+            @Override
+            public Double fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asDouble();
+            }
+        };
+        registry.registerDefault(Double.class, doubleCodec);
+        registry.registerDefault(Double.TYPE, doubleCodec);
+        registry.registerDefault(String[].class, new RCodec<String[]>() {
+            @Override
+            public REXP toR(String[] value) {
+                return new REXPString(value);
+            }
+
+            @Override
+            public String[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asStrings();
+            }
+        });
+        registry.registerDefault(boolean[].class, new RCodec<boolean[]>() {
+            @Override
+            public REXP toR(boolean[] value) {
+                return new REXPLogical(value);
+            }
+
+            @Override
+            public boolean[] fromR(REXP rexp, Class<?> type) {
+                return RexpConvert.asBooleans(rexp);
+            }
+        });
+        registry.registerDefault(Boolean[].class, new RCodec<Boolean[]>() {
+            @Override
+            public REXP toR(Boolean[] value) {
+                return new REXPLogical(RexpConvert.unboxLogicals(value));
+            }
+
+            @Override
+            public Boolean[] fromR(REXP rexp, Class<?> type) {
+                return RexpConvert.boxBooleans(RexpConvert.asBooleans(rexp));
+            }
+        });
+        registry.registerDefault(int[].class, new RCodec<int[]>() {
+            @Override
+            public REXP toR(int[] value) {
+                return new REXPInteger(value);
+            }
+
+            @Override
+            public int[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asIntegers();
+            }
+        });
+        registry.registerDefault(Integer[].class, new RCodec<Integer[]>() {
+            @Override
+            public REXP toR(Integer[] value) {
+                return new REXPInteger(RexpConvert.unboxIntegers(value));
+            }
+
+            @Override
+            public Integer[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return RexpConvert.boxIntegers(rexp.asIntegers());
+            }
+        });
+        registry.registerDefault(double[].class, new RCodec<double[]>() {
+            @Override
+            public REXP toR(double[] value) {
+                return new REXPDouble(value);
+            }
+
+            @Override
+            public double[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asDoubles();
+            }
+        });
+        registry.registerDefault(Double[].class, new RCodec<Double[]>() {
+            @Override
+            public REXP toR(Double[] value) {
+                return new REXPDouble(RexpConvert.unboxDoubles(value));
+            }
+
+            @Override
+            public Double[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return RexpConvert.boxDoubles(rexp.asDoubles());
+            }
+        });
+        registry.registerDefault(double[][].class, new RCodec<double[][]>() {
+            @Override
+            public REXP toR(double[][] value) {
+                return RexpConvert.matrix2rexp(RDoubleMatrix.fromRows(value));
+            }
+
+            @Override
+            public double[][] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asDoubleMatrix();
+            }
+        });
+        registry.registerDefault(byte[].class, new RCodec<byte[]>() {
+            @Override
+            public REXP toR(byte[] value) {
+                return new REXPRaw(value);
+            }
+
+            @Override
+            public byte[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asBytes();
+            }
+        });
+        registry.registerDefault(RSerialized.class, new RCodec<RSerialized>() {
+            @Override
+            public REXP toR(RSerialized value) {
+                return new REXPRaw(value.getBytes());
+            }
+
+            @Override
+            public RSerialized fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return new RSerialized(rexp.asBytes());
+            }
+        });
+        registry.registerDefault(RMatrix.class, new RCodec<RMatrix>() {
+            @Override
+            public REXP toR(RMatrix value) {
+                return RexpConvert.matrix2rexp(value);
+            }
+
+            @Override
+            public RMatrix fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return checked(RexpConvert.asMatrix(rexp), rexp, type);
+            }
+        });
+        registry.registerDefault(RVector.class, new RCodec<RVector>() {
+            @Override
+            public REXP toR(RVector value) {
+                return RexpConvert.vector2rexp(value);
+            }
+
+            @Override
+            public RVector fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return checked(RexpConvert.asVector(rexp, type == RDictionaryStringVector.class ||
+                                                          (type == RVector.class && RexpConvert.useDictionaryStrings)),
+                               rexp,
+                               type);
+            }
+        });
+        registry.registerDefault(RDataFrame.class, new RCodec<RDataFrame>() {
+            @Override
+            public REXP toR(RDataFrame value) {
+                return RexpConvert.dataFrame2rexp(value);
+            }
+
+            @Override
+            public RDataFrame fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return checked(rexp.isList() ? RexpConvert.asDataFrame(rexp) : null, rexp, type);
+            }
+        });
+        registry.registerDefault(RList.class, new RCodec<RList>() {
+            @Override
+            public REXP toR(RList value) {
+                return RexpConvert.list2rexp(value);
+            }
+
+            @Override
+            public RList fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return rexp.asList();
+            }
+        });
+        registry.registerDefault(Enum.class, new RCodec<Enum>() {
+            @Override
+            public REXP toR(Enum value) {
+                return new REXPString(value.toString());
+            }
+
+            @Override
+            public Enum fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return RexpConvert.asEnum(rexp, type);
+            }
+        });
+        registry.registerDefault(Map.class, new RCodec<Map>() {
+            @Override
+            public REXP toR(Map value) {
+                return RexpConvert.map2rexp(value);
+            }
+
+            @Override
+            public Map fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return RexpConvert.asMap(rexp);
+            }
+        });
+        registry.registerDefault(List.class, new RCodec<List>() {
+            @Override
+            public REXP toR(List value) {
+                return RexpConvert.list2rexp(value);
+            }
+
+            @Override
+            public List fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return RexpConvert.asList(rexp);
+            }
+        });
+        registry.registerDefault(RObject.class, new RCodec<RObject>() {
+            @Override
+            public REXP toR(RObject value) {
+                return RexpConvert.robject2rexp(value);
+            }
+
+            @Override
+            public RObject fromR(REXP rexp, Class<?> type) {
+                return (RObject) RexpConvert.asRObject(rexp, type);
+            }
+        });
+        registry.setArrayCodec(new RCodec<Object[]>() {
+            @Override
+            public REXP toR(Object[] value) {
+                return RexpConvert.array2rexp(value);
+            }
+
+            @Override
+            public Object[] fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return (Object[]) RexpConvert.asArray(rexp, type.getComponentType());
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPMismatchException;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * List view of a R list, each element is converted on its first access and then cached.
+ *
+ * The view is serialized as an ArrayList of the converted elements, so that it is only fully converted if it is
+ * sent to the scheduler. Its size is fixed, and the elements which cannot be converted throw an
+ * IllegalStateException when read, see {@link RexpConvert#checkViews(Object)} to check them all.
+ *
+ * @author Activeeon Team
+ */
+class LazyRList extends AbstractList<Object> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RList rlist;
+
+    private final transient Object[] values;
+
+    private final transient boolean[] converted;
+
+    LazyRList(RList rlist) {
+        this.rlist = rlist;
+        this.values = new Object[rlist.size()];
+        this.converted = new boolean[values.length];
+    }
+
+    @Override
+    public Object get(int index) {
+        if (!converted[index]) {
+            values[index] = convert(rlist.at(index));
+            converted[index] = true;
+        }
+        return values[index];
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        Object previous = get(index);
+        values[index] = element;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return true if the element was read, and thus converted
+     */
+    boolean isConverted(int index) {
+        return converted[index];
+    }
+
+    /**
+     * Checks that the elements can be converted, the elements which were not read are not converted
+     *
+     * @throws IllegalStateException if an element cannot be converted
+     */
+    void check() {
+        for (int i = 0; i < values.length; ++i) {
+            check(i);
+        }
+    }
+
+    void check(int index) {
+        if (converted[index]) {
+            RexpConvert.checkViews(values[index]);
+        } else if (!RexpConvert.isConvertible(rlist.at(index))) {
+            throw new IllegalStateException("Unable to convert R list element " + rlist.at(index));
+        }
+    }
+
+    static Object convert(REXP rexp) {
+        try {
+            return RexpConvert.rexp2jobj(rexp);
+        } catch (REXPMismatchException | RuntimeException e) {
+            throw new IllegalStateException("Unable to convert R list element " + rexp, e);
+        }
+    }
+
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Map view of a named R list, each value is converted on its first access and then cached. When a name is used
+ * several times, the last element of this name is kept, at the position of the first one.
+ *
+ * The view is serialized as a LinkedHashMap of the converted values, so that it is only fully converted if it is
+ * sent to the scheduler. The view is read-only, and the values which cannot be converted throw an
+ * IllegalStateException when read, see {@link RexpConvert#checkViews(Object)} to check them all.
+ *
+ * @author Activeeon Team
+ */
+class LazyRMap extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient LazyRList values;
+
+    /**
+     * position in the R list of the element of each name
+     */
+    private final transient LinkedHashMap<String, Integer> indexes;
+
+    LazyRMap(RList rlist) {
+        this.values = new LazyRList(rlist);
+        this.indexes = new LinkedHashMap<>(rlist.size() * 2);
+        if (rlist.isNamed()) {
+            for (int i = 0; i < rlist.size(); ++i) {
+                indexes.put(rlist.keyAt(i), i);
+            }
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer index = indexes.get(key);
+        return index != null ? values.get(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexes.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return indexes.size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                final Iterator<Map.Entry<String, Integer>> positions = indexes.entrySet().iterator();
+                return new Iterator<Map.Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return positions.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        Map.Entry<String, Integer> position = positions.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(position.getKey(),
+                                                                      values.get(position.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return indexes.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(indexes.keySet());
+    }
+
+    /**
+     * @return true if the value of the given name was read, and thus converted
+     */
+    boolean isConverted(String key) {
+        return values.isConverted(indexes.get(key));
+    }
+
+    /**
+     * Checks that the values can be converted, the values which were not read are not converted
+     *
+     * @throws IllegalStateException if a value cannot be converted
+     */
+    void check() {
+        for (Integer index : indexes.values()) {
+            values.check(index);
+        }
+    }
+
+    private Object writeReplace() {
+        return new LinkedHashMap<>(this);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPMismatchException;
+
+
+/**
+ * Conversion of a java type to and from R expressions, registered in a {@link RCodecRegistry}.
+ *
+ * Values nested in the converted object (list elements, fields...) are converted using {@link RexpConvert}, so
+ * that they go through the registry as well.
+ *
+ * @param <T> the java type handled by the codec
+ * @author Activeeon Team
+ */
+public interface RCodec<T> {
+
+    /**
+     * Convert from Java object to R expression.
+     */
+    REXP toR(T value);
+
+    /**
+     * Convert from R expression to Java object.
+     *
+     * @param type the requested type, the type the codec was registered for or one of its subtypes
+     */
+    T fromR(REXP rexp, Class<?> type) throws REXPMismatchException;
+}
@@ -0,0 +1,145 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.rosuda.REngine.REXP;
+
+
+/**
+ * Codecs used to convert java objects to and from R expressions, looked up by java type.
+ *
+ * A codec registered for a class also handles its subclasses, and a codec registered for an interface handles the
+ * classes implementing it. The codec found for each type is cached, so that the lookup costs a single hash map
+ * access once a type has been converted. Codecs registered by {@link #register(Class, RCodec)} take precedence
+ * over the default ones.
+ *
+ * @author Activeeon Team
+ */
+public class RCodecRegistry {
+
+    /**
+     * cached result of a lookup which found no codec
+     */
+    private static final RCodec<Object> NONE = new RCodec<Object>() {
+        @Override
+        public REXP toR(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object fromR(REXP rexp, Class<?> type) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private final Map<Class<?>, RCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * codecs registered for interfaces, in lookup order
+     */
+    private final List<Map.Entry<Class<?>, RCodec<?>>> interfaceCodecs = new CopyOnWriteArrayList<>();
+
+    private final Map<Class<?>, RCodec<?>> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * codec of the arrays of objects which have no codec of their own
+     */
+    private volatile RCodec<?> arrayCodec;
+
+    /**
+     * Registers a codec for a type and its subtypes, replacing any codec previously registered for this type
+     */
+    public <T> void register(Class<T> type, RCodec<? super T> codec) {
+        add(type, codec, true);
+    }
+
+    /**
+     * Registers a codec after the ones already registered, used for the default codecs
+     */
+    <T> void registerDefault(Class<T> type, RCodec<? super T> codec) {
+        add(type, codec, false);
+    }
+
+    void setArrayCodec(RCodec<Object[]> codec) {
+        arrayCodec = codec;
+        resolved.clear();
+    }
+
+    private synchronized void add(Class<?> type, RCodec<?> codec, boolean first) {
+        if (type.isInterface()) {
+            for (Map.Entry<Class<?>, RCodec<?>> entry : interfaceCodecs) {
+                if (entry.getKey() == type) {
+                    interfaceCodecs.remove(entry);
+                }
+            }
+            Map.Entry<Class<?>, RCodec<?>> entry = new AbstractMap.SimpleImmutableEntry<Class<?>, RCodec<?>>(type, codec);
+            if (first) {
+                interfaceCodecs.add(0, entry);
+            } else {
+                interfaceCodecs.add(entry);
+            }
+        } else {
+            codecs.put(type, codec);
+        }
+        resolved.clear();
+    }
+
+    /**
+     * @return the codec handling the given type, or null if there is none
+     */
+    public RCodec<?> lookup(Class<?> type) {
+        RCodec<?> codec = resolved.get(type);
+        if (codec == null) {
+            codec = resolve(type);
+            resolved.put(type, codec);
+        }
+        return codec == NONE ? null : codec;
+    }
+
+    private RCodec<?> resolve(Class<?> type) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            RCodec<?> codec = codecs.get(current);
+            if (codec != null) {
+                return codec;
+            }
+        }
+        for (Map.Entry<Class<?>, RCodec<?>> entry : interfaceCodecs) {
+            if (entry.getKey().isAssignableFrom(type)) {
+                return entry.getValue();
+            }
+        }
+        if (type.isArray() && !type.getComponentType().isPrimitive() && arrayCodec != null) {
+            return arrayCodec;
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPGenericVector;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPList;
+import org.rosuda.REngine.REXPLogical;
+import org.rosuda.REngine.REXPMismatchException;
+import org.rosuda.REngine.REXPNull;
+import org.rosuda.REngine.REXPRaw;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Writes R expressions in the binary (XDR, version 2) format of the R serialize() function, which R reads back
+ * with unserialize() or readRDS() without any java involved.
+ *
+ * Atomic vectors, lists and their attributes are supported, which covers all values produced by
+ * {@link RexpConvert#jobj2rexp(Object)}.
+ *
+ * @author Activeeon Team
+ */
+public final class RSerializer {
+
+    private static final int VERSION = 2;
+
+    /**
+     * R version of the writer (3.0.0) and oldest R version able to read the stream (2.3.0)
+     */
+    private static final int WRITER_VERSION = (3 << 16);
+
+    private static final int MIN_READER_VERSION = (2 << 16) | (3 << 8);
+
+    private static final int SYMSXP = 1;
+
+    private static final int LISTSXP = 2;
+
+    private static final int CHARSXP = 9;
+
+    private static final int LGLSXP = 10;
+
+    private static final int INTSXP = 13;
+
+    private static final int REALSXP = 14;
+
+    private static final int STRSXP = 16;
+
+    private static final int VECSXP = 19;
+
+    private static final int RAWSXP = 24;
+
+    private static final int NILVALUE_SXP = 254;
+
+    private static final int IS_OBJECT = 1 << 8;
+
+    private static final int HAS_ATTR = 1 << 9;
+
+    private static final int HAS_TAG = 1 << 10;
+
+    /**
+     * encoding flags of CHARSXP, stored in the levels bits of the item flags
+     */
+    private static final int UTF8_MASK = 1 << 3;
+
+    private static final int ASCII_MASK = 1 << 6;
+
+    private static final int LEVELS_SHIFT = 12;
+
+    private static final int NA_INTEGER = Integer.MIN_VALUE;
+
+    private final DataOutputStream out;
+
+    private RSerializer(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Writes the serialization of the given expression, the stream is flushed but not closed
+     *
+     * @throws IllegalArgumentException if the expression contains an unsupported type (language object,
+     *                                  environment, reference...)
+     */
+    public static void write(REXP rexp, OutputStream out) throws IOException {
+        RSerializer serializer = new RSerializer(out);
+        serializer.out.writeByte('X');
+        serializer.out.writeByte('\n');
+        serializer.out.writeInt(VERSION);
+        serializer.out.writeInt(WRITER_VERSION);
+        serializer.out.writeInt(MIN_READER_VERSION);
+        try {
+            serializer.writeItem(rexp);
+        } catch (REXPMismatchException e) {
+            throw new IllegalArgumentException("Unable to serialize " + rexp, e);
+        }
+        serializer.out.flush();
+    }
+
+    private void writeItem(REXP rexp) throws IOException, REXPMismatchException {
+        if (rexp == null || rexp instanceof REXPNull) {
+            out.writeInt(NILVALUE_SXP);
+            return;
+        }
+        RList attributes = attributesOf(rexp);
+        if (rexp instanceof REXPLogical) {
+            byte[] values = rexp.asBytes();
+            writeFlags(LGLSXP, attributes);
+            out.writeInt(values.length);
+            for (byte value : values) {
+                out.writeInt(value == REXPLogical.NA ? NA_INTEGER : value);
+            }
+        } else if (rexp instanceof REXPInteger) {
+            int[] values = rexp.asIntegers();
+            writeFlags(INTSXP, attributes);
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        } else if (rexp instanceof REXPDouble) {
+            double[] values = rexp.asDoubles();
+            writeFlags(REALSXP, attributes);
+            out.writeInt(values.length);
+            for (double value : values) {
+                // raw bits, so that the payload of NA is kept
+                out.writeLong(Double.doubleToRawLongBits(value));
+            }
+        } else if (rexp instanceof REXPString) {
+            String[] values = rexp.asStrings();
+            writeFlags(STRSXP, attributes);
+            out.writeInt(values.length);
+            for (String value : values) {
+                writeString(value);
+            }
+        } else if (rexp instanceof REXPRaw) {
+            byte[] values = rexp.asBytes();
+            writeFlags(RAWSXP, attributes);
+            out.writeInt(values.length);
+            out.write(values);
+        } else if (rexp instanceof REXPGenericVector || rexp instanceof REXPList) {
+            RList list = rexp.asList();
+            if (list.isNamed() && !rexp.hasAttribute("names")) {
+                attributes = withNames(attributes, list);
+            }
+            writeFlags(VECSXP, attributes);
+            out.writeInt(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                writeItem(list.at(i));
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported R expression type " + rexp.getClass().getSimpleName());
+        }
+        if (attributes != null) {
+            writeAttributes(attributes);
+        }
+    }
+
+    private void writeFlags(int type, RList attributes) throws IOException {
+        int flags = type;
+        if (attributes != null) {
+            flags |= HAS_ATTR;
+            if (attributes.containsKey("class")) {
+                flags |= IS_OBJECT;
+            }
+        }
+        out.writeInt(flags);
+    }
+
+    /**
+     * Writes the attributes as a pairlist of tagged values
+     */
+    private void writeAttributes(RList attributes) throws IOException, REXPMismatchException {
+        for (int i = 0; i < attributes.size(); i++) {
+            out.writeInt(LISTSXP | HAS_TAG);
+            out.writeInt(SYMSXP);
+            writeString(attributes.keyAt(i));
+            writeItem(attributes.at(i));
+        }
+        out.writeInt(NILVALUE_SXP);
+    }
+
+    /**
+     * Writes a CHARSXP, null is written as NA
+     */
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(CHARSXP);
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int encoding = bytes.length == value.length() ? ASCII_MASK : UTF8_MASK;
+        out.writeInt(CHARSXP | (encoding << LEVELS_SHIFT));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return the attributes of the expression, or null if it has none
+     */
+    private static RList attributesOf(REXP rexp) throws REXPMismatchException {
+        REXPList attributes = rexp._attr();
+        if (attributes == null) {
+            return null;
+        }
+        RList list = attributes.asList();
+        return list.size() > 0 && list.isNamed() ? list : null;
+    }
+
+    private static RList withNames(RList attributes, RList list) {
+        String[] names = new String[list.size()];
+        for (int i = 0; i < names.length; i++) {
+            String key = list.keyAt(i);
+            names[i] = key == null ? "" : key;
+        }
+        RList withNames = new RList();
+        withNames.put("names", new REXPString(names));
+        if (attributes != null) {
+            for (int i = 0; i < attributes.size(); i++) {
+                withNames.put(attributes.keyAt(i), attributes.at(i));
+            }
+        }
+        return withNames;
+    }
+}
@@ -0,0 +1,704 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+import org.ow2.parengine.RObject;
+import org.ow2.parengine.data.RDataFrame;
+import org.ow2.parengine.data.RDictionaryStringVector;
+import org.ow2.parengine.data.RDoubleMatrix;
+import org.ow2.parengine.data.RDoubleVector;
+import org.ow2.parengine.data.RFactorVector;
+import org.ow2.parengine.data.RIntMatrix;
+import org.ow2.parengine.data.RIntVector;
+import org.ow2.parengine.data.RLogicalMatrix;
+import org.ow2.parengine.data.RLogicalVector;
+import org.ow2.parengine.data.RMatrix;
+import org.ow2.parengine.data.RStringVector;
+import org.ow2.parengine.data.RVector;
+import org.ow2.parengine.util.ClassAccessors;
+import org.rosuda.REngine.*;
+
+
+/**
+ * Routines to convert between Java Objects and R expressions.
+ * <p/>
+ * <table>
+ * <tr><td> null                                                <td> REXPNull
+ * <tr><td> boolean, Boolean, boolean[], Boolean[]              <td> REXPLogical
+ * <tr><td> int, Integer, int[], Integer[]                      <td> REXPInteger
+ * <tr><td> double, Double, double[], double[][], Double[]	<td> REXPDouble
+ * <tr><td> RDoubleMatrix, RIntMatrix, RLogicalMatrix           <td> REXPDouble, REXPInteger, REXPLogical with dim
+ *                                                              (default for matrices when {@link #useMatrices} is set)
+ * <tr><td> RIntVector, RDoubleVector, RLogicalVector            <td> REXPInteger, REXPDouble, REXPLogical
+ *                                                              (default for vectors when {@link #useVectors} is set)
+ * <tr><td> RStringVector, RFactorVector                        <td> REXPString, REXPFactor
+ * <tr><td> RDictionaryStringVector                             <td> REXPString
+ * <tr><td> RDataFrame                                          <td> REXPGenericVector of class data.frame
+ *                                                              (default for data frames when {@link #useDataFrames} is set)
+ * <tr><td> RSerialized                                         <td> REXPRaw
+ * <tr><td> String, String[]					<td> REXPString
+ * <tr><td> byte[]						<td> REXPRaw
+ * <tr><td> Enum						<td> REXPString
+ * <tr><td> Object[], List, Map					<td> REXPGenericVector
+ * <tr><td> RObject, java bean (experimental)                   <td> REXPGenericVector
+ * </table>
+ * <p/>
+ * Conversions of a given java type are dispatched to the codec registered for this type in {@link #getCodecs()},
+ * which also accepts codecs for other types.
+ *
+ * @author Martyn Tebby (https://www.rforge.net/rscript/svn.html)
+ */
+public class RexpConvert {
+
+    private static final RCodecRegistry CODECS = new RCodecRegistry();
+
+    static {
+        DefaultCodecs.registerAll(CODECS);
+    }
+
+    /**
+     * Treat unsupported types as beans?
+     */
+    public static boolean useBean;
+
+    /**
+     * Handle unsupported types or throw exception?
+     */
+    public static boolean handleUnsupported;
+
+    /**
+     * System property used to convert R atomic vectors to RVector by default
+     */
+    public static final String VECTORS_PROPERTY = "pa.rengine.convert.vectors";
+
+    /**
+     * Convert atomic vectors to RVector, which keep their missing values, instead of java arrays?
+     * Single values which are not NA are still converted to java objects.
+     */
+    public static boolean useVectors = Boolean.getBoolean(VECTORS_PROPERTY);
+
+    /**
+     * System property used to convert R matrices to RMatrix by default
+     */
+    public static final String MATRICES_PROPERTY = "pa.rengine.convert.matrices";
+
+    /**
+     * Convert numeric, integer and logical matrices to RMatrix, which share the R column-major buffer, instead of
+     * double[][] (numeric matrices) and flat arrays (integer and logical matrices)?
+     */
+    public static boolean useMatrices = Boolean.getBoolean(MATRICES_PROPERTY);
+
+    /**
+     * System property used to convert R data frames to RDataFrame by default
+     */
+    public static final String DATA_FRAMES_PROPERTY = "pa.rengine.convert.dataframes";
+
+    /**
+     * Convert data frames whose columns are atomic vectors to RDataFrame, which keep the row names, factor levels
+     * and missing values, instead of a map of the columns?
+     */
+    public static boolean useDataFrames = Boolean.getBoolean(DATA_FRAMES_PROPERTY);
+
+    /**
+     * System property used to convert R character vectors to RDictionaryStringVector by default
+     */
+    public static final String DICTIONARY_STRINGS_PROPERTY = "pa.rengine.convert.strings.dictionary";
+
+    /**
+     * Convert character vectors (including data.frame columns) to RDictionaryStringVector, which keep a single
+     * String per distinct value, instead of String[] or RStringVector? Single values are still converted to String.
+     */
+    public static boolean useDictionaryStrings = Boolean.getBoolean(DICTIONARY_STRINGS_PROPERTY);
+
+    /**
+     * @return the registry of the codecs used by the conversions, in which codecs of other types can be registered
+     */
+    public static RCodecRegistry getCodecs() {
+        return CODECS;
+    }
+
+    /**
+     * Convert from R expression to default Java type.
+     */
+    public static Object rexp2jobj(REXP rexp) throws REXPMismatchException {
+        if (rexp == null || rexp.isNull() || rexp instanceof REXPUnknown) {
+            return null;
+        }
+        if (rexp.isVector()) {
+            int len = rexp.length();
+            if (useMatrices) {
+                RMatrix matrix = asMatrix(rexp);
+                if (matrix != null) {
+                    return matrix;
+                }
+            } else if (rexp instanceof REXPDouble && isMatrix(rexp)) {
+                return rexp.asDoubleMatrix();
+            }
+            if (useVectors) {
+                RVector vector = asVector(rexp, useDictionaryStrings);
+                if (vector != null && (len != 1 || vector.hasNA())) {
+                    return vector;
+                }
+            }
+            if (rexp.isString()) {
+                if (useDictionaryStrings && len != 1) {
+                    return RDictionaryStringVector.encode(rexp.asStrings());
+                }
+                return len == 1 ? rexp.asString() : rexp.asStrings();
+            }
+            if (rexp.isInteger()) {
+                return len == 1 ? rexp.asInteger() : rexp.asIntegers();
+            }
+            if (rexp.isNumeric()) {
+                return len == 1 ? rexp.asDouble() : rexp.asDoubles();
+            }
+            if (rexp.isLogical()) {
+                boolean[] bools = ((REXPLogical) rexp).isTRUE();
+                return len == 1 ? bools[0] : bools;
+            }
+            if (rexp.isRaw()) {
+                return rexp.asBytes();
+            }
+        }
+        if (rexp.isList()) {
+            if (useDataFrames && rexp.inherits("data.frame")) {
+                RDataFrame dataFrame = asDataFrame(rexp);
+                if (dataFrame != null) {
+                    return dataFrame;
+                }
+            }
+            return rexp.asList().isNamed() ? asMap(rexp) : asList(rexp);
+        }
+        // missing reference, environment and complex
+        // are there any more worth doing ???
+        if (handleUnsupported) {
+            return rexp;
+        }
+        throw new RuntimeException("Unsupported REXP type " + rexp);
+    }
+
+    /**
+     * Convert from R expression to given Java type.
+     */
+    public static Object rexp2jobj(REXP rexp, Class<?> type) throws REXPMismatchException {
+        if (rexp == null || rexp.isNull() || type == Void.TYPE || type == Void.class) {
+            return null;
+        }
+        if (type == null || type == Object.class) {
+            return rexp2jobj(rexp);
+        }
+        RCodec<?> codec = CODECS.lookup(type);
+        if (codec != null) {
+            Object value = codec.fromR(rexp, type);
+            if (value != null && !type.isPrimitive() && !type.isInstance(value)) {
+                throw new REXPMismatchException(rexp, type.getSimpleName());
+            }
+            return value;
+        }
+        if (useBean && !type.isPrimitive() && !type.isArray()) {
+            return asBean(rexp, type);
+        }
+        if (handleUnsupported) {
+            return null;
+        }
+        throw new RuntimeException("Unsupported return type " + type);
+    }
+
+    /**
+     * Convert from R expression to boolean[].
+     */
+    static boolean[] asBooleans(REXP rexp) {
+        return ((REXPLogical) rexp).isTRUE();
+    }
+
+    /**
+     * @return true if the expression has two dimensions
+     */
+    static boolean isMatrix(REXP rexp) {
+        int[] dim = rexp.dim();
+        return dim != null && dim.length == 2;
+    }
+
+    /**
+     * Convert from R matrix to Java RMatrix, sharing the R expression buffer.
+     *
+     * @return the matrix, or null if the expression is not a numeric, integer or logical matrix
+     */
+    static RMatrix asMatrix(REXP rexp) throws REXPMismatchException {
+        if (!isMatrix(rexp)) {
+            return null;
+        }
+        int[] dim = rexp.dim();
+        if (rexp.isInteger() && !rexp.isFactor()) {
+            return new RIntMatrix(dim[0], dim[1], rexp.asIntegers());
+        }
+        if (rexp.isNumeric() && rexp instanceof REXPDouble) {
+            return new RDoubleMatrix(dim[0], dim[1], rexp.asDoubles());
+        }
+        if (rexp.isLogical()) {
+            return new RLogicalMatrix(dim[0], dim[1], rexp.asBytes());
+        }
+        return null;
+    }
+
+    /**
+     * Convert from R atomic vector to Java RVector, sharing the R expression buffer when possible.
+     *
+     * @return the vector, or null if the expression is not a supported atomic vector
+     */
+    static RVector asVector(REXP rexp) throws REXPMismatchException {
+        return asVector(rexp, false);
+    }
+
+    /**
+     * Convert from R atomic vector to Java RVector.
+     *
+     * @param dictionary true to dictionary-encode character vectors
+     * @return the vector, or null if the expression is not a supported atomic vector
+     */
+    static RVector asVector(REXP rexp, boolean dictionary) throws REXPMismatchException {
+        REXP levels = rexp.getAttribute("levels");
+        if (rexp.isInteger() && levels != null && levels.isString()) {
+            return new RFactorVector(rexp.asIntegers(), levels.asStrings(), rexp.inherits("ordered"));
+        }
+        if (rexp.isInteger()) {
+            return new RIntVector(rexp.asIntegers());
+        }
+        if (rexp.isNumeric() && rexp instanceof REXPDouble) {
+            return new RDoubleVector(rexp.asDoubles());
+        }
+        if (rexp.isLogical()) {
+            return RLogicalVector.fromR(rexp.asBytes());
+        }
+        if (rexp.isString() && dictionary) {
+            return RDictionaryStringVector.encode(rexp.asStrings());
+        }
+        if (rexp.isString()) {
+            return new RStringVector(rexp.asStrings());
+        }
+        return null;
+    }
+
+    /**
+     * Convert from R data.frame to Java RDataFrame.
+     *
+     * @return the data frame, or null if one of its columns is not an atomic vector
+     */
+    static RDataFrame asDataFrame(REXP rexp) throws REXPMismatchException {
+        RList rlist = rexp.asList();
+        String[] rowNames = null;
+        int nrow = 0;
+        REXP rowNamesAttr = rexp.getAttribute("row.names");
+        if (rowNamesAttr != null) {
+            if (rowNamesAttr.isInteger() && rowNamesAttr.length() == 2 && rowNamesAttr.isNA()[0]) {
+                // compact form of the automatic row names: c(NA, -nrow)
+                nrow = Math.abs(rowNamesAttr.asIntegers()[1]);
+            } else {
+                rowNames = rowNamesAttr.asStrings();
+                nrow = rowNames.length;
+            }
+        } else if (rlist.size() > 0) {
+            nrow = rlist.at(0).length();
+        }
+        RDataFrame dataFrame = new RDataFrame(nrow);
+        for (int i = 0; i < rlist.size(); ++i) {
+            RVector column = asVector(rlist.at(i), useDictionaryStrings);
+            if (column == null) {
+                return null;
+            }
+            dataFrame.addColumn(rlist.isNamed() ? rlist.keyAt(i) : "V" + (i + 1), column);
+        }
+        dataFrame.setRowNames(rowNames);
+        return dataFrame;
+    }
+
+    /**
+     * Convert from R expression to Java List, the elements are converted when read.
+     */
+    @SuppressWarnings({ "rawtypes" })
+    static List asList(REXP rexp) throws REXPMismatchException {
+        return new LazyRList(rexp.asList());
+    }
+
+    /**
+     * Convert from R expression to Java Map, the values are converted when read.
+     */
+    @SuppressWarnings({ "rawtypes" })
+    static Map asMap(REXP rexp) throws REXPMismatchException {
+        return new LazyRMap(rexp.asList());
+    }
+
+    /**
+     * Checks that all the elements of the list and map views in the given value can be converted, so that the
+     * conversion errors are raised now instead of when the value is read or serialized. The elements which were
+     * not read are checked on their R expression and stay unconverted.
+     *
+     * @throws IllegalStateException if an element cannot be converted
+     */
+    public static void checkViews(Object value) {
+        if (value instanceof LazyRList) {
+            ((LazyRList) value).check();
+        } else if (value instanceof LazyRMap) {
+            ((LazyRMap) value).check();
+        }
+    }
+
+    /**
+     * @return true if {@link #rexp2jobj(REXP)} can convert the given R expression, checked without converting it
+     */
+    static boolean isConvertible(REXP rexp) {
+        if (handleUnsupported || rexp == null || rexp.isNull() || rexp instanceof REXPUnknown) {
+            return true;
+        }
+        if (rexp.isVector() &&
+            (rexp.isString() || rexp.isInteger() || rexp.isNumeric() || rexp.isLogical() || rexp.isRaw())) {
+            return true;
+        }
+        if (rexp.isList()) {
+            try {
+                RList rlist = rexp.asList();
+                for (int i = 0; i < rlist.size(); ++i) {
+                    if (!isConvertible(rlist.at(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (REXPMismatchException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Convert from R expression to Java array.
+     */
+    static Object asArray(REXP rexp, Class<?> type) throws REXPMismatchException {
+        RList rlist = rexp.asList();
+        int len = rlist.size();
+        Object array = Array.newInstance(type, len);
+        for (int i = 0; i < len; ++i) {
+            Object val = rexp2jobj(rlist.at(i), type);
+            Array.set(array, i, val);
+        }
+        return array;
+    }
+
+    /**
+     * Convert from R expression to Java RObject.
+     */
+    static Object asRObject(REXP rexp, Class<?> type) {
+        return asMembers(rexp, ClassAccessors.forFields(type));
+    }
+
+    /**
+     * Convert from R expression to Java Bean. No real checking.
+     */
+    static Object asBean(REXP rexp, Class<?> type) {
+        return asMembers(rexp, ClassAccessors.forBean(type));
+    }
+
+    /**
+     * Creates an object and sets its members from the elements of a named R list.
+     */
+    static Object asMembers(REXP rexp, ClassAccessors accessors) {
+        try {
+            RList rlist = rexp.asList();
+            Object obj = accessors.newInstance();
+            if (rlist.isNamed()) {
+                for (int i = 0; i < rlist.size(); ++i) {
+                    String name = rlist.keyAt(i);
+                    int index = accessors.indexOf(name);
+                    if (index < 0) {
+                        throw new IllegalArgumentException("No member " + name + " in " + obj.getClass());
+                    }
+                    accessors.set(obj, index, rexp2jobj(rlist.at(i), accessors.getType(index)));
+                }
+            }
+            return obj;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Convert from R expression to Java Enum.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Enum asEnum(REXP rexp, Class<?> type) throws REXPMismatchException {
+        return Enum.valueOf((Class<Enum>) type, rexp.asString());
+    }
+
+    /**
+     * Convert from Java Object to R expression.
+     */
+    @SuppressWarnings("unchecked")
+    public static REXP jobj2rexp(Object obj) {
+        if (obj == null) {
+            return new REXPNull();
+        }
+        Class<?> cls = obj.getClass();
+        RCodec<Object> codec = (RCodec<Object>) CODECS.lookup(cls);
+        if (codec != null) {
+            return codec.toR(obj);
+        } else if (useBean && !cls.isPrimitive() && !cls.isArray()) {
+            return bean2rexp(obj);
+        } else if (handleUnsupported) {
+            return new REXPString(obj.toString());
+        }
+        throw new IllegalArgumentException("Unsupported arg type " + cls);
+    }
+
+    /**
+     * Convert from Java matrix to R expression, sharing the matrix buffer.
+     */
+    static REXP matrix2rexp(RMatrix matrix) {
+        RList rlist = new RList();
+        rlist.put("dim", new REXPInteger(matrix.getDim()));
+        REXPList attrs = new REXPList(rlist);
+        if (matrix instanceof RDoubleMatrix) {
+            return new REXPDouble(((RDoubleMatrix) matrix).getValues(), attrs);
+        }
+        if (matrix instanceof RIntMatrix) {
+            return new REXPInteger(((RIntMatrix) matrix).getValues(), attrs);
+        }
+        if (matrix instanceof RLogicalMatrix) {
+            return new REXPLogical(((RLogicalMatrix) matrix).getValues(), attrs);
+        }
+        throw new IllegalArgumentException("Unsupported matrix type " + matrix.getClass());
+    }
+
+    /**
+     * Convert from Java RVector to R expression, sharing the vector buffer when possible.
+     */
+    static REXP vector2rexp(RVector vector) {
+        if (vector instanceof RIntVector) {
+            return new REXPInteger(((RIntVector) vector).getValues());
+        }
+        if (vector instanceof RDoubleVector) {
+            return new REXPDouble(((RDoubleVector) vector).getValues());
+        }
+        if (vector instanceof RLogicalVector) {
+            return new REXPLogical(((RLogicalVector) vector).toR());
+        }
+        if (vector instanceof RDictionaryStringVector) {
+            return new REXPString(((RDictionaryStringVector) vector).decode());
+        }
+        if (vector instanceof RStringVector) {
+            return new REXPString(((RStringVector) vector).getValues());
+        }
+        if (vector instanceof RFactorVector) {
+            RFactorVector factor = (RFactorVector) vector;
+            REXPString cls = factor.isOrdered() ? new REXPString(new String[] { "ordered", "factor" })
+                                                : new REXPString("factor");
+            RList attrs = new RList(new REXP[] { new REXPString(factor.getLevels()), cls },
+                                    new String[] { "levels", "class" });
+            return new REXPFactor(factor.getCodes(), factor.getLevels(), new REXPList(attrs));
+        }
+        throw new IllegalArgumentException("Unsupported vector type " + vector.getClass());
+    }
+
+    /**
+     * Convert from Java RDataFrame to R data.frame.
+     */
+    static REXP dataFrame2rexp(RDataFrame dataFrame) {
+        List<String> names = dataFrame.getColumnNames();
+        REXP[] columns = new REXP[names.size()];
+        for (int i = 0; i < columns.length; ++i) {
+            columns[i] = vector2rexp(dataFrame.getColumn(names.get(i)));
+        }
+        String[] rowNames = dataFrame.getRowNames();
+        REXP rowNamesAttr = rowNames != null ? new REXPString(rowNames)
+                                             : new REXPInteger(new int[] { REXPInteger.NA, -dataFrame.getNrow() });
+        String[] nameArray = names.toArray(new String[columns.length]);
+        RList attrs = new RList(new REXP[] { new REXPString(nameArray), new REXPString("data.frame"), rowNamesAttr },
+                                new String[] { "names", "class", "row.names" });
+        return new REXPGenericVector(new RList(columns, nameArray), new REXPList(attrs));
+    }
+
+    /**
+     * Convert from Java Map to R expression.
+     */
+    static REXP map2rexp(Map<?, ?> map) {
+        int len = map.size();
+        String[] names = new String[len];
+        REXP[] rexps = new REXP[len];
+        int pos = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            names[pos] = entry.getKey().toString();
+            rexps[pos] = jobj2rexp(entry.getValue());
+            ++pos;
+        }
+        return namevalues2rexp(names, rexps);
+    }
+
+    /**
+     * Convert from Java variables to a named R list, converting each value separately. The variables which cannot
+     * be converted are left out of the list.
+     *
+     * @param failures receives the conversion error of each variable left out
+     */
+    public static REXP variables2rexp(Map<String, ?> variables, Map<String, RuntimeException> failures) {
+        List<String> names = new ArrayList<>(variables.size());
+        List<REXP> rexps = new ArrayList<>(variables.size());
+        for (Map.Entry<String, ?> entry : variables.entrySet()) {
+            try {
+                rexps.add(jobj2rexp(entry.getValue()));
+                names.add(entry.getKey());
+            } catch (RuntimeException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        return namevalues2rexp(names.toArray(new String[names.size()]), rexps.toArray(new REXP[rexps.size()]));
+    }
+
+    /**
+     * Convert name value pairs to R expression.
+     */
+    static REXP namevalues2rexp(String[] names, REXP[] rexps) {
+        return new REXPGenericVector(new RList(rexps, names));
+    }
+
+    /**
+     * Convert from Java List to R expression.
+     */
+    static REXP list2rexp(Collection<?> list) {
+        List<REXP> rexps = new ArrayList<REXP>(list.size());
+        for (Object o : list) {
+            rexps.add(jobj2rexp(o));
+        }
+        return new REXPGenericVector(new RList(rexps));
+    }
+
+    /**
+     * Convert from Java Array to R expression.
+     */
+    static REXP array2rexp(Object[] array) {
+        return list2rexp(Arrays.asList(array));
+    }
+
+    /**
+     * Convert from boolean[] to Boolean[].
+     */
+    static Boolean[] boxBooleans(boolean[] values) {
+        Boolean[] boxed = new Boolean[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            boxed[i] = values[i] ? Boolean.TRUE : Boolean.FALSE;
+        }
+        return boxed;
+    }
+
+    /**
+     * Convert from int[] to Integer[].
+     */
+    static Integer[] boxIntegers(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * Convert from double[] to Double[].
+     */
+    static Double[] boxDoubles(double[] values) {
+        Double[] boxed = new Double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * Convert from Boolean[] to R logical values, null elements become NA.
+     */
+    static byte[] unboxLogicals(Boolean[] values) {
+        byte[] logicals = new byte[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            Boolean value = values[i];
+            logicals[i] = value == null ? REXPLogical.NA : value ? REXPLogical.TRUE : REXPLogical.FALSE;
+        }
+        return logicals;
+    }
+
+    /**
+     * Convert from Integer[] to int[], null elements become NA.
+     */
+    static int[] unboxIntegers(Integer[] values) {
+        int[] unboxed = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            Integer value = values[i];
+            unboxed[i] = value == null ? REXPInteger.NA : value;
+        }
+        return unboxed;
+    }
+
+    /**
+     * Convert from Double[] to double[], null elements become NA.
+     */
+    static double[] unboxDoubles(Double[] values) {
+        double[] unboxed = new double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            Double value = values[i];
+            unboxed[i] = value == null ? REXPDouble.NA : value;
+        }
+        return unboxed;
+    }
+
+    /**
+     * Convert from Java RObject to R expression.
+     */
+    static REXP robject2rexp(Object obj) {
+        return members2rexp(obj, ClassAccessors.forFields(obj.getClass()));
+    }
+
+    /**
+     * Convert from Java Bean to R expression.
+     */
+    static REXP bean2rexp(Object obj) {
+        return members2rexp(obj, ClassAccessors.forBean(obj.getClass()));
+    }
+
+    /**
+     * Convert the readable members of an object to a named R list.
+     */
+    static REXP members2rexp(Object obj, ClassAccessors accessors) {
+        List<String> names = new ArrayList<String>(accessors.size());
+        List<REXP> rexps = new ArrayList<REXP>(accessors.size());
+        for (int i = 0; i < accessors.size(); ++i) {
+            if (accessors.isReadable(i)) {
+                names.add(accessors.getName(i));
+                rexps.add(jobj2rexp(accessors.get(obj, i)));
+            }
+        }
+        return namevalues2rexp(names.toArray(new String[names.size()]), rexps.toArray(new REXP[rexps.size()]));
+    }
+
+}
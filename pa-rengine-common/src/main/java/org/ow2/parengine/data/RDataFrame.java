@@ -0,0 +1,114 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Columnar representation of a R data.frame: named {@link RVector} columns of the same length and optional row
+ * names.
+ *
+ * @author Activeeon Team
+ */
+public class RDataFrame implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int nrow;
+
+    private final LinkedHashMap<String, RVector> columns = new LinkedHashMap<>();
+
+    /**
+     * null when R uses the automatic row names 1..nrow
+     */
+    private String[] rowNames;
+
+    public RDataFrame(int nrow) {
+        this.nrow = nrow;
+    }
+
+    /**
+     * Adds a column, or replaces the column of the same name
+     *
+     * @return this data frame
+     */
+    public RDataFrame addColumn(String name, RVector column) {
+        if (column.length() != nrow) {
+            throw new IllegalArgumentException("Column " + name + " has " + column.length() + " rows instead of " +
+                                               nrow);
+        }
+        columns.put(name, column);
+        return this;
+    }
+
+    public int getNrow() {
+        return nrow;
+    }
+
+    public int getNcol() {
+        return columns.size();
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    /**
+     * @return the column, or null if there is no column of this name
+     */
+    public RVector getColumn(String name) {
+        return columns.get(name);
+    }
+
+    public Map<String, RVector> getColumns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * @return the row names, or null for the automatic row names
+     */
+    public String[] getRowNames() {
+        return rowNames;
+    }
+
+    public void setRowNames(String[] rowNames) {
+        if (rowNames != null && rowNames.length != nrow) {
+            throw new IllegalArgumentException(rowNames.length + " row names given for " + nrow + " rows");
+        }
+        this.rowNames = rowNames;
+    }
+
+    @Override
+    public String toString() {
+        return "RDataFrame[" + nrow + " rows, columns=" + columns.keySet() + "]";
+    }
+}
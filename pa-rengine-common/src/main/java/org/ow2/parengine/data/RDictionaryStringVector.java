@@ -0,0 +1,155 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Character R vector stored as a table of its distinct values and, for each element, the 1-based code of its value
+ * in the table. Missing values hold {@link RNA#INTEGER}.
+ *
+ * A vector of millions of elements with few distinct values keeps a single String per distinct value, in memory
+ * as well as once serialized. It is converted back to a R character vector, or to a factor using
+ * {@link #toFactor()}.
+ *
+ * @author Activeeon Team
+ */
+public class RDictionaryStringVector extends RVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] codes;
+
+    private final String[] dictionary;
+
+    /**
+     * @param codes      1-based codes of the values in the dictionary, used without copy
+     * @param dictionary distinct values of the vector
+     */
+    public RDictionaryStringVector(int[] codes, String[] dictionary) {
+        super(codes.length, RIntVector.naOf(codes));
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] != RNA.INTEGER && (codes[i] < 1 || codes[i] > dictionary.length)) {
+                throw new IllegalArgumentException("Invalid code " + codes[i] + " for a dictionary of " +
+                                                   dictionary.length + " values");
+            }
+        }
+        this.codes = codes;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Encodes character values, the dictionary lists the distinct values in order of first appearance
+     *
+     * @param values character values, null for missing values
+     */
+    public static RDictionaryStringVector encode(String[] values) {
+        int[] codes = new int[values.length];
+        Map<String, Integer> codesByValue = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value == null) {
+                codes[i] = RNA.INTEGER;
+                continue;
+            }
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                dictionary.add(value);
+                code = dictionary.size();
+                codesByValue.put(value, code);
+            }
+            codes[i] = code;
+        }
+        return new RDictionaryStringVector(codes, dictionary.toArray(new String[dictionary.size()]));
+    }
+
+    /**
+     * @return the value of the element, or null if it is NA
+     */
+    public String get(int index) {
+        int code = codes[index];
+        return code == RNA.INTEGER ? null : dictionary[code - 1];
+    }
+
+    /**
+     * @return the 1-based code of the element value in the dictionary
+     */
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    /**
+     * @return the codes of this vector, not a copy
+     */
+    public int[] getCodes() {
+        return codes;
+    }
+
+    public String[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the values of the vector, elements of equal value share the same String
+     */
+    public String[] decode() {
+        String[] values = new String[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    /**
+     * @return a factor sharing the codes of this vector, its levels are the dictionary values
+     */
+    public RFactorVector toFactor() {
+        return new RFactorVector(codes, dictionary, false);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RDictionaryStringVector)) {
+            return false;
+        }
+        RDictionaryStringVector other = (RDictionaryStringVector) o;
+        return Arrays.equals(decode(), other.decode());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(decode());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.util.Arrays;
+
+
+/**
+ * Numeric R matrix.
+ *
+ * @author Activeeon Team
+ */
+public class RDoubleMatrix extends RMatrix {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] values;
+
+    /**
+     * @param values column-major values, used without copy
+     */
+    public RDoubleMatrix(int nrow, int ncol, double[] values) {
+        super(nrow, ncol, values.length);
+        this.values = values;
+    }
+
+    /**
+     * Creates a matrix from row arrays, the only case where the values are copied
+     */
+    public static RDoubleMatrix fromRows(double[][] rows) {
+        int nrow = rows.length;
+        int ncol = nrow == 0 ? 0 : rows[0].length;
+        double[] values = new double[nrow * ncol];
+        for (int i = 0; i < nrow; ++i) {
+            for (int j = 0; j < ncol; ++j) {
+                values[j * nrow + i] = rows[i][j];
+            }
+        }
+        return new RDoubleMatrix(nrow, ncol, values);
+    }
+
+    public double get(int row, int col) {
+        return values[index(row, col)];
+    }
+
+    public void set(int row, int col, double value) {
+        values[index(row, col)] = value;
+    }
+
+    @Override
+    public boolean isNA(int row, int col) {
+        return RNA.isNA(get(row, col));
+    }
+
+    /**
+     * @return the column-major buffer of this matrix, not a copy
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return a copy of this matrix as row arrays
+     */
+    public double[][] toRows() {
+        double[][] rows = new double[getNrow()][getNcol()];
+        for (int j = 0; j < getNcol(); ++j) {
+            for (int i = 0; i < getNrow(); ++i) {
+                rows[i][j] = values[j * getNrow() + i];
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RDoubleMatrix)) {
+            return false;
+        }
+        RDoubleMatrix other = (RDoubleMatrix) o;
+        return getNrow() == other.getNrow() && getNcol() == other.getNcol() && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * getNrow() + Arrays.hashCode(values);
+    }
+}
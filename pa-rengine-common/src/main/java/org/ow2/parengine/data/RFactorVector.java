@@ -0,0 +1,111 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.util.Arrays;
+
+
+/**
+ * R factor, dictionary-encoded: each element is the 1-based code of its level, as in R, and missing values hold
+ * {@link RNA#INTEGER}.
+ *
+ * @author Activeeon Team
+ */
+public class RFactorVector extends RVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] codes;
+
+    private final String[] levels;
+
+    private final boolean ordered;
+
+    /**
+     * @param codes   1-based level codes, used without copy
+     * @param levels  distinct values of the factor
+     * @param ordered true for an ordered factor
+     */
+    public RFactorVector(int[] codes, String[] levels, boolean ordered) {
+        super(codes.length, RIntVector.naOf(codes));
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] != RNA.INTEGER && (codes[i] < 1 || codes[i] > levels.length)) {
+                throw new IllegalArgumentException("Invalid code " + codes[i] + " for a factor of " + levels.length +
+                                                   " levels");
+            }
+        }
+        this.codes = codes;
+        this.levels = levels;
+        this.ordered = ordered;
+    }
+
+    /**
+     * @return the level of the element, or null if it is NA
+     */
+    public String get(int index) {
+        int code = codes[index];
+        return code == RNA.INTEGER ? null : levels[code - 1];
+    }
+
+    /**
+     * @return the 1-based level code of the element
+     */
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    /**
+     * @return the level codes of this vector, not a copy
+     */
+    public int[] getCodes() {
+        return codes;
+    }
+
+    public String[] getLevels() {
+        return levels;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RFactorVector)) {
+            return false;
+        }
+        RFactorVector other = (RFactorVector) o;
+        return ordered == other.ordered && Arrays.equals(codes, other.codes) && Arrays.equals(levels, other.levels);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(codes) + Arrays.hashCode(levels);
+    }
+}
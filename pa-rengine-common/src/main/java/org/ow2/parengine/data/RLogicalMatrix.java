@@ -0,0 +1,94 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.util.Arrays;
+
+
+/**
+ * Logical R matrix. Values are stored as in R logical vectors, using {@link RNA#LOGICAL_TRUE},
+ * {@link RNA#LOGICAL_FALSE} and {@link RNA#LOGICAL}.
+ *
+ * @author Activeeon Team
+ */
+public class RLogicalMatrix extends RMatrix {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] values;
+
+    /**
+     * @param values column-major logical values, used without copy
+     */
+    public RLogicalMatrix(int nrow, int ncol, byte[] values) {
+        super(nrow, ncol, values.length);
+        this.values = values;
+    }
+
+    /**
+     * @return true if element (row, col) is TRUE, false if it is FALSE or NA
+     */
+    public boolean get(int row, int col) {
+        return values[index(row, col)] == RNA.LOGICAL_TRUE;
+    }
+
+    public void set(int row, int col, boolean value) {
+        values[index(row, col)] = value ? RNA.LOGICAL_TRUE : RNA.LOGICAL_FALSE;
+    }
+
+    public void setNA(int row, int col) {
+        values[index(row, col)] = RNA.LOGICAL;
+    }
+
+    @Override
+    public boolean isNA(int row, int col) {
+        return RNA.isNA(values[index(row, col)]);
+    }
+
+    /**
+     * @return the column-major buffer of this matrix, not a copy
+     */
+    public byte[] getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RLogicalMatrix)) {
+            return false;
+        }
+        RLogicalMatrix other = (RLogicalMatrix) o;
+        return getNrow() == other.getNrow() && getNcol() == other.getNcol() && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * getNrow() + Arrays.hashCode(values);
+    }
+}
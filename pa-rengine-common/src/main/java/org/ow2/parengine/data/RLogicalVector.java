@@ -0,0 +1,123 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+
+/**
+ * Logical R vector, missing values are false in the value array.
+ *
+ * @author Activeeon Team
+ */
+public class RLogicalVector extends RVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean[] values;
+
+    /**
+     * @param values logical values, used without copy
+     * @param na     positions of the missing values, or null if there are none
+     */
+    public RLogicalVector(boolean[] values, BitSet na) {
+        super(values.length, na);
+        this.values = values;
+        for (int i = this.na.nextSetBit(0); i >= 0; i = this.na.nextSetBit(i + 1)) {
+            values[i] = false;
+        }
+    }
+
+    /**
+     * Creates a vector from the byte buffer of a R logical vector
+     */
+    public static RLogicalVector fromR(byte[] logicals) {
+        boolean[] values = new boolean[logicals.length];
+        BitSet na = new BitSet();
+        for (int i = 0; i < logicals.length; i++) {
+            if (logicals[i] == RNA.LOGICAL) {
+                na.set(i);
+            } else {
+                values[i] = logicals[i] == RNA.LOGICAL_TRUE;
+            }
+        }
+        return new RLogicalVector(values, na);
+    }
+
+    /**
+     * @return the vector as the byte buffer of a R logical vector
+     */
+    public byte[] toR() {
+        byte[] logicals = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            logicals[i] = na.get(i) ? RNA.LOGICAL : values[i] ? RNA.LOGICAL_TRUE : RNA.LOGICAL_FALSE;
+        }
+        return logicals;
+    }
+
+    /**
+     * @return true if the element is TRUE, false if it is FALSE or NA
+     */
+    public boolean get(int index) {
+        return values[index];
+    }
+
+    public void set(int index, boolean value) {
+        values[index] = value;
+        na.clear(index);
+    }
+
+    public void setNA(int index) {
+        checkIndex(index);
+        values[index] = false;
+        na.set(index);
+    }
+
+    /**
+     * @return the values of this vector, not a copy
+     */
+    public boolean[] getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RLogicalVector)) {
+            return false;
+        }
+        RLogicalVector other = (RLogicalVector) o;
+        return Arrays.equals(values, other.values) && na.equals(other.na);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(values) + na.hashCode();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.io.Serializable;
+
+
+/**
+ * Matrix exchanged with R, stored as R does: a single column-major buffer with its dimensions.
+ *
+ * The buffer is shared with the R expression it was converted from or to, no transposition nor copy is done by the
+ * conversion. Element (row, col) is stored at index col * nrow + row.
+ *
+ * @author Activeeon Team
+ */
+public abstract class RMatrix implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int nrow;
+
+    private final int ncol;
+
+    protected RMatrix(int nrow, int ncol, int length) {
+        if (nrow < 0 || ncol < 0) {
+            throw new IllegalArgumentException("Invalid matrix dimensions " + nrow + "x" + ncol);
+        }
+        if ((long) nrow * ncol != length) {
+            throw new IllegalArgumentException("A " + nrow + "x" + ncol + " matrix cannot hold " + length +
+                                               " values");
+        }
+        this.nrow = nrow;
+        this.ncol = ncol;
+    }
+
+    public int getNrow() {
+        return nrow;
+    }
+
+    public int getNcol() {
+        return ncol;
+    }
+
+    /**
+     * @return the R dim attribute of this matrix
+     */
+    public int[] getDim() {
+        return new int[] { nrow, ncol };
+    }
+
+    /**
+     * @return position of element (row, col) in the column-major buffer
+     */
+    public int index(int row, int col) {
+        if (row < 0 || row >= nrow || col < 0 || col >= ncol) {
+            throw new IndexOutOfBoundsException("(" + row + ", " + col + ") is outside of a " + nrow + "x" + ncol +
+                                                " matrix");
+        }
+        return col * nrow + row;
+    }
+
+    /**
+     * @return true if element (row, col) is R NA
+     */
+    public abstract boolean isNA(int row, int col);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + nrow + "x" + ncol + "]";
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+/**
+ * Representation of R missing values (NA) in the java arrays exchanged with R, identical to the one used by
+ * REngine.
+ *
+ * @author Activeeon Team
+ */
+public final class RNA {
+
+    /**
+     * NA of R integer vectors
+     */
+    public static final int INTEGER = Integer.MIN_VALUE;
+
+    /**
+     * NA of R numeric vectors, a NaN with a specific payload
+     */
+    public static final double DOUBLE = Double.longBitsToDouble(0x7ff00000000007a2L);
+
+    /**
+     * NA of R logical vectors, as stored in the byte buffer of REXPLogical
+     */
+    public static final byte LOGICAL = -128;
+
+    public static final byte LOGICAL_TRUE = 1;
+
+    public static final byte LOGICAL_FALSE = 0;
+
+    /**
+     * the signaling bit of the NaN may be changed by the platform, it is ignored when comparing
+     */
+    private static final long DOUBLE_MASK = 0xfff7ffffffffffffL;
+
+    private RNA() {
+
+    }
+
+    public static boolean isNA(int value) {
+        return value == INTEGER;
+    }
+
+    /**
+     * @return true if value is R NA, false for other values including NaN
+     */
+    public static boolean isNA(double value) {
+        return (Double.doubleToRawLongBits(value) & DOUBLE_MASK) == (Double.doubleToRawLongBits(DOUBLE) & DOUBLE_MASK);
+    }
+
+    public static boolean isNA(byte logical) {
+        return logical == LOGICAL;
+    }
+}
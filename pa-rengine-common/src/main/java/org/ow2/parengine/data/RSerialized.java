@@ -0,0 +1,78 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+/**
+ * Opaque R value, stored as the gzip compressed output of the R serialize() function.
+ *
+ * Task results are stored in this form when {@link org.ow2.parengine.PAREngine#SERIALIZED_RESULTS_PROPERTY} is set.
+ * The following R tasks unserialize them directly in their results list, the value is never decoded into java
+ * objects. Other consumers can read the bytes with memDecompress(bytes, "gzip") and unserialize() in R.
+ *
+ * @author Activeeon Team
+ */
+public final class RSerialized implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] bytes;
+
+    /**
+     * @param bytes compressed serialization of the value, used without copy
+     */
+    public RSerialized(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Serialized bytes cannot be null");
+        }
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the compressed serialization of the value, not a copy
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof RSerialized && Arrays.equals(bytes, ((RSerialized) o).bytes));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "RSerialized[" + bytes.length + " bytes]";
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+
+/**
+ * Character R vector, missing values are null.
+ *
+ * @author Activeeon Team
+ */
+public class RStringVector extends RVector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] values;
+
+    /**
+     * @param values R character values, used without copy
+     */
+    public RStringVector(String[] values) {
+        super(values.length, naOf(values));
+        this.values = values;
+    }
+
+    public String get(int index) {
+        return values[index];
+    }
+
+    public void set(int index, String value) {
+        values[index] = value;
+        na.set(index, value == null);
+    }
+
+    /**
+     * @return the values of this vector, not a copy
+     */
+    public String[] getValues() {
+        return values;
+    }
+
+    static BitSet naOf(String[] values) {
+        BitSet na = new BitSet();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                na.set(i);
+            }
+        }
+        return na;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof RStringVector && Arrays.equals(values, ((RStringVector) o).values));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+}
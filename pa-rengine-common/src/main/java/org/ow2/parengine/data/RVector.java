@@ -0,0 +1,89 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.data;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+
+/**
+ * Atomic R vector held in a primitive java array, with the positions of the R missing values (NA) kept in a bitset.
+ *
+ * Elements can be read in tight loops on the primitive array; {@link #isNA(int)} tells missing values apart from
+ * regular ones, whatever the sentinel stored at their position.
+ *
+ * @author Activeeon Team
+ */
+public abstract class RVector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int length;
+
+    /**
+     * positions of the missing values, shared with the subclasses which keep it up to date
+     */
+    protected final BitSet na;
+
+    protected RVector(int length, BitSet na) {
+        this.length = length;
+        this.na = na != null ? na : new BitSet();
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isNA(int index) {
+        checkIndex(index);
+        return na.get(index);
+    }
+
+    /**
+     * @return true if the vector contains at least one missing value
+     */
+    public boolean hasNA() {
+        return !na.isEmpty();
+    }
+
+    /**
+     * @return a copy of the positions of the missing values
+     */
+    public BitSet getNA() {
+        return (BitSet) na.clone();
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of a vector of length " + length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[length=" + length + ", na=" + na.cardinality() + "]";
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Accessors of the members of a class converted to or from R, resolved once per class.
+ *
+ * {@link #forFields(Class)} gives the public instance fields (used for RObject) and {@link #forBean(Class)} the
+ * bean properties. Both are cached with a ClassValue, so that converting many objects of the same type only
+ * invokes the cached method handles.
+ *
+ * @author Activeeon Team
+ */
+public final class ClassAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final ClassValue<ClassAccessors> FIELDS = new ClassValue<ClassAccessors>() {
+        @Override
+        protected ClassAccessors computeValue(Class<?> type) {
+            try {
+                return fieldAccessors(type);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access the fields of " + type, e);
+            }
+        }
+    };
+
+    private static final ClassValue<ClassAccessors> BEANS = new ClassValue<ClassAccessors>() {
+        @Override
+        protected ClassAccessors computeValue(Class<?> type) {
+            try {
+                return beanAccessors(type);
+            } catch (IntrospectionException | IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access the properties of " + type, e);
+            }
+        }
+    };
+
+    private final Class<?> type;
+
+    private final String[] names;
+
+    private final Class<?>[] types;
+
+    /**
+     * (Object)Object handles, null for write-only members
+     */
+    private final MethodHandle[] getters;
+
+    /**
+     * (Object, Object)void handles, null for read-only members
+     */
+    private final MethodHandle[] setters;
+
+    private final Map<String, Integer> indexes;
+
+    /**
+     * ()Object handle of the public no-argument constructor, null if there is none
+     */
+    private final MethodHandle constructor;
+
+    private ClassAccessors(Class<?> type, List<String> names, List<Class<?>> types, List<MethodHandle> getters,
+            List<MethodHandle> setters) {
+        this.type = type;
+        this.names = names.toArray(new String[names.size()]);
+        this.types = types.toArray(new Class<?>[types.size()]);
+        this.getters = getters.toArray(new MethodHandle[getters.size()]);
+        this.setters = setters.toArray(new MethodHandle[setters.size()]);
+        this.indexes = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < this.names.length; i++) {
+            indexes.put(this.names[i], i);
+        }
+        MethodHandle ctor = null;
+        try {
+            ctor = LOOKUP.findConstructor(type, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // the class cannot be instantiated, only read
+        }
+        this.constructor = ctor;
+    }
+
+    /**
+     * @return the accessors of the public instance fields of the class
+     */
+    public static ClassAccessors forFields(Class<?> type) {
+        return FIELDS.get(type);
+    }
+
+    /**
+     * @return the accessors of the bean properties of the class, declared below Object
+     */
+    public static ClassAccessors forBean(Class<?> type) {
+        return BEANS.get(type);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public Class<?> getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return the position of the member, or -1 if the class has no such member
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index != null ? index : -1;
+    }
+
+    public boolean isReadable(int index) {
+        return getters[index] != null;
+    }
+
+    public Object get(Object target, int index) {
+        MethodHandle getter = getters[index];
+        if (getter == null) {
+            throw new IllegalArgumentException(names[index] + " of " + type + " cannot be read");
+        }
+        try {
+            return getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot read " + names[index] + " of " + type, t);
+        }
+    }
+
+    public void set(Object target, int index, Object value) {
+        MethodHandle setter = setters[index];
+        if (setter == null) {
+            throw new IllegalArgumentException(names[index] + " of " + type + " cannot be written");
+        }
+        try {
+            setter.invokeExact(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot write " + names[index] + " of " + type, t);
+        }
+    }
+
+    /**
+     * @return a new instance created with the public no-argument constructor
+     */
+    public Object newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException(type + " has no public no-argument constructor");
+        }
+        try {
+            return constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot create an instance of " + type, t);
+        }
+    }
+
+    private static ClassAccessors fieldAccessors(Class<?> type) throws IllegalAccessException {
+        List<String> names = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+        for (Field field : type.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            names.add(field.getName());
+            types.add(field.getType());
+            getters.add(LOOKUP.unreflectGetter(field).asType(GETTER_TYPE));
+            setters.add(Modifier.isFinal(field.getModifiers()) ? null
+                                                               : LOOKUP.unreflectSetter(field).asType(SETTER_TYPE));
+        }
+        return new ClassAccessors(type, names, types, getters, setters);
+    }
+
+    private static ClassAccessors beanAccessors(Class<?> type) throws IntrospectionException, IllegalAccessException {
+        BeanInfo beanInfo = Introspector.getBeanInfo(type, Object.class);
+        List<String> names = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+        for (PropertyDescriptor property : beanInfo.getPropertyDescriptors()) {
+            if (property.getPropertyType() == null) {
+                // indexed property without array accessors
+                continue;
+            }
+            Method read = property.getReadMethod();
+            Method write = property.getWriteMethod();
+            names.add(property.getName());
+            types.add(property.getPropertyType());
+            getters.add(read != null ? LOOKUP.unreflect(read).asType(GETTER_TYPE) : null);
+            setters.add(write != null ? LOOKUP.unreflect(write).asType(SETTER_TYPE) : null);
+        }
+        return new ClassAccessors(type, names, types, getters, setters);
+    }
+}
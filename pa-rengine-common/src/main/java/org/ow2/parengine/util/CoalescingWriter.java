@@ -0,0 +1,154 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Writer buffering small writes and passing them to its target in larger chunks.
+ *
+ * Buffered text is written, and the target flushed, once the buffer reaches the maximum size or once the oldest
+ * buffered text is older than the maximum delay, and on each call to {@link #flush()}. The delay is checked on each
+ * write, and by a timer armed when text is buffered so that the last text is written even if no write follows.
+ * Closing this writer flushes it but does not close the target.
+ *
+ * @author Activeeon Team
+ */
+public class CoalescingWriter extends Writer {
+
+    private final Writer target;
+
+    private final int maxSize;
+
+    private final long maxDelayNanos;
+
+    private final StringBuilder buffer;
+
+    /**
+     * time at which the oldest buffered text was written
+     */
+    private long firstWrite;
+
+    /**
+     * deferred flush of the buffered text, null if the buffer is empty
+     */
+    private ScheduledFuture<?> deferredFlush;
+
+    /**
+     * @param target     writer receiving the coalesced text
+     * @param maxSize    number of buffered characters triggering a write to the target
+     * @param maxDelayMs age in milliseconds of the buffered text triggering a write to the target
+     */
+    public CoalescingWriter(Writer target, int maxSize, long maxDelayMs) {
+        this.target = target;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.buffer = new StringBuilder(this.maxSize);
+    }
+
+    public Writer getTarget() {
+        return target;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        synchronized (lock) {
+            long now = startWrite();
+            buffer.append(chars, offset, length);
+            endWrite(now);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        synchronized (lock) {
+            long now = startWrite();
+            buffer.append(text, offset, offset + length);
+            endWrite(now);
+        }
+    }
+
+    /**
+     * Writes the buffered text to the target, then flushes it
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (deferredFlush != null) {
+                deferredFlush.cancel(false);
+                deferredFlush = null;
+            }
+            if (buffer.length() > 0) {
+                target.write(buffer.toString());
+                buffer.setLength(0);
+            }
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private long startWrite() {
+        long now = System.nanoTime();
+        if (buffer.length() == 0) {
+            firstWrite = now;
+        }
+        return now;
+    }
+
+    private void endWrite(long now) throws IOException {
+        if (buffer.length() >= maxSize || now - firstWrite >= maxDelayNanos) {
+            flush();
+        } else if (deferredFlush == null && buffer.length() > 0) {
+            deferredFlush = FlushTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushDeferred();
+                }
+            }, maxDelayNanos - (now - firstWrite));
+        }
+    }
+
+    private void flushDeferred() {
+        synchronized (lock) {
+            deferredFlush = null;
+            if (buffer.length() > 0) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to write the buffered text", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Daemon thread running the deferred writes of the buffered task output and progress.
+ *
+ * @author Activeeon Team
+ */
+final class FlushTimer {
+
+    private static final Logger logger = Logger.getLogger(FlushTimer.class);
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                                                                                                                            .setNameFormat("PARengine flush timer")
+                                                                                                                            .build());
+
+    private FlushTimer() {
+    }
+
+    /**
+     * Runs the given flush after the given delay, its errors are logged
+     */
+    static ScheduledFuture<?> schedule(final Runnable flush, long delayNanos) {
+        return timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Deferred flush failed", e);
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+/**
+ * Thread-safe record of the memory used by a R interpreter, sampled after its evaluations.
+ *
+ * A sample above the threshold means the interpreter should first run a full garbage collection, and be recycled
+ * if the memory used is still above the threshold after the collection. When a recycling leaves the memory above
+ * the threshold (for example because of large loaded packages), the memory must then grow by
+ * {@link #RECYCLE_BACKOFF_GROWTH} before the interpreter is collected and recycled again.
+ *
+ * The expressions work with every R version supported by the connector. Samples are minor collections from R 3.5.0,
+ * with older versions every sample is a full collection.
+ *
+ * @author Activeeon Team
+ */
+public class HeapWatchdog {
+
+    /**
+     * R expression giving the memory used by R in megabytes, a minor collection is cheap. The full argument of gc
+     * exists since R 3.5.0, older versions always run a full collection.
+     */
+    public static final String SAMPLE_EXPRESSION = "sum((if ('full' %in% names(formals(gc))) " +
+                                                   "gc(verbose = FALSE, full = FALSE) else gc(verbose = FALSE))[, 2])";
+
+    /**
+     * R expression running a full garbage collection and giving the memory still used in megabytes, works with
+     * every R version (gc is always a full collection before R 3.5.0)
+     */
+    public static final String COLLECT_EXPRESSION = "sum(gc(verbose = FALSE)[, 2])";
+
+    /**
+     * growth of the memory left by an ineffective recycling needed before collecting and recycling again
+     */
+    public static final double RECYCLE_BACKOFF_GROWTH = 0.25;
+
+    private final String name;
+
+    private final boolean enabled;
+
+    private final double thresholdMb;
+
+    private long sampleCount = 0;
+
+    private double lastUsedMb = 0;
+
+    private double maxUsedMb = 0;
+
+    private long collectionCount = 0;
+
+    private long recycleCount = 0;
+
+    /**
+     * memory left by the last recycling when it stayed above the threshold, 0 otherwise
+     */
+    private double floorMb = 0;
+
+    /**
+     * @param name        name of the watched interpreter, used in logs
+     * @param enabled     true if the interpreter memory must be sampled
+     * @param thresholdMb memory in megabytes above which the interpreter is collected then recycled, 0 to only
+     *                    sample the memory
+     */
+    public HeapWatchdog(String name, boolean enabled, double thresholdMb) {
+        this.name = name;
+        this.thresholdMb = Math.max(0, thresholdMb);
+        this.enabled = enabled || this.thresholdMb > 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double getThreshold() {
+        return thresholdMb;
+    }
+
+    /**
+     * Records the memory used after an evaluation
+     *
+     * @return true if the memory used is above the threshold, and above the backoff limit after an ineffective
+     * recycling
+     */
+    public synchronized boolean record(double usedMb) {
+        sampleCount++;
+        lastUsedMb = usedMb;
+        maxUsedMb = Math.max(maxUsedMb, usedMb);
+        if (usedMb <= thresholdMb) {
+            floorMb = 0;
+        }
+        return thresholdMb > 0 && usedMb > getLimit();
+    }
+
+    /**
+     * Records the memory used after a forced full collection
+     *
+     * @return true if the memory used is still above the threshold
+     */
+    public synchronized boolean recordCollection(double usedMb) {
+        collectionCount++;
+        return record(usedMb);
+    }
+
+    public synchronized void recycled() {
+        recycleCount++;
+    }
+
+    /**
+     * Records the memory left after recycling the interpreter
+     *
+     * @return true if the memory is still above the threshold, the interpreter is then not collected nor recycled
+     * again until the memory grows by {@link #RECYCLE_BACKOFF_GROWTH}
+     */
+    public synchronized boolean recycled(double usedMb) {
+        recycleCount++;
+        sampleCount++;
+        lastUsedMb = usedMb;
+        maxUsedMb = Math.max(maxUsedMb, usedMb);
+        boolean above = thresholdMb > 0 && usedMb > thresholdMb;
+        floorMb = above ? usedMb : 0;
+        return above;
+    }
+
+    /**
+     * @return the memory in megabytes above which the interpreter is collected, the threshold or the backoff limit
+     * after an ineffective recycling
+     */
+    public synchronized double getLimit() {
+        return Math.max(thresholdMb, floorMb * (1 + RECYCLE_BACKOFF_GROWTH));
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the memory used by R at the last sample, in megabytes
+     */
+    public synchronized double getLastUsed() {
+        return lastUsedMb;
+    }
+
+    /**
+     * @return the largest sampled memory used by R, in megabytes
+     */
+    public synchronized double getMaxUsed() {
+        return maxUsedMb;
+    }
+
+    /**
+     * @return the number of full collections forced because the threshold was crossed
+     */
+    public synchronized long getCollectionCount() {
+        return collectionCount;
+    }
+
+    /**
+     * @return the number of times the interpreter was recycled
+     */
+    public synchronized long getRecycleCount() {
+        return recycleCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + "[samples=" + sampleCount + ", last=" + lastUsedMb + "MB, max=" + maxUsedMb + "MB, threshold=" +
+               thresholdMb + "MB, limit=" + getLimit() + "MB, collections=" + collectionCount + ", recycles=" +
+               recycleCount + "]";
+    }
+}
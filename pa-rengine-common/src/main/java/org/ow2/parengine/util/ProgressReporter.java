@@ -0,0 +1,135 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.ow2.proactive.scripting.helper.progress.ProgressFile;
+
+
+/**
+ * Coalesces the progress reported by a task before writing it to the task progress file.
+ *
+ * A value equal to the last reported one is ignored. A new value is written at once if the last write is older
+ * than the minimum interval, otherwise it is kept in memory and replaced by the following reports, and written by
+ * a timer once the interval has elapsed, or earlier by a call to {@link #flush()}.
+ *
+ * @author Activeeon Team
+ */
+public class ProgressReporter {
+
+    private final String progressFile;
+
+    private final long minIntervalNanos;
+
+    /**
+     * last reported value, -1 if none
+     */
+    private int reported = -1;
+
+    /**
+     * last value written to the progress file, -1 if none
+     */
+    private int written = -1;
+
+    private long lastWrite;
+
+    private int writeCount = 0;
+
+    /**
+     * deferred write of the pending value, null if there is none
+     */
+    private ScheduledFuture<?> deferredWrite;
+
+    /**
+     * @param progressFile  path of the task progress file
+     * @param minIntervalMs minimum time in milliseconds between two writes of the progress file
+     */
+    public ProgressReporter(String progressFile, long minIntervalMs) {
+        this.progressFile = progressFile;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+    }
+
+    public String getProgressFile() {
+        return progressFile;
+    }
+
+    /**
+     * Records the task progress, from 0 to 100
+     */
+    public synchronized void report(int value) {
+        if (value == reported) {
+            return;
+        }
+        reported = value;
+        long now = System.nanoTime();
+        if (written < 0 || now - lastWrite >= minIntervalNanos) {
+            write(now);
+        } else if (deferredWrite == null) {
+            deferredWrite = FlushTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, minIntervalNanos - (now - lastWrite));
+        }
+    }
+
+    /**
+     * Writes the last reported value if it was not written yet
+     */
+    public synchronized void flush() {
+        if (deferredWrite != null) {
+            deferredWrite.cancel(false);
+            deferredWrite = null;
+        }
+        if (reported != written) {
+            write(System.nanoTime());
+        }
+    }
+
+    /**
+     * @return the last reported value, -1 if none
+     */
+    public synchronized int getProgress() {
+        return reported;
+    }
+
+    /**
+     * @return the number of writes of the progress file
+     */
+    public synchronized int getWriteCount() {
+        return writeCount;
+    }
+
+    private void write(long now) {
+        ProgressFile.setProgress(progressFile, reported);
+        written = reported;
+        lastWrite = now;
+        writeCount++;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.scheduler.common.SchedulerConstants;
+import org.ow2.proactive.scheduler.task.SchedulerVars;
+import org.ow2.proactive.scripting.Script;
+
+
+/**
+ * Counts the calls made to the R engine connection while preparing a task, in batched and per-call mode.
+ *
+ * @author Activeeon Team
+ */
+public class TestBatchedPreamble {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @After
+    public void clearProperty() {
+        System.clearProperty(PAREngine.BATCHED_PREAMBLE_PROPERTY);
+    }
+
+    @Test
+    public void batchedPreambleUsesOneRoundTrip() throws Exception {
+        CountingConnection connection = prepare(true);
+
+        assertEquals("The batched preamble must be sent in a single engine call", 1, connection.roundTrips);
+        assertEquals(1, connection.batches);
+        assertTrue(connection.lastBatch.containsKey("args"));
+        assertTrue(connection.lastBatch.containsKey("localspace"));
+        assertTrue(connection.lastBatch.containsKey(SchedulerConstants.VARIABLES_BINDING_NAME));
+        assertTrue(connection.lastBatch.containsKey(SchedulerConstants.GENERIC_INFO_BINDING_NAME));
+        assertTrue(connection.lastBatch.containsKey(SchedulerConstants.RESULT_METADATA_VARIABLE));
+        assertTrue(connection.lastBatch.containsKey(SchedulerConstants.RESULT_MAP_BINDING_NAME));
+        assertTrue(connection.lastBatch.containsKey(SchedulerConstants.DS_USER_BINDING_NAME));
+        assertTrue(connection.lastSetup.contains("options(warn=1)"));
+        assertTrue(connection.lastSetup.contains("setwd("));
+        assertTrue(connection.lastSetup.contains(".set_progress"));
+    }
+
+    @Test
+    public void perCallPreambleCanBeRestored() throws Exception {
+        System.setProperty(PAREngine.BATCHED_PREAMBLE_PROPERTY, "false");
+        CountingConnection connection = prepare(false);
+
+        assertEquals(0, connection.batches);
+        // warnings, locale, error handler, progress and setwd, then one call per each of the 10 assigned bindings
+        assertEquals(15, connection.roundTrips);
+    }
+
+    private CountingConnection prepare(boolean batched) throws Exception {
+        TestEngine engine = new TestEngine();
+        CountingConnection connection = new CountingConnection();
+        engine.engine = connection;
+        assertEquals(batched, engine.isBatchedPreamble());
+
+        Map<String, Serializable> variables = new HashMap<>();
+        variables.put(SchedulerVars.PA_TASK_PROGRESS_FILE.toString(), tmpFolder.newFile().getAbsolutePath());
+
+        Bindings bindings = new SimpleBindings();
+        bindings.put(Script.ARGUMENTS_NAME, new Serializable[] { "a", "b" });
+        bindings.put(SchedulerConstants.DS_SCRATCH_BINDING_NAME, tmpFolder.getRoot().getAbsolutePath());
+        bindings.put(SchedulerConstants.DS_USER_BINDING_NAME, "/user");
+        bindings.put(SchedulerConstants.DS_GLOBAL_BINDING_NAME, "/global");
+        bindings.put(SchedulerConstants.DS_INPUT_BINDING_NAME, "/input");
+        bindings.put(SchedulerConstants.DS_OUTPUT_BINDING_NAME, "/output");
+        bindings.put(SchedulerConstants.VARIABLES_BINDING_NAME, variables);
+        bindings.put(SchedulerConstants.GENERIC_INFO_BINDING_NAME, new HashMap<String, String>());
+        bindings.put(SchedulerConstants.RESULT_METADATA_VARIABLE, new HashMap<String, String>());
+        bindings.put(SchedulerConstants.RESULT_MAP_BINDING_NAME, new HashMap<String, Serializable>());
+
+        ScriptContext ctx = new SimpleScriptContext();
+        ctx.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        engine.prepareExecution(ctx, bindings);
+        return connection;
+    }
+
+    static class TestEngine extends PAREngine {
+
+        @Override
+        public Object eval(String script, ScriptContext context) throws ScriptException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class CountingConnection implements PARConnection {
+
+        int roundTrips = 0;
+
+        int batches = 0;
+
+        Map<String, Object> lastBatch;
+
+        String lastSetup;
+
+        /**
+         * values returned by engineHarvest, engine values are plain java objects in this connection
+         */
+        Map<String, Object> harvested = new HashMap<>();
+
+        List<String> lastHarvest;
+
+        @Override
+        public <T> T engineEval(String expr, ScriptContext ctx) {
+            roundTrips++;
+            return null;
+        }
+
+        @Override
+        public <T> T engineGet(String variable, ScriptContext ctx) {
+            roundTrips++;
+            return null;
+        }
+
+        @Override
+        public void engineSet(String variableName, Object javaValue, ScriptContext ctx) {
+            roundTrips++;
+        }
+
+        @Override
+        public <T> T engineAssignAndEval(Map<String, Object> variables, String expr, ScriptContext ctx) {
+            roundTrips++;
+            batches++;
+            lastBatch = new LinkedHashMap<>(variables);
+            lastSetup = expr;
+            return null;
+        }
+
+        @Override
+        public Map<String, Object> engineHarvest(List<String> variables, ScriptContext ctx) {
+            roundTrips++;
+            lastHarvest = variables;
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String variable : variables) {
+                if (harvested.containsKey(variable)) {
+                    values.put(variable, harvested.get(variable));
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public <T> T engineCast(Object rvalue, Class<T> type, ScriptContext ctx) {
+            return (T) rvalue;
+        }
+
+        @Override
+        public void checkParsing(String expression, ScriptContext ctx) throws ScriptException {
+        }
+
+        @Override
+        public void initializeOutput(File outputFile, ScriptContext ctx) {
+        }
+
+        @Override
+        public void terminateOutput(ScriptContext ctx) {
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void writeExceptionToError(Exception ex, ScriptContext ctx) {
+        }
+
+        @Override
+        public void writeMessageToError(Exception ex, ScriptContext ctx) {
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.junit.Test;
+import org.ow2.proactive.scheduler.common.SchedulerConstants;
+import org.ow2.proactive.scheduler.common.task.flow.FlowScript;
+import org.ow2.proactive.scripting.SelectionScript;
+import org.ow2.proactive.scripting.TaskScript;
+
+
+/**
+ * Checks that the bindings defined by a script are read from the R engine with a single call.
+ *
+ * @author Activeeon Team
+ */
+public class TestHarvestBindings {
+
+    @Test
+    public void existingBindingsAreReadInOneCall() throws Exception {
+        TestBatchedPreamble.TestEngine engine = new TestBatchedPreamble.TestEngine();
+        TestBatchedPreamble.CountingConnection connection = new TestBatchedPreamble.CountingConnection();
+        engine.engine = connection;
+
+        connection.harvested.put(TaskScript.RESULT_VARIABLE, "explicit");
+        connection.harvested.put(FlowScript.loopVariable, true);
+        connection.harvested.put(SchedulerConstants.VARIABLES_BINDING_NAME,
+                                 Collections.<String, Object> singletonMap("var", "changed"));
+        connection.harvested.put(SchedulerConstants.RESULT_METADATA_VARIABLE,
+                                 Collections.<String, Object> singletonMap("r.result", "true"));
+
+        Map<String, Serializable> variables = new HashMap<>();
+        variables.put("var", "initial");
+        Map<String, String> metadata = new HashMap<>();
+        Bindings bindings = new SimpleBindings();
+        bindings.put(SchedulerConstants.VARIABLES_BINDING_NAME, variables);
+        bindings.put(SchedulerConstants.RESULT_METADATA_VARIABLE, metadata);
+        ScriptContext ctx = new SimpleScriptContext();
+        ctx.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+
+        Object result = engine.retrieveBindings("implicit", bindings, ctx);
+
+        assertEquals(1, connection.roundTrips);
+        assertTrue(connection.lastHarvest.contains(FlowScript.replicateRunsVariable));
+        assertTrue(connection.lastHarvest.contains(SchedulerConstants.RESULT_MAP_BINDING_NAME));
+        assertEquals("explicit", result);
+        assertEquals("explicit", bindings.get(TaskScript.RESULT_VARIABLE));
+        assertEquals(true, bindings.get(FlowScript.loopVariable));
+        assertFalse(bindings.containsKey(SelectionScript.RESULT_VARIABLE));
+        assertEquals("changed", variables.get("var"));
+        assertTrue(metadata.isEmpty());
+    }
+
+    @Test
+    public void scriptValueIsUsedWithoutResultVariable() throws Exception {
+        TestBatchedPreamble.TestEngine engine = new TestBatchedPreamble.TestEngine();
+        engine.engine = new TestBatchedPreamble.CountingConnection();
+        Bindings bindings = new SimpleBindings();
+        ScriptContext ctx = new SimpleScriptContext();
+        ctx.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+
+        assertEquals("implicit", engine.retrieveBindings("implicit", bindings, ctx));
+        assertEquals(true, engine.retrieveBindings(null, bindings, ctx));
+    }
+}
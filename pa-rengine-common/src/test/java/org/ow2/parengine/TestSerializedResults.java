@@ -0,0 +1,110 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.data.RSerialized;
+import org.ow2.proactive.scheduler.common.SchedulerConstants;
+import org.ow2.proactive.scripting.TaskScript;
+
+
+/**
+ * Checks that the result variable is harvested in its serialized form when serialized results are enabled.
+ *
+ * @author Activeeon Team
+ */
+public class TestSerializedResults {
+
+    @After
+    public void clearProperty() {
+        System.clearProperty(PAREngine.SERIALIZED_RESULTS_PROPERTY);
+    }
+
+    @Test
+    public void resultIsHarvestedSerialized() throws Exception {
+        System.setProperty(PAREngine.SERIALIZED_RESULTS_PROPERTY, "true");
+        RSerialized serialized = new RSerialized(new byte[] { 1, 2, 3 });
+        TestBatchedPreamble.CountingConnection connection = new TestBatchedPreamble.CountingConnection();
+        connection.harvested.put(PAREngine.SERIALIZED_RESULT_VARIABLE, serialized);
+
+        Bindings bindings = retrieve(connection);
+
+        assertSame(serialized, bindings.get(TaskScript.RESULT_VARIABLE));
+        assertTrue(connection.lastHarvest.contains(PAREngine.SERIALIZED_RESULT_VARIABLE));
+        assertFalse("The result must not be read decoded", connection.lastHarvest.contains(TaskScript.RESULT_VARIABLE));
+    }
+
+    @Test
+    public void resultIsDecodedByDefault() throws Exception {
+        TestBatchedPreamble.CountingConnection connection = new TestBatchedPreamble.CountingConnection();
+        connection.harvested.put(TaskScript.RESULT_VARIABLE, "value");
+
+        Bindings bindings = retrieve(connection);
+
+        assertEquals("value", bindings.get(TaskScript.RESULT_VARIABLE));
+        assertFalse(connection.lastHarvest.contains(PAREngine.SERIALIZED_RESULT_VARIABLE));
+    }
+
+    @Test
+    public void harvestExpressionSerializesTheResult() {
+        String expression = PAREngine.harvestExpression(Arrays.asList(PAREngine.SERIALIZED_RESULT_VARIABLE,
+                                                                      SchedulerConstants.VARIABLES_BINDING_NAME));
+
+        assertTrue(expression.contains(".names <- c(\"" + SchedulerConstants.VARIABLES_BINDING_NAME + "\")"));
+        assertTrue(expression.contains("memCompress(serialize(get(\"" + TaskScript.RESULT_VARIABLE + "\""));
+    }
+
+    @Test
+    public void taskNamesAreQuoted() {
+        assertEquals("\"a\\\"b\\\\c\"", PAREngine.toRString("a\"b\\c"));
+    }
+
+    private Bindings retrieve(TestBatchedPreamble.CountingConnection connection) {
+        TestBatchedPreamble.TestEngine engine = new TestBatchedPreamble.TestEngine();
+        engine.engine = connection;
+        Bindings bindings = new SimpleBindings();
+        bindings.put(SchedulerConstants.VARIABLES_BINDING_NAME, new HashMap<String, Serializable>());
+        ScriptContext ctx = new SimpleScriptContext();
+        ctx.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        engine.retrieveBindings(null, bindings, ctx);
+        return bindings;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.parengine.convert.RSerializer;
+import org.ow2.parengine.data.RSerialized;
+import org.ow2.proactive.scheduler.common.task.TaskResult;
+import org.rosuda.REngine.REXPString;
+
+
+/**
+ * Checks the files written for the staged results of the parent tasks.
+ *
+ * @author Activeeon Team
+ */
+public class TestStagedResults {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void javaValuesAreWrittenSerialized() throws Exception {
+        File file = tmpFolder.newFile();
+        StagedResults.write(new String[] { "a", "b" }, file);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        RSerializer.write(new REXPString(new String[] { "a", "b" }), expected);
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void serializedValuesAreWrittenWithoutDecoding() throws Exception {
+        byte[] serialization = new byte[] { 'X', '\n', 0, 0, 0, 2 };
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(serialization);
+        }
+        File file = tmpFolder.newFile();
+        StagedResults.write(new RSerialized(compressed.toByteArray()), file);
+
+        assertArrayEquals(serialization, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void resultsListIsDefinedFromTheStagedFiles() throws Exception {
+        String expression = StagedResults.stage(new TaskResult[0], tmpFolder.newFolder());
+        assertTrue(expression.contains("registerS3method(\"[[\", \"pa.results\""));
+        assertTrue(expression.endsWith("results <- .pa.results(c()); rm(\".pa.results\", envir = globalenv())"));
+    }
+}
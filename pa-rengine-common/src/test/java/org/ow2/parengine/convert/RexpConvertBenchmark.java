@@ -0,0 +1,148 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import java.lang.reflect.Array;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares the dedicated primitive/boxed array conversions of {@link RexpConvert} with the reflective array copy
+ * they replace.
+ *
+ * Usage: RexpConvertBenchmark (runs the JMH benchmarks with gc profiling)
+ *
+ * @author Activeeon Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RexpConvertBenchmark {
+
+    @Param({ "1000", "1000000" })
+    public int size;
+
+    private int[] ints;
+
+    private double[] doubles;
+
+    private Integer[] boxedInts;
+
+    private Double[] boxedDoubles;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        ints = new int[size];
+        doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            ints[i] = random.nextInt();
+            doubles[i] = random.nextDouble();
+        }
+        boxedInts = RexpConvert.boxIntegers(ints);
+        boxedDoubles = RexpConvert.boxDoubles(doubles);
+    }
+
+    @Benchmark
+    public Integer[] boxIntegersReflective() {
+        return copyArray(ints, Integer[].class);
+    }
+
+    @Benchmark
+    public Integer[] boxIntegers() {
+        return RexpConvert.boxIntegers(ints);
+    }
+
+    @Benchmark
+    public Double[] boxDoublesReflective() {
+        return copyArray(doubles, Double[].class);
+    }
+
+    @Benchmark
+    public Double[] boxDoubles() {
+        return RexpConvert.boxDoubles(doubles);
+    }
+
+    @Benchmark
+    public int[] unboxIntegersReflective() {
+        return copyArray(boxedInts, int[].class);
+    }
+
+    @Benchmark
+    public int[] unboxIntegers() {
+        return RexpConvert.unboxIntegers(boxedInts);
+    }
+
+    @Benchmark
+    public double[] unboxDoublesReflective() {
+        return copyArray(boxedDoubles, double[].class);
+    }
+
+    @Benchmark
+    public double[] unboxDoubles() {
+        return RexpConvert.unboxDoubles(boxedDoubles);
+    }
+
+    /**
+     * Copy array contents to new array type, using reflection (the conversion used before the dedicated methods).
+     */
+    static <T> T copyArray(Object array, Class<T> newType) {
+        int length = Array.getLength(array);
+        @SuppressWarnings("unchecked")
+        T array2 = (T) Array.newInstance(newType.getComponentType(), length);
+        for (int i = 0; i < length; ++i) {
+            Object value = Array.get(array, i);
+            Array.set(array2, i, value);
+        }
+        return array2;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder().include(RexpConvertBenchmark.class.getSimpleName())
+                                              .addProfiler("gc")
+                                              .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.junit.Test;
+import org.ow2.parengine.PARConnection;
+import org.ow2.parengine.PAREngine;
+import org.ow2.proactive.scheduler.common.SchedulerConstants;
+import org.ow2.proactive.scripting.TaskScript;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPGenericVector;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.REXPSymbol;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * R lists are converted element by element when read, and fully when serialized, not when the task ends.
+ *
+ * @author Activeeon Team
+ */
+public class TestLazyRConversion {
+
+    @Test
+    public void unreadElementsAreNotConverted() throws Exception {
+        // a symbol cannot be converted, reading it fails
+        Map<?, ?> map = (Map<?, ?>) RexpConvert.rexp2jobj(named(new String[] { "a", "b" },
+                                                               new REXPString("x"),
+                                                               new REXPSymbol("s")));
+        assertEquals(2, map.size());
+        assertEquals("x", map.get("a"));
+        assertTrue(map.containsKey("b"));
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(map.keySet()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkingTheViewsRaisesTheConversionErrors() throws Exception {
+        Object value = RexpConvert.rexp2jobj(named(new String[] { "a", "b" },
+                                                   new REXPString("x"),
+                                                   new REXPGenericVector(new RList(new REXP[] { new REXPSymbol("s") }))));
+        RexpConvert.checkViews(value);
+    }
+
+    @Test
+    public void checkingTheViewsDoesNotConvertThem() throws Exception {
+        REXP inner = new REXPGenericVector(new RList(new REXP[] { new REXPInteger(1) }));
+        LazyRMap map = (LazyRMap) RexpConvert.rexp2jobj(named(new String[] { "a", "list" }, new REXPString("x"), inner));
+        assertEquals("x", map.get("a"));
+
+        RexpConvert.checkViews(map);
+
+        assertTrue(map.isConverted("a"));
+        assertFalse(map.isConverted("list"));
+    }
+
+    @Test
+    public void retrievedBindingsAreNotConverted() throws Exception {
+        REXP inner = new REXPGenericVector(new RList(new REXP[] { new REXPInteger(1) }));
+        Map<String, Object> harvested = new HashMap<>();
+        harvested.put(TaskScript.RESULT_VARIABLE,
+                      RexpConvert.rexp2jobj(named(new String[] { "a", "b" }, new REXPString("x"), inner)));
+        harvested.put(SchedulerConstants.RESULT_MAP_BINDING_NAME,
+                      RexpConvert.rexp2jobj(named(new String[] { "entry" }, inner)));
+
+        Map<String, Serializable> resultMap = new HashMap<>();
+        Bindings bindings = new SimpleBindings();
+        bindings.put(SchedulerConstants.RESULT_MAP_BINDING_NAME, resultMap);
+        ScriptContext ctx = new SimpleScriptContext();
+        ctx.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+
+        Object result = new HarvestEngine(harvested).retrieve(bindings, ctx);
+
+        assertTrue(result instanceof LazyRMap);
+        assertSame(result, bindings.get(TaskScript.RESULT_VARIABLE));
+        assertFalse(((LazyRMap) result).isConverted("a"));
+        assertFalse(((LazyRMap) result).isConverted("b"));
+        LazyRList entry = (LazyRList) resultMap.get("entry");
+        assertFalse(entry.isConverted(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void retrievedBindingsWhichCannotBeConvertedFail() throws Exception {
+        Map<String, Object> harvested = new HashMap<>();
+        harvested.put(TaskScript.RESULT_VARIABLE,
+                      RexpConvert.rexp2jobj(named(new String[] { "a" }, new REXPSymbol("s"))));
+        Bindings bindings = new SimpleBindings();
+        ScriptContext ctx = new SimpleScriptContext();
+        ctx.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+
+        new HarvestEngine(harvested).retrieve(bindings, ctx);
+    }
+
+    @Test
+    public void duplicatedNamesKeepTheLastValue() throws Exception {
+        Map<?, ?> map = (Map<?, ?>) RexpConvert.rexp2jobj(named(new String[] { "a", "b", "a" },
+                                                               new REXPInteger(1),
+                                                               new REXPInteger(2),
+                                                               new REXPInteger(3)));
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", 3);
+        expected.put("b", 2);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public void viewsAreSerializedAsPlainCollections() throws Exception {
+        REXP inner = new REXPGenericVector(new RList(new REXP[] { new REXPInteger(1), new REXPString("y") }));
+        Object converted = RexpConvert.rexp2jobj(named(new String[] { "list" }, inner));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(converted);
+        }
+        Object copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = in.readObject();
+        }
+        assertEquals(LinkedHashMap.class, copy.getClass());
+        List<?> list = (List<?>) ((Map<?, ?>) copy).get("list");
+        assertEquals(ArrayList.class, list.getClass());
+        assertEquals(Arrays.asList(1, "y"), list);
+        assertEquals(converted, copy);
+    }
+
+    /**
+     * Engine reading the bindings from a stubbed connection, the harvested values are already converted
+     */
+    static class HarvestEngine extends PAREngine {
+
+        HarvestEngine(final Map<String, Object> harvested) {
+            engine = (PARConnection) Proxy.newProxyInstance(PARConnection.class.getClassLoader(),
+                                                            new Class<?>[] { PARConnection.class },
+                                                            new InvocationHandler() {
+                                                                @Override
+                                                                public Object invoke(Object proxy, Method method,
+                                                                        Object[] args) {
+                                                                    switch (method.getName()) {
+                                                                        case "engineHarvest":
+                                                                            return harvested;
+                                                                        case "engineCast":
+                                                                            return args[0];
+                                                                        default:
+                                                                            return null;
+                                                                    }
+                                                                }
+                                                            });
+        }
+
+        Object retrieve(Bindings bindings, ScriptContext ctx) {
+            return retrieveBindings(null, bindings, ctx);
+        }
+
+        @Override
+        public Object eval(String script, ScriptContext context) throws ScriptException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static REXP named(String[] names, REXP... values) {
+        return new REXPGenericVector(new RList(values, names));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.ow2.parengine.RObject;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPGenericVector;
+import org.rosuda.REngine.REXPMismatchException;
+import org.rosuda.REngine.REXPString;
+
+
+/**
+ * Lookup of the codecs by java type, and codecs registered for other types.
+ *
+ * @author Activeeon Team
+ */
+public class TestRCodecRegistry {
+
+    @Test
+    public void subtypesUseTheCodecOfTheirSupertype() {
+        RCodecRegistry codecs = RexpConvert.getCodecs();
+        assertSame(codecs.lookup(Map.class), codecs.lookup(LinkedHashMap.class));
+        assertSame(codecs.lookup(List.class), codecs.lookup(ArrayList.class));
+        assertSame(codecs.lookup(Object[].class), codecs.lookup(Map[].class));
+        assertNull(codecs.lookup(Thread.class));
+    }
+
+    @Test
+    public void mapCodecIsPreferredToRObjectCodec() throws Exception {
+        REXP rexp = RexpConvert.jobj2rexp(new MapObject());
+        assertTrue(rexp instanceof REXPGenericVector);
+        assertEquals("k", rexp.asList().keyAt(0));
+    }
+
+    @Test
+    public void registeredCodecIsUsedInBothDirections() throws Exception {
+        RexpConvert.getCodecs().register(Temperature.class, new RCodec<Temperature>() {
+            @Override
+            public REXP toR(Temperature value) {
+                return new REXPDouble(value.celsius);
+            }
+
+            @Override
+            public Temperature fromR(REXP rexp, Class<?> type) throws REXPMismatchException {
+                return new Temperature(rexp.asDouble());
+            }
+        });
+
+        REXP rexp = RexpConvert.jobj2rexp(Arrays.asList(new Temperature(21.5), new Temperature(-3)));
+        assertArrayEquals(new double[] { 21.5 }, rexp.asList().at(0).asDoubles(), 0);
+
+        Temperature temperature = (Temperature) RexpConvert.rexp2jobj(new REXPDouble(12), Temperature.class);
+        assertEquals(12, temperature.celsius, 0);
+    }
+
+    @Test(expected = REXPMismatchException.class)
+    public void resultMustMatchTheRequestedType() throws Exception {
+        RexpConvert.rexp2jobj(new REXPString("a"), org.ow2.parengine.data.RIntVector.class);
+    }
+
+    public static class Temperature {
+
+        final double celsius;
+
+        Temperature(double celsius) {
+            this.celsius = celsius;
+        }
+    }
+
+    public static class MapObject extends LinkedHashMap<String, Object> implements RObject {
+
+        MapObject() {
+            put("k", 1);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.ow2.parengine.data.RNA;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPGenericVector;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPLogical;
+import org.rosuda.REngine.REXPNull;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Compares the output of RSerializer with the bytes written by serialize(x, NULL) in R.
+ *
+ * @author Activeeon Team
+ */
+public class TestRSerializer {
+
+    private static final int ASCII_CHARSXP = 9 | (64 << 12);
+
+    @Test
+    public void writesNull() throws Exception {
+        Expected expected = new Expected();
+        expected.out.writeInt(254);
+        check(expected, new REXPNull());
+    }
+
+    @Test
+    public void writesIntegersWithNA() throws Exception {
+        Expected expected = new Expected();
+        expected.out.writeInt(13);
+        expected.out.writeInt(2);
+        expected.out.writeInt(1);
+        expected.out.writeInt(RNA.INTEGER);
+        check(expected, new REXPInteger(new int[] { 1, RNA.INTEGER }));
+    }
+
+    @Test
+    public void writesDoublesKeepingNA() throws Exception {
+        Expected expected = new Expected();
+        expected.out.writeInt(14);
+        expected.out.writeInt(2);
+        expected.out.writeLong(Double.doubleToLongBits(1.5));
+        expected.out.writeLong(Double.doubleToRawLongBits(RNA.DOUBLE));
+        check(expected, new REXPDouble(new double[] { 1.5, RNA.DOUBLE }));
+    }
+
+    @Test
+    public void writesStringsWithNA() throws Exception {
+        Expected expected = new Expected();
+        expected.out.writeInt(16);
+        expected.out.writeInt(2);
+        expected.string("ab");
+        expected.out.writeInt(9);
+        expected.out.writeInt(-1);
+        check(expected, new REXPString(new String[] { "ab", null }));
+    }
+
+    @Test
+    public void writesNamedListsWithAttributes() throws Exception {
+        Expected expected = new Expected();
+        // list(a = NA)
+        expected.out.writeInt(19 | (1 << 9));
+        expected.out.writeInt(1);
+        expected.out.writeInt(10);
+        expected.out.writeInt(1);
+        expected.out.writeInt(RNA.INTEGER);
+        expected.out.writeInt(2 | (1 << 10));
+        expected.out.writeInt(1);
+        expected.string("names");
+        expected.out.writeInt(16);
+        expected.out.writeInt(1);
+        expected.string("a");
+        expected.out.writeInt(254);
+        check(expected,
+              new REXPGenericVector(new RList(new REXP[] { new REXPLogical(REXPLogical.NA) }, new String[] { "a" })));
+    }
+
+    private void check(Expected expected, REXP rexp) throws Exception {
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        RSerializer.write(rexp, actual);
+        assertArrayEquals(expected.bytes.toByteArray(), actual.toByteArray());
+    }
+
+    private static class Expected {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        Expected() throws Exception {
+            out.writeBytes("X\n");
+            out.writeInt(2);
+            out.writeInt(3 << 16);
+            out.writeInt((2 << 16) | (3 << 8));
+        }
+
+        void string(String value) throws Exception {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(ASCII_CHARSXP);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPLogical;
+
+
+/**
+ * Conversions between boxed java arrays and R vectors.
+ *
+ * @author Activeeon Team
+ */
+public class TestRexpConvertArrays {
+
+    @Test
+    public void boxedArraysToR() throws Exception {
+        REXP integers = RexpConvert.jobj2rexp(new Integer[] { 1, null, 3 });
+        assertTrue(integers instanceof REXPInteger);
+        assertArrayEquals(new boolean[] { false, true, false }, integers.isNA());
+        assertEquals(3, integers.asIntegers()[2]);
+
+        REXP doubles = RexpConvert.jobj2rexp(new Double[] { 1.5, null });
+        assertTrue(doubles instanceof REXPDouble);
+        assertArrayEquals(new boolean[] { false, true }, doubles.isNA());
+        assertEquals(1.5, doubles.asDoubles()[0], 0);
+
+        REXP logicals = RexpConvert.jobj2rexp(new Boolean[] { true, false, null });
+        assertTrue(logicals instanceof REXPLogical);
+        assertArrayEquals(new boolean[] { true, false, false }, ((REXPLogical) logicals).isTRUE());
+        assertArrayEquals(new boolean[] { false, false, true }, logicals.isNA());
+    }
+
+    @Test
+    public void rToBoxedArrays() throws Exception {
+        assertArrayEquals(new Integer[] { 1, 2 },
+                          (Integer[]) RexpConvert.rexp2jobj(new REXPInteger(new int[] { 1, 2 }), Integer[].class));
+        assertArrayEquals(new Double[] { 0.5, 2.0 },
+                          (Double[]) RexpConvert.rexp2jobj(new REXPDouble(new double[] { 0.5, 2 }), Double[].class));
+        assertArrayEquals(new Boolean[] { true, false },
+                          (Boolean[]) RexpConvert.rexp2jobj(new REXPLogical(new boolean[] { true, false }),
+                                                            Boolean[].class));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.data.RDataFrame;
+import org.ow2.parengine.data.RDoubleVector;
+import org.ow2.parengine.data.RFactorVector;
+import org.ow2.parengine.data.RIntVector;
+import org.ow2.parengine.data.RLogicalVector;
+import org.ow2.parengine.data.RNA;
+import org.ow2.parengine.data.RStringVector;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPFactor;
+import org.rosuda.REngine.REXPGenericVector;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPList;
+import org.rosuda.REngine.REXPLogical;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Conversions between R data frames and {@link RDataFrame}.
+ *
+ * @author Activeeon Team
+ */
+public class TestRexpConvertDataFrame {
+
+    @After
+    public void restoreDefaults() {
+        RexpConvert.useDataFrames = false;
+    }
+
+    @Test
+    public void dataFramesAreMapsUnlessEnabled() throws Exception {
+        REXP rexp = dataFrame(new REXPString(new String[] { "r1", "r2", "r3" }));
+        Map<?, ?> columns = (Map<?, ?>) RexpConvert.rexp2jobj(rexp);
+        assertEquals(Arrays.asList("id", "value", "flag", "name", "group"), Arrays.asList(columns.keySet().toArray()));
+
+        RexpConvert.useDataFrames = true;
+        assertTrue(RexpConvert.rexp2jobj(rexp) instanceof RDataFrame);
+    }
+
+    @Test
+    public void dataFrameKeepsTypesFactorsAndRowNames() throws Exception {
+        REXP rexp = dataFrame(new REXPString(new String[] { "r1", "r2", "r3" }));
+
+        RDataFrame dataFrame = (RDataFrame) RexpConvert.rexp2jobj(rexp, RDataFrame.class);
+        assertEquals(3, dataFrame.getNrow());
+        assertEquals(Arrays.asList("id", "value", "flag", "name", "group"), dataFrame.getColumnNames());
+        assertArrayEquals(new String[] { "r1", "r2", "r3" }, dataFrame.getRowNames());
+
+        RIntVector id = (RIntVector) dataFrame.getColumn("id");
+        assertTrue(id.isNA(1));
+        assertEquals(3, id.get(2));
+        RDoubleVector value = (RDoubleVector) dataFrame.getColumn("value");
+        assertTrue(value.isNA(2));
+        assertFalse(value.isNA(1));
+        RLogicalVector flag = (RLogicalVector) dataFrame.getColumn("flag");
+        assertTrue(flag.get(0));
+        assertTrue(flag.isNA(2));
+        RStringVector name = (RStringVector) dataFrame.getColumn("name");
+        assertNull(name.get(1));
+        RFactorVector group = (RFactorVector) dataFrame.getColumn("group");
+        assertArrayEquals(new String[] { "a", "b" }, group.getLevels());
+        assertEquals("b", group.get(1));
+        assertTrue(group.isNA(2));
+    }
+
+    @Test
+    public void dataFrameRoundTrip() throws Exception {
+        RDataFrame dataFrame = (RDataFrame) RexpConvert.rexp2jobj(dataFrame(new REXPInteger(new int[] { RNA.INTEGER,
+                                                                                                         -3 })),
+                                                                  RDataFrame.class);
+        assertNull(dataFrame.getRowNames());
+
+        REXP back = RexpConvert.jobj2rexp(dataFrame);
+        assertTrue(back.inherits("data.frame"));
+        assertArrayEquals(new int[] { RNA.INTEGER, -3 }, back.getAttribute("row.names").asIntegers());
+        RList columns = back.asList();
+        assertEquals("group", columns.keyAt(4));
+        assertTrue(columns.at(4).isFactor());
+        assertArrayEquals(new String[] { "a", "b", null }, columns.at(4).asStrings());
+        assertArrayEquals(new boolean[] { false, false, true }, columns.at(2).isNA());
+
+        RDataFrame again = (RDataFrame) RexpConvert.rexp2jobj(back, RDataFrame.class);
+        for (String column : dataFrame.getColumnNames()) {
+            assertEquals(dataFrame.getColumn(column), again.getColumn(column));
+        }
+    }
+
+    @Test
+    public void dataFrameWithListColumnStaysAMap() throws Exception {
+        RexpConvert.useDataFrames = true;
+        RList columns = new RList(new REXP[] { new REXPGenericVector(new RList(new REXP[] { new REXPInteger(1) })) },
+                                  new String[] { "l" });
+        RList attrs = new RList(new REXP[] { new REXPString("l"), new REXPString("data.frame"),
+                                             new REXPInteger(new int[] { RNA.INTEGER, -1 }) },
+                                new String[] { "names", "class", "row.names" });
+        Object converted = RexpConvert.rexp2jobj(new REXPGenericVector(columns, new REXPList(attrs)));
+        assertTrue(converted instanceof Map);
+    }
+
+    private static REXP dataFrame(REXP rowNames) {
+        String[] names = { "id", "value", "flag", "name", "group" };
+        REXP[] columns = { new REXPInteger(new int[] { 1, RNA.INTEGER, 3 }),
+                           new REXPDouble(new double[] { 0.5, Double.NaN, RNA.DOUBLE }),
+                           new REXPLogical(new byte[] { RNA.LOGICAL_TRUE, RNA.LOGICAL_FALSE, RNA.LOGICAL }),
+                           new REXPString(new String[] { "x", null, "z" }),
+                           new REXPFactor(new int[] { 1, 2, RNA.INTEGER }, new String[] { "a", "b" }) };
+        RList attrs = new RList(new REXP[] { new REXPString(names), new REXPString("data.frame"), rowNames },
+                                new String[] { "names", "class", "row.names" });
+        return new REXPGenericVector(new RList(columns, names), new REXPList(attrs));
+    }
+}
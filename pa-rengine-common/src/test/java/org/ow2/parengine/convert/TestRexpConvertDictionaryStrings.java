@@ -0,0 +1,123 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.data.RDataFrame;
+import org.ow2.parengine.data.RDictionaryStringVector;
+import org.ow2.parengine.data.RFactorVector;
+import org.ow2.parengine.data.RNA;
+import org.ow2.parengine.data.RStringVector;
+import org.ow2.parengine.data.RVector;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPFactor;
+import org.rosuda.REngine.REXPString;
+
+
+/**
+ * Character vectors converted to RDictionaryStringVector keep one String per distinct value.
+ *
+ * @author Activeeon Team
+ */
+public class TestRexpConvertDictionaryStrings {
+
+    private static final String[] VALUES = new String[] { "b", "a", null, "b", "b", "a" };
+
+    @After
+    public void restoreDefaults() {
+        RexpConvert.useDictionaryStrings = false;
+    }
+
+    @Test
+    public void encodesDistinctValuesOnce() throws Exception {
+        RDictionaryStringVector vector = (RDictionaryStringVector) RexpConvert.rexp2jobj(new REXPString(VALUES),
+                                                                                         RDictionaryStringVector.class);
+
+        assertArrayEquals(new String[] { "b", "a" }, vector.getDictionary());
+        assertArrayEquals(new int[] { 1, 2, RNA.INTEGER, 1, 1, 2 }, vector.getCodes());
+        assertTrue(vector.isNA(2));
+        assertNull(vector.get(2));
+        assertSame(vector.get(0), vector.get(3));
+        assertArrayEquals(VALUES, vector.decode());
+    }
+
+    @Test
+    public void characterVectorsAreEncodedWhenEnabled() throws Exception {
+        assertTrue(RexpConvert.rexp2jobj(new REXPString(VALUES)) instanceof String[]);
+        assertTrue(RexpConvert.rexp2jobj(new REXPString(VALUES), RVector.class) instanceof RStringVector);
+
+        RexpConvert.useDictionaryStrings = true;
+        assertTrue(RexpConvert.rexp2jobj(new REXPString(VALUES)) instanceof RDictionaryStringVector);
+        assertTrue(RexpConvert.rexp2jobj(new REXPString(VALUES), RVector.class) instanceof RDictionaryStringVector);
+        assertEquals("single", RexpConvert.rexp2jobj(new REXPString("single")));
+
+        RDataFrame dataFrame = new RDataFrame(VALUES.length);
+        dataFrame.addColumn("name", new RStringVector(VALUES));
+        RDataFrame converted = (RDataFrame) RexpConvert.rexp2jobj(RexpConvert.jobj2rexp(dataFrame), RDataFrame.class);
+        assertTrue(converted.getColumn("name") instanceof RDictionaryStringVector);
+    }
+
+    @Test
+    public void convertsBackToCharacterOrFactor() throws Exception {
+        RDictionaryStringVector vector = RDictionaryStringVector.encode(VALUES);
+
+        REXP rexp = RexpConvert.jobj2rexp(vector);
+        assertTrue(rexp instanceof REXPString);
+        assertArrayEquals(VALUES, rexp.asStrings());
+
+        RFactorVector factor = vector.toFactor();
+        REXP rfactor = RexpConvert.jobj2rexp(factor);
+        assertTrue(rfactor instanceof REXPFactor);
+        assertArrayEquals(new String[] { "b", "a" }, rfactor.getAttribute("levels").asStrings());
+        assertArrayEquals(VALUES, rfactor.asStrings());
+    }
+
+    @Test
+    public void serializesTheDictionary() throws Exception {
+        RDictionaryStringVector vector = RDictionaryStringVector.encode(VALUES);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(vector);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            RDictionaryStringVector copy = (RDictionaryStringVector) in.readObject();
+            assertEquals(vector, copy);
+            assertSame(copy.get(0), copy.get(3));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.data.RDoubleMatrix;
+import org.ow2.parengine.data.RIntMatrix;
+import org.ow2.parengine.data.RLogicalMatrix;
+import org.ow2.parengine.data.RMatrix;
+import org.ow2.parengine.data.RNA;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPList;
+import org.rosuda.REngine.REXPLogical;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Conversions between R matrices and column-major java matrices.
+ *
+ * @author Activeeon Team
+ */
+public class TestRexpConvertMatrix {
+
+    @After
+    public void restoreDefaults() {
+        RexpConvert.useMatrices = false;
+    }
+
+    @Test
+    public void matricesKeepTheirDefaultTypesUnlessEnabled() throws Exception {
+        REXP doubles = new REXPDouble(new double[] { 1, 2, 3, 4, 5, 6 }, dim(2, 3));
+        assertArrayEquals(new double[] { 1, 3, 5 }, ((double[][]) RexpConvert.rexp2jobj(doubles))[0], 0);
+        REXP ints = new REXPInteger(new int[] { 1, 2, 3, 4 }, dim(2, 2));
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, (int[]) RexpConvert.rexp2jobj(ints));
+        assertTrue(RexpConvert.rexp2jobj(ints, RMatrix.class) instanceof RIntMatrix);
+
+        RexpConvert.useMatrices = true;
+        assertTrue(RexpConvert.rexp2jobj(doubles) instanceof RDoubleMatrix);
+        assertTrue(RexpConvert.rexp2jobj(ints) instanceof RIntMatrix);
+    }
+
+    @Test
+    public void doubleMatrixSharesTheRBuffer() throws Exception {
+        double[] values = { 1, 2, 3, 4, 5, RNA.DOUBLE };
+        REXP rexp = new REXPDouble(values, dim(2, 3));
+
+        RDoubleMatrix matrix = (RDoubleMatrix) RexpConvert.rexp2jobj(rexp, RDoubleMatrix.class);
+        assertSame(values, matrix.getValues());
+        assertEquals(2, matrix.getNrow());
+        assertEquals(3, matrix.getNcol());
+        assertEquals(3.0, matrix.get(0, 1), 0);
+        assertTrue(matrix.isNA(1, 2));
+        assertFalse(matrix.isNA(0, 2));
+        assertArrayEquals(new double[] { 1, 3, 5 }, matrix.toRows()[0], 0);
+
+        REXP back = RexpConvert.jobj2rexp(matrix);
+        assertSame(values, back.asDoubles());
+        assertArrayEquals(new int[] { 2, 3 }, back.dim());
+    }
+
+    @Test
+    public void intAndLogicalMatrices() throws Exception {
+        int[] ints = { 1, RNA.INTEGER, 3, 4 };
+        RIntMatrix intMatrix = (RIntMatrix) RexpConvert.rexp2jobj(new REXPInteger(ints, dim(2, 2)), RMatrix.class);
+        assertSame(ints, intMatrix.getValues());
+        assertTrue(intMatrix.isNA(1, 0));
+        assertEquals(4, intMatrix.get(1, 1));
+
+        byte[] logicals = { RNA.LOGICAL_TRUE, RNA.LOGICAL_FALSE, RNA.LOGICAL };
+        RLogicalMatrix logicalMatrix = (RLogicalMatrix) RexpConvert.rexp2jobj(new REXPLogical(logicals, dim(3, 1)),
+                                                                                RMatrix.class);
+        assertTrue(logicalMatrix.get(0, 0));
+        assertFalse(logicalMatrix.get(1, 0));
+        assertTrue(logicalMatrix.isNA(2, 0));
+
+        REXP back = RexpConvert.jobj2rexp(logicalMatrix);
+        assertTrue(back instanceof REXPLogical);
+        assertArrayEquals(new boolean[] { false, false, true }, back.isNA());
+        assertArrayEquals(new int[] { 3, 1 }, back.dim());
+    }
+
+    @Test
+    public void rowArraysAreConvertedColumnMajor() throws Exception {
+        REXP rexp = RexpConvert.jobj2rexp(new double[][] { { 1, 2, 3 }, { 4, 5, 6 } });
+        assertArrayEquals(new double[] { 1, 4, 2, 5, 3, 6 }, rexp.asDoubles(), 0);
+        assertArrayEquals(new int[] { 2, 3 }, rexp.dim());
+        assertArrayEquals(new double[] { 4, 5, 6 }, ((double[][]) RexpConvert.rexp2jobj(rexp, double[][].class))[1], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dimensionsMustMatchTheBuffer() {
+        new RIntMatrix(2, 2, new int[3]);
+    }
+
+    private static REXPList dim(int nrow, int ncol) {
+        RList attributes = new RList();
+        attributes.put("dim", new REXPInteger(new int[] { nrow, ncol }));
+        return new REXPList(attributes);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.RObject;
+import org.ow2.parengine.util.ClassAccessors;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Conversions of RObjects and beans, through the cached class accessors.
+ *
+ * @author Activeeon Team
+ */
+public class TestRexpConvertObjects {
+
+    @After
+    public void disableBeans() {
+        RexpConvert.useBean = false;
+    }
+
+    @Test
+    public void robjectRoundTrip() throws Exception {
+        Point point = new Point();
+        point.x = 3;
+        point.label = "p";
+
+        REXP rexp = RexpConvert.jobj2rexp(point);
+        RList rlist = rexp.asList();
+        assertEquals(2, rlist.size());
+        assertEquals(3, rlist.at("x").asInteger());
+
+        Point back = (Point) RexpConvert.rexp2jobj(rexp, Point.class);
+        assertEquals(3, back.x);
+        assertEquals("p", back.label);
+    }
+
+    @Test
+    public void unconvertibleVariablesAreLeftOut() throws Exception {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("a", 1);
+        variables.put("b", new Object());
+        variables.put("c", "x");
+        Map<String, RuntimeException> failures = new LinkedHashMap<>();
+
+        RList rlist = RexpConvert.variables2rexp(variables, failures).asList();
+        assertEquals(Arrays.asList("a", "c"), Arrays.asList(rlist.keys()));
+        assertEquals("x", rlist.at("c").asString());
+        assertEquals(Arrays.asList("b"), Arrays.asList(failures.keySet().toArray()));
+    }
+
+    @Test
+    public void beanRoundTrip() throws Exception {
+        RexpConvert.useBean = true;
+        Measure measure = new Measure();
+        measure.setName("m");
+        measure.setValue(1.5);
+
+        REXP rexp = RexpConvert.jobj2rexp(measure);
+        assertEquals(2, rexp.asList().size());
+
+        Measure back = (Measure) RexpConvert.rexp2jobj(rexp, Measure.class);
+        assertEquals("m", back.getName());
+        assertEquals(1.5, back.getValue(), 0);
+    }
+
+    @Test
+    public void accessorsAreResolvedOncePerClass() {
+        assertSame(ClassAccessors.forFields(Point.class), ClassAccessors.forFields(Point.class));
+        assertSame(ClassAccessors.forBean(Measure.class), ClassAccessors.forBean(Measure.class));
+    }
+
+    public static class Point implements RObject {
+
+        public static final int DIMENSIONS = 2;
+
+        public int x;
+
+        public String label;
+    }
+
+    public static class Measure {
+
+        private String name;
+
+        private double value;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.data.RDoubleVector;
+import org.ow2.parengine.data.RFactorVector;
+import org.ow2.parengine.data.RIntVector;
+import org.ow2.parengine.data.RLogicalVector;
+import org.ow2.parengine.data.RNA;
+import org.ow2.parengine.data.RStringVector;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPDouble;
+import org.rosuda.REngine.REXPFactor;
+import org.rosuda.REngine.REXPGenericVector;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPLogical;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.RList;
+
+
+/**
+ * Atomic vectors converted to RVector keep their missing values.
+ *
+ * @author Activeeon Team
+ */
+public class TestRexpConvertVectors {
+
+    @After
+    public void disableVectors() {
+        RexpConvert.useVectors = false;
+    }
+
+    @Test
+    public void arraysAreTheDefault() throws Exception {
+        assertTrue(RexpConvert.rexp2jobj(new REXPInteger(new int[] { 1, RNA.INTEGER })) instanceof int[]);
+        assertArrayEquals(new boolean[] { true, false },
+                          (boolean[]) RexpConvert.rexp2jobj(new REXPLogical(new byte[] { RNA.LOGICAL_TRUE,
+                                                                                        RNA.LOGICAL })));
+    }
+
+    @Test
+    public void vectorsKeepMissingValues() throws Exception {
+        RexpConvert.useVectors = true;
+
+        int[] ints = { 1, RNA.INTEGER, 3 };
+        RIntVector intVector = (RIntVector) RexpConvert.rexp2jobj(new REXPInteger(ints));
+        assertSame(ints, intVector.getValues());
+        assertEquals(bits(1), intVector.getNA());
+
+        RDoubleVector doubleVector = (RDoubleVector) RexpConvert.rexp2jobj(new REXPDouble(new double[] { Double.NaN,
+                                                                                                         RNA.DOUBLE }));
+        assertFalse(doubleVector.isNA(0));
+        assertTrue(doubleVector.isNA(1));
+
+        RLogicalVector logicalVector = (RLogicalVector) RexpConvert.rexp2jobj(new REXPLogical(new byte[] { RNA.LOGICAL_TRUE,
+                                                                                                          RNA.LOGICAL }));
+        assertTrue(logicalVector.get(0));
+        assertTrue(logicalVector.isNA(1));
+
+        RStringVector stringVector = (RStringVector) RexpConvert.rexp2jobj(new REXPString(new String[] { null, "b" }));
+        assertEquals(bits(0), stringVector.getNA());
+
+        RFactorVector factor = (RFactorVector) RexpConvert.rexp2jobj(new REXPFactor(new int[] { 2, 1 },
+                                                                                    new String[] { "x", "y" }));
+        assertEquals("y", factor.get(0));
+    }
+
+    @Test
+    public void singleValuesAreVectorsOnlyWhenMissing() throws Exception {
+        RexpConvert.useVectors = true;
+
+        assertEquals(3, RexpConvert.rexp2jobj(new REXPInteger(3)));
+        assertTrue(((RIntVector) RexpConvert.rexp2jobj(new REXPInteger(RNA.INTEGER))).isNA(0));
+        // lists of one element are not atomic vectors
+        REXP list = new REXPGenericVector(new RList(new REXP[] { new REXPInteger(1) }));
+        assertEquals(1, ((java.util.List<?>) RexpConvert.rexp2jobj(list)).size());
+    }
+
+    @Test
+    public void vectorsRoundTrip() throws Exception {
+        RLogicalVector vector = new RLogicalVector(new boolean[] { true, true, false }, null);
+        vector.setNA(1);
+        REXP rexp = RexpConvert.jobj2rexp(vector);
+        assertArrayEquals(new boolean[] { false, true, false }, rexp.isNA());
+        assertEquals(vector, RexpConvert.rexp2jobj(rexp, RLogicalVector.class));
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+
+/**
+ * Checks when the console text buffered by CoalescingWriter reaches its target.
+ *
+ * @author Activeeon Team
+ */
+public class TestCoalescingWriter {
+
+    @Test
+    public void smallWritesAreCoalesced() throws Exception {
+        CountingWriter target = new CountingWriter();
+        CoalescingWriter writer = new CoalescingWriter(target, 10, 60000);
+        for (int i = 0; i < 4; i++) {
+            writer.write("ab");
+        }
+        assertEquals("", target.toString());
+        writer.write("cde");
+        assertEquals("ababababcde", target.toString());
+        assertEquals(1, target.writes);
+        assertEquals(1, target.flushes);
+    }
+
+    @Test
+    public void oldTextIsWrittenWithoutAFollowingWrite() throws Exception {
+        CountingWriter target = new CountingWriter();
+        CoalescingWriter writer = new CoalescingWriter(target, 1000, 10);
+        writer.write("first ");
+        writer.write("second");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (target.toString().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("first second", target.toString());
+        assertEquals(1, target.writes);
+    }
+
+    @Test
+    public void flushWritesTheBufferedText() throws Exception {
+        CountingWriter target = new CountingWriter();
+        CoalescingWriter writer = new CoalescingWriter(target, 1000, 60000);
+        writer.write("line 1\n");
+        writer.write("line 2\n");
+        writer.flush();
+        assertEquals("line 1\nline 2\n", target.toString());
+        assertEquals(1, target.writes);
+        writer.flush();
+        assertEquals(1, target.writes);
+    }
+
+    private static class CountingWriter extends StringWriter {
+
+        int writes = 0;
+
+        int flushes = 0;
+
+        @Override
+        public void write(String str) {
+            writes++;
+            super.write(str);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
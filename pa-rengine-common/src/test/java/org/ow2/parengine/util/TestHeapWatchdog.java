@@ -0,0 +1,94 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+/**
+ * Checks the metrics and threshold decisions of HeapWatchdog.
+ *
+ * @author Activeeon Team
+ */
+public class TestHeapWatchdog {
+
+    @Test
+    public void samplesAreRecordedWithoutThreshold() {
+        HeapWatchdog watchdog = new HeapWatchdog("test", true, 0);
+        assertTrue(watchdog.isEnabled());
+        assertFalse(watchdog.record(120));
+        assertFalse(watchdog.record(80));
+        assertEquals(2, watchdog.getSampleCount());
+        assertEquals(80, watchdog.getLastUsed(), 0);
+        assertEquals(120, watchdog.getMaxUsed(), 0);
+    }
+
+    @Test
+    public void thresholdEnablesTheWatchdog() {
+        HeapWatchdog watchdog = new HeapWatchdog("test", false, 100);
+        assertTrue(watchdog.isEnabled());
+        assertFalse(new HeapWatchdog("test", false, 0).isEnabled());
+    }
+
+    @Test
+    public void collectionsAreCountedAboveTheThreshold() {
+        HeapWatchdog watchdog = new HeapWatchdog("test", false, 100);
+        assertFalse(watchdog.record(50));
+        assertTrue(watchdog.record(150));
+        assertFalse("The collection brought the memory below the threshold", watchdog.recordCollection(60));
+        assertTrue(watchdog.record(150));
+        assertTrue(watchdog.recordCollection(140));
+        watchdog.recycled();
+        assertEquals(5, watchdog.getSampleCount());
+        assertEquals(2, watchdog.getCollectionCount());
+        assertEquals(1, watchdog.getRecycleCount());
+    }
+
+    @Test
+    public void ineffectiveRecyclingBacksOff() {
+        HeapWatchdog watchdog = new HeapWatchdog("test", false, 100);
+        assertTrue(watchdog.record(150));
+        assertTrue("The recycling left the memory above the threshold", watchdog.recycled(120));
+        assertEquals(150, watchdog.getLimit(), 0);
+        assertFalse("The memory has not grown enough to recycle again", watchdog.record(140));
+        assertTrue(watchdog.record(160));
+        assertFalse(watchdog.recycled(90));
+        assertEquals(100, watchdog.getLimit(), 0);
+        assertEquals(2, watchdog.getRecycleCount());
+    }
+
+    @Test
+    public void backoffEndsBelowTheThreshold() {
+        HeapWatchdog watchdog = new HeapWatchdog("test", false, 100);
+        watchdog.recycled(120);
+        assertFalse(watchdog.record(80));
+        assertTrue(watchdog.record(110));
+    }
+}
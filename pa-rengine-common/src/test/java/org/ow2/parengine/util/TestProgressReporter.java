@@ -0,0 +1,88 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parengine.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Checks when the progress reported to ProgressReporter is written to the progress file.
+ *
+ * @author Activeeon Team
+ */
+public class TestProgressReporter {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void progressIsCoalescedUntilFlushed() throws Exception {
+        ProgressReporter reporter = newReporter(60000);
+        for (int i = 0; i <= 100; i++) {
+            reporter.report(i);
+        }
+        assertEquals("Only the first report is written within the interval", 1, reporter.getWriteCount());
+        assertEquals(100, reporter.getProgress());
+
+        reporter.flush();
+        assertEquals(2, reporter.getWriteCount());
+        reporter.flush();
+        assertEquals("A written value is not written again", 2, reporter.getWriteCount());
+    }
+
+    @Test
+    public void unchangedProgressIsIgnored() throws Exception {
+        ProgressReporter reporter = newReporter(0);
+        for (int i = 0; i < 1000; i++) {
+            reporter.report(42);
+        }
+        assertEquals(1, reporter.getWriteCount());
+    }
+
+    @Test
+    public void pendingProgressIsWrittenOnceTheIntervalElapsed() throws Exception {
+        ProgressReporter reporter = newReporter(10);
+        reporter.report(10);
+        reporter.report(20);
+        assertEquals(1, reporter.getWriteCount());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reporter.getWriteCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("The last value is written without a following report", 2, reporter.getWriteCount());
+    }
+
+    private ProgressReporter newReporter(long minIntervalMs) throws Exception {
+        File progressFile = tmpFolder.newFile();
+        return new ProgressReporter(progressFile.getAbsolutePath(), minIntervalMs);
+    }
+}
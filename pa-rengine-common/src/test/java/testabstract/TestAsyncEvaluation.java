@@ -0,0 +1,127 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package testabstract;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.BasicConfigurator;
+import org.junit.Assert;
+import org.ow2.proactive.scheduler.common.SchedulerConstants;
+import org.ow2.proactive.scripting.ScriptResult;
+import org.ow2.proactive.scripting.SimpleScript;
+import org.ow2.proactive.scripting.TaskScript;
+
+
+/**
+ * Tests that an asynchronous evaluation started by a task can be collected by a later task of the job, using the
+ * handle propagated in the job variables
+ *
+ * @author Activeeon Team
+ */
+public class TestAsyncEvaluation {
+
+    public void test(String engineName) throws Exception {
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure();
+
+        HashMap<String, Serializable> variables = startAsync(engineName, "Sys.sleep(2); result <- 'async value'");
+        ScriptResult<Serializable> res = execute(engineName,
+                                                 variables,
+                                                 "result <- pa.async.result(variables[['parserve.async.handle']], timeout = 120)");
+
+        Assert.assertNull("Collecting a finished evaluation must not fail", res.getException());
+        Assert.assertEquals("The result of the asynchronous evaluation should be the task result",
+                            "async value",
+                            res.getResult());
+
+        res = execute(engineName, variables, "result <- pa.async.status(variables[['parserve.async.handle']])");
+        Assert.assertEquals("The evaluation should be done once its result was collected", "done", res.getResult());
+    }
+
+    public void testError(String engineName) throws Exception {
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure();
+
+        HashMap<String, Serializable> variables = startAsync(engineName, "stop('async failure')");
+        ScriptResult<Serializable> res = execute(engineName,
+                                                 variables,
+                                                 "result <- pa.async.result(variables[['parserve.async.handle']], timeout = 120)");
+
+        Assert.assertNotNull("Collecting a failed evaluation must fail", res.getException());
+        Assert.assertTrue("The task exception must contain the error of the evaluation",
+                          res.getException().getMessage().contains("async failure"));
+    }
+
+    public void testUnknownHandle(String engineName) throws Exception {
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure();
+
+        long start = System.currentTimeMillis();
+        ScriptResult<Serializable> res = execute(engineName,
+                                                 new HashMap<String, Serializable>(),
+                                                 "result <- pa.async.result('async-unknown', grace = 1)");
+
+        Assert.assertNotNull("Collecting an unknown evaluation must fail", res.getException());
+        Assert.assertTrue("The task exception must report the unknown handle",
+                          res.getException().getMessage().contains("async-unknown"));
+        Assert.assertTrue("An unknown handle must only be waited for during the grace period",
+                          System.currentTimeMillis() - start < 60000);
+    }
+
+    private HashMap<String, Serializable> startAsync(String engineName, String rScript) throws Exception {
+        HashMap<String, Serializable> variables = new HashMap<>();
+        variables.put("parserve.async", "true");
+
+        ScriptResult<Serializable> res = execute(engineName, variables, rScript);
+
+        Assert.assertNull("Starting an asynchronous evaluation must not fail", res.getException());
+        Assert.assertNotNull("The job variables should contain the evaluation handle",
+                             variables.get("parserve.async.handle"));
+        Assert.assertEquals("The task result should be the evaluation handle",
+                            variables.get("parserve.async.handle"),
+                            res.getResult());
+        Assert.assertEquals("The asynchronous mode must not be propagated to the next tasks",
+                            "false",
+                            variables.get("parserve.async"));
+        return variables;
+    }
+
+    private ScriptResult<Serializable> execute(String engineName, HashMap<String, Serializable> variables,
+            String rScript) throws Exception {
+        Map<String, Object> aBindings = Collections.singletonMap(SchedulerConstants.VARIABLES_BINDING_NAME,
+                                                                 (Object) variables);
+        SimpleScript ss = new SimpleScript(rScript, engineName);
+        TaskScript taskScript = new TaskScript(ss);
+        ScriptResult<Serializable> res = taskScript.execute(aBindings, System.out, System.err);
+
+        System.out.println("Script output:");
+        System.out.println(res.getOutput());
+        return res;
+    }
+}
@@ -25,10 +25,14 @@
  */
 package testabstract;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
+import org.ow2.parengine.PAREngine;
+import org.ow2.parengine.data.RSerialized;
 import org.ow2.proactive.scheduler.common.SchedulerConstants;
 import org.ow2.proactive.scheduler.common.job.JobId;
 import org.ow2.proactive.scheduler.common.task.TaskId;
@@ -77,6 +81,59 @@ public class TestResults {
         executeScriptAndCheckResults(engineName, results, resValues, rScript2);
     }
 
+    /**
+     * With lazy results, the results are staged in the local space and read when the script accesses them
+     */
+    public void testLazy(String engineName, File localSpace) throws Exception {
+        System.setProperty(PAREngine.LAZY_RESULTS_PROPERTY, "true");
+        try {
+            TaskResult[] results = new TaskResult[] { new MockedTaskResult(new MockedTaskId("task1"), 1.0),
+                                                      new MockedTaskResult(new MockedTaskId("task2"), "two") };
+            Map<String, Object> aBindings = new HashMap<>();
+            aBindings.put(SchedulerConstants.RESULTS_VARIABLE, results);
+            aBindings.put(SchedulerConstants.DS_SCRATCH_BINDING_NAME, localSpace.getAbsolutePath());
+            SimpleScript ss = new SimpleScript("result <- length(results) == 2 && results[['task1']] == 1 && " +
+                                               "results[[2]] == 'two' && results$task2 == 'two' && " +
+                                               "identical(names(lapply(results, class)), c('task1', 'task2'))",
+                                               engineName);
+            ScriptResult<Serializable> res = new TaskScript(ss).execute(aBindings, System.out, System.err);
+            org.junit.Assert.assertEquals(Boolean.TRUE, res.getResult());
+            org.junit.Assert.assertTrue(new File(localSpace, ".pa-results").isDirectory());
+        } finally {
+            System.clearProperty(PAREngine.LAZY_RESULTS_PROPERTY);
+        }
+    }
+
+    /**
+     * With serialized results, the result of a R task is stored as a RSerialized value and unserialized by the
+     * following R task
+     */
+    public void testSerialized(String engineName) throws Exception {
+        System.setProperty(PAREngine.SERIALIZED_RESULTS_PROPERTY, "true");
+        try {
+            SimpleScript producer = new SimpleScript("result <- list(a = 1:3, b = factor(c('x', 'y', 'x')))",
+                                                     engineName);
+            Serializable produced = new TaskScript(producer).execute(Collections.<String, Object> emptyMap(),
+                                                                     System.out,
+                                                                     System.err)
+                                                            .getResult();
+            org.junit.Assert.assertTrue("Invalid result type of the R script", produced instanceof RSerialized);
+
+            TaskResult[] results = new TaskResult[] { new MockedTaskResult(new MockedTaskId("producer"),
+                                                                           produced) };
+            Map<String, Object> aBindings = Collections.singletonMap(SchedulerConstants.RESULTS_VARIABLE,
+                                                                     (Object) results);
+            SimpleScript consumer = new SimpleScript("result <- is.factor(results[['producer']]$b) && " +
+                                                     "sum(results[['producer']]$a) == 6",
+                                                     engineName);
+            System.clearProperty(PAREngine.SERIALIZED_RESULTS_PROPERTY);
+            ScriptResult<Serializable> res = new TaskScript(consumer).execute(aBindings, System.out, System.err);
+            org.junit.Assert.assertEquals(Boolean.TRUE, res.getResult());
+        } finally {
+            System.clearProperty(PAREngine.SERIALIZED_RESULTS_PROPERTY);
+        }
+    }
+
     private void executeScriptAndCheckResults(String engineName, Object results, double[] resValues, String rScript1)
             throws InvalidScriptException {
         Map<String, Object> aBindings = Collections.singletonMap(SchedulerConstants.RESULTS_VARIABLE, results);
@@ -28,15 +28,21 @@ package org.ow2.parserve;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.script.ScriptContext;
 import javax.script.ScriptException;
 
 import org.ow2.parengine.PARConnection;
+import org.ow2.parengine.PAREngine;
+import org.ow2.parengine.convert.RexpConvert;
 import org.ow2.parserve.util.rsession.Rsession;
 import org.rosuda.REngine.REXP;
 import org.rosuda.REngine.REXPMismatchException;
 import org.rosuda.REngine.REngineException;
+import org.rosuda.REngine.RList;
 
 
 /**
@@ -91,6 +97,47 @@ public class PARServeConnection implements PARConnection {
         }
     }
 
+    @Override
+    public <T> T engineAssignAndEval(Map<String, Object> variables, String expr, ScriptContext ctx) {
+        try {
+            StringBuilder command = new StringBuilder();
+            if (!variables.isEmpty()) {
+                Map<String, RuntimeException> failures = new LinkedHashMap<>();
+                engine.set(PAREngine.PREAMBLE_VARIABLE, RexpConvert.variables2rexp(variables, failures));
+                for (Map.Entry<String, RuntimeException> failure : failures.entrySet()) {
+                    writeExceptionToError(new IllegalArgumentException("Unable to assign variable " +
+                                                                       failure.getKey(), failure.getValue()), ctx);
+                }
+                command.append("list2env(" + PAREngine.PREAMBLE_VARIABLE + ", envir = globalenv()); rm(" +
+                               PAREngine.PREAMBLE_VARIABLE + ")\n");
+            }
+            command.append(expr);
+            return (T) engine.eval(command.toString());
+        } catch (REngineException e) {
+            writeMessageToError(e, ctx);
+        } catch (Exception e) {
+            writeExceptionToError(e, ctx);
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> engineHarvest(List<String> variables, ScriptContext ctx) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        REXP rexp = engineEval(PAREngine.harvestExpression(variables), ctx);
+        if (rexp != null) {
+            try {
+                RList list = rexp.asList();
+                for (int i = 0; i < list.size(); i++) {
+                    values.put(list.keyAt(i), list.at(i));
+                }
+            } catch (REXPMismatchException e) {
+                writeExceptionToError(e, ctx);
+            }
+        }
+        return values;
+    }
+
     @Override
     public <T> T engineCast(Object rvalue, Class<T> type, ScriptContext ctx) {
         try {
@@ -123,6 +170,22 @@ public class PARServeConnection implements PARConnection {
         }
     }
 
+    /**
+     * Streams the session output to the given local socket
+     *
+     * @throws REngineException if R could not connect to the socket
+     */
+    public void initializeOutput(String host, int port) throws REngineException, REXPMismatchException {
+        engine.initializeOutput(host, port);
+    }
+
+    /**
+     * @return true if the session runs on this host
+     */
+    public boolean isLocal() {
+        return engine.getEndpointConf().isLocal();
+    }
+
     @Override
     public void terminateOutput(ScriptContext ctx) {
         if (!serverEval) {
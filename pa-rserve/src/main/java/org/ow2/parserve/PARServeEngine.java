@@ -26,9 +26,20 @@
 package org.ow2.parserve;
 
 import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
@@ -39,19 +50,25 @@ import org.apache.commons.io.input.TailerListenerAdapter;
 import org.apache.log4j.Logger;
 import org.objectweb.proactive.utils.OperatingSystem;
 import org.ow2.parengine.PAREngine;
+import org.ow2.parengine.util.DurationStatistics;
+import org.ow2.parengine.util.HeapWatchdog;
+import org.ow2.parserve.util.rsession.AsyncEvaluation;
+import org.ow2.parserve.util.rsession.RRuntime;
 import org.ow2.parserve.util.rsession.RServeConf;
+import org.ow2.parserve.util.rsession.RServeConnectionFactory;
 import org.ow2.parserve.util.rsession.Rsession;
+import org.ow2.parserve.util.rsession.RsessionPool;
 import org.ow2.parserve.util.rsession.Utils;
 import org.ow2.proactive.scheduler.common.SchedulerConstants;
-import org.ow2.proactive.scheduler.common.task.flow.FlowScript;
-import org.ow2.proactive.scripting.SelectionScript;
 import org.ow2.proactive.scripting.TaskScript;
 import org.ow2.proactive.utils.CookieBasedProcessTreeKiller;
 import org.rosuda.REngine.REXP;
 import org.rosuda.REngine.REXPMismatchException;
 import org.rosuda.REngine.REngineException;
+import org.rosuda.REngine.Rserve.RserveException;
 
 import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 /**
@@ -70,6 +87,16 @@ public class PARServeEngine extends PAREngine {
      */
     public static final String PARSERVE_SERVEREVAL = "parserve.servereval";
 
+    /**
+     * Name of the variable used to start the script as a tracked asynchronous evaluation
+     */
+    public static final String PARSERVE_ASYNC = "parserve.async";
+
+    /**
+     * Name of the variable receiving the handle of the last asynchronous evaluation started by the job
+     */
+    public static final String PARSERVE_ASYNC_HANDLE = "parserve.async.handle";
+
     /**
      * period of tailer update
      */
@@ -80,6 +107,35 @@ public class PARServeEngine extends PAREngine {
      */
     public static final int TAILER_TIMEOUT = 6000;
 
+    /**
+     * time spent, at the end of each task, waiting for the last R output
+     */
+    private static final DurationStatistics outputDrainStatistics = new DurationStatistics("PARServe output drain");
+
+    /**
+     * memory used by the sessions at the end of their task, pooled sessions above the threshold are not reused
+     */
+    private static final HeapWatchdog sessionHeapWatchdog = createHeapWatchdog("PARServe session heap");
+
+    /**
+     * memory used by the Rserve server after server evaluations, the daemon is restarted above the threshold
+     */
+    private static final HeapWatchdog serverHeapWatchdog = createHeapWatchdog("PARServe server heap");
+
+    /**
+     * maximum time waited for the sessions opened on a Rserve server before restarting its daemon
+     */
+    public static final long SERVER_RESTART_DRAIN_TIMEOUT = 60000;
+
+    /**
+     * checks the memory of the Rserve server after server evaluations, outside of the task evaluations
+     */
+    private static final ExecutorService serverHeapChecker = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                                                                                                                        .setNameFormat("PARServe server heap watchdog")
+                                                                                                                        .build());
+
+    private static final AtomicBoolean serverHeapCheckPending = new AtomicBoolean(false);
+
     /**
      * logger
      */
@@ -97,6 +153,11 @@ public class PARServeEngine extends PAREngine {
 
     private static RServeConf rServeConf;
 
+    /**
+     * pool of pre-started Rserve sessions, null if the pool is disabled
+     */
+    private static RsessionPool sessionPool;
+
     /**
      * file storing the output from R
      */
@@ -109,6 +170,32 @@ public class PARServeEngine extends PAREngine {
 
     private PARScriptTailerListener listener;
 
+    /**
+     * Reader of the streamed output, null if the output is read from the outputFile
+     */
+    private PARScriptStreamReader streamReader;
+
+    private Future<?> streamReaderFuture;
+
+    /**
+     * released when the end of the R output has been delivered to the script output, or when the output reader stops
+     */
+    private CountDownLatch outputCompleted;
+
+    private volatile long outputCompletedTime;
+
+    /**
+     * maximum time in milliseconds waited for the end of the R output
+     */
+    long outputTimeout = TAILER_TIMEOUT;
+
+    /**
+     * threads reading streamed outputs, shared by all engines
+     */
+    private static final ExecutorService outputReaders = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+                                                                                                                   .setNameFormat("PARServeEngine output-%d")
+                                                                                                                   .build());
+
     /**
      * Evaluation on RServe server instead of Rserve session
      */
@@ -145,6 +232,7 @@ public class PARServeEngine extends PAREngine {
             if (instance.rServeConf == null) {
                 instance.rServeConf = createConfig();
                 instance.initializePTK();
+                initializeSessionPool();
             }
 
         } catch (Exception ex) {
@@ -161,13 +249,22 @@ public class PARServeEngine extends PAREngine {
      * @return
      * @throws IOException
      */
-    private static RServeConf createConfig() throws IOException {
+    static RServeConf createConfig() throws IOException {
         long timeout = -1;
         boolean debug = false;
         boolean daemon = false;
         String login = null;
         String password = null;
         int rServePort = PARSERVE_RSERVE_PORT;
+        int poolMinSize = 0;
+        int poolMaxSize = 0;
+        long poolIdleTimeout = RServeConf.DEFAULT_POOL_IDLE_TIMEOUT;
+        long connectTimeout = RServeConf.DEFAULT_CONNECT_TIMEOUT;
+        List<String> endpoints = new ArrayList<>();
+        long endpointCooldown = RServeConf.DEFAULT_ENDPOINT_COOLDOWN;
+        int connectThreads = RServeConf.DEFAULT_CONNECT_THREADS;
+        Rsession.SinkFlushMode sinkFlushMode = Rsession.SinkFlushMode.DEFERRED;
+        Rsession.OutputChannel outputChannel = Rsession.OutputChannel.STREAM;
         Properties rServeProperties = null;
         Properties rEnvProperties = null;
         if (rServePropertyFile.exists()) {
@@ -196,18 +293,71 @@ public class PARServeEngine extends PAREngine {
                     password = (String) rServeProperties.remove(key);
                 } else if (key.equals("rserve.timeout")) {
                     timeout = Long.parseLong((String) rServeProperties.remove(key));
+                } else if (key.equals("rserve.endpoints")) {
+                    for (String endpoint : ((String) rServeProperties.remove(key)).split(",")) {
+                        if (!endpoint.trim().isEmpty()) {
+                            endpoints.add(endpoint.trim());
+                        }
+                    }
+                } else if (key.equals("rserve.endpoints.cooldown")) {
+                    endpointCooldown = Long.parseLong((String) rServeProperties.remove(key));
+                } else if (key.equals("rserve.connect.timeout")) {
+                    connectTimeout = Long.parseLong((String) rServeProperties.remove(key));
+                } else if (key.equals("rserve.connect.threads")) {
+                    connectThreads = Integer.parseInt((String) rServeProperties.remove(key));
+                } else if (key.equals("rserve.output")) {
+                    String channel = (String) rServeProperties.remove(key);
+                    outputChannel = "file".equalsIgnoreCase(channel) ? Rsession.OutputChannel.FILE
+                                                                     : Rsession.OutputChannel.STREAM;
+                } else if (key.equals("rserve.sink.flush")) {
+                    String mode = (String) rServeProperties.remove(key);
+                    sinkFlushMode = "eval".equalsIgnoreCase(mode) ? Rsession.SinkFlushMode.EACH_EVAL
+                                                                  : Rsession.SinkFlushMode.DEFERRED;
+                } else if (key.equals("rserve.pool.min")) {
+                    poolMinSize = Integer.parseInt((String) rServeProperties.remove(key));
+                } else if (key.equals("rserve.pool.max")) {
+                    poolMaxSize = Integer.parseInt((String) rServeProperties.remove(key));
+                } else if (key.equals("rserve.pool.idletimeout")) {
+                    poolIdleTimeout = Long.parseLong((String) rServeProperties.remove(key));
                 }
             }
         }
-        return new RServeConf(null,
-                              rServePort,
-                              login,
-                              password,
-                              timeout,
-                              daemon,
-                              debug,
-                              rServeProperties,
-                              rEnvProperties);
+        RServeConf conf = new RServeConf(null,
+                                         rServePort,
+                                         login,
+                                         password,
+                                         timeout,
+                                         daemon,
+                                         debug,
+                                         rServeProperties,
+                                         rEnvProperties);
+        conf.connectTimeout = connectTimeout;
+        conf.endpoints = endpoints;
+        conf.endpointCooldown = endpointCooldown;
+        conf.connectThreads = connectThreads;
+        conf.poolMinSize = poolMinSize;
+        conf.poolMaxSize = poolMaxSize;
+        conf.poolIdleTimeout = poolIdleTimeout;
+        conf.sinkFlushMode = sinkFlushMode;
+        conf.outputChannel = outputChannel;
+        return conf;
+    }
+
+    /**
+     * Starts the pool of Rserve sessions if enabled in the configuration
+     */
+    private static void initializeSessionPool() {
+        if (!rServeConf.isPoolEnabled()) {
+            return;
+        }
+        sessionPool = new RsessionPool(rServeConf);
+        sessionPool.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                sessionPool.close();
+            }
+        });
     }
 
     /**
@@ -269,15 +419,22 @@ public class PARServeEngine extends PAREngine {
         if (jobVariables != null) {
             serverEval = "true".equals(jobVariables.get(PARSERVE_SERVEREVAL));
         }
+        if (jobVariables != null && "true".equals(jobVariables.get(PARSERVE_ASYNC))) {
+            return evalAsync(script, ctx, bindings, jobVariables);
+        }
 
-        Map<String, String> resultMetadata = (Map<String, String>) bindings.get(SchedulerConstants.RESULT_METADATA_VARIABLE);
-        Map<String, Serializable> resultMap = (Map<String, Serializable>) bindings.get(SchedulerConstants.RESULT_MAP_BINDING_NAME);
-
-        engine = new PARServeConnection(Rsession.newInstanceTry("Script", rServeConf), serverEval);
+        // server evaluations are not bound to the session state, they do not need a pooled session
+        boolean pooled = sessionPool != null && !serverEval;
+        Rsession session = pooled ? sessionPool.borrow() : Rsession.newInstanceTry("Script", rServeConf);
+        PARServeConnection connection = new PARServeConnection(session, serverEval);
+        engine = connection;
+        boolean failed = false;
+        boolean recycle = false;
+        RServeConf serverConf = null;
 
         try {
 
-            initializeTailer(bindings, ctx);
+            initializeOutputReader(bindings, ctx, session, connection);
             Object resultValue = null;
 
             if (!serverEval) {
@@ -289,18 +446,11 @@ public class PARServeEngine extends PAREngine {
             // otherwise each step is followed till the end
             REXP rexp = engine.engineEval(script, ctx);
 
-            resultValue = retrieveResultVariable(ctx, bindings, rexp);
-
-            retrieveOtherVariable(SelectionScript.RESULT_VARIABLE, ctx, bindings);
-
-            retrieveOtherVariable(FlowScript.loopVariable, ctx, bindings);
-            retrieveOtherVariable(FlowScript.branchSelectionVariable, ctx, bindings);
-            retrieveOtherVariable(FlowScript.replicateRunsVariable, ctx, bindings);
-
             if (!serverEval) {
-                this.updateJobVariables(jobVariables, ctx);
-                this.updateResultMetadata(resultMetadata, ctx);
-                this.updateResultMap(resultMap, ctx);
+                resultValue = retrieveBindings(rexp, bindings, ctx);
+            } else {
+                resultValue = true; // TaskResult.getResult() returns true by default
+                bindings.put(TaskScript.RESULT_VARIABLE, resultValue);
             }
 
             // server evaluation is for one task only, it must not be propagated
@@ -310,17 +460,40 @@ public class PARServeEngine extends PAREngine {
 
             return resultValue;
         } catch (Exception ex) {
+            failed = true;
             engine.writeExceptionToError(ex, ctx);
             throw new ScriptException(ex.getMessage());
         } finally {
+            long drainStart = System.nanoTime();
             engine.terminateOutput(ctx);
 
             if (!serverEval) {
                 engine.engineEval("setwd('" + Utils.toRpath(System.getProperty("java.io.tmpdir")) + "')", ctx);
+                if (!failed) {
+                    recycle = checkHeap(sessionHeapWatchdog, pooled, ctx);
+                }
+            } else if (!failed) {
+                serverConf = session.getEndpointConf();
+            }
+            if (!pooled) {
+                engine.end();
             }
-            engine.end();
 
-            terminateTailer();
+            terminateOutputReader(drainStart);
+            flushProgress();
+
+            if (pooled) {
+                if (recycle) {
+                    logger.info(sessionHeapWatchdog.getName() + " stays above " + sessionHeapWatchdog.getThreshold() +
+                                "MB after a full garbage collection, the session will not be reused");
+                    sessionHeapWatchdog.recycled();
+                }
+                // a session in which the script failed is not reused
+                sessionPool.release(session, failed || lastErrorMessage != null || recycle);
+            }
+            if (serverConf != null) {
+                scheduleServerHeapCheck(serverConf);
+            }
 
             if (!serverEval) {
                 // PRC-32 A ScriptException() must be thrown if the script calls stop() function
@@ -336,39 +509,244 @@ public class PARServeEngine extends PAREngine {
     }
 
     /**
-     * Retrieve another binding from the engine, such as selection, control flow, etc
+     * Checks the memory used by the Rserve server in the background, a check already waiting covers this one
      */
-    private void retrieveOtherVariable(String variableName, ScriptContext ctx, Bindings bindings) {
-        if (!serverEval) {
-            // in case the SelectionScript result is assigned in the engine, retrieve it
-            REXP ssResultRexp = engine.engineGet(variableName, ctx);
-            if (ssResultRexp != null) {
-                bindings.put(variableName, engine.engineCast(ssResultRexp, null, ctx));
+    private static void scheduleServerHeapCheck(final RServeConf serverConf) {
+        if (!serverHeapWatchdog.isEnabled() || !serverHeapCheckPending.compareAndSet(false, true)) {
+            return;
+        }
+        serverHeapChecker.execute(new Runnable() {
+            @Override
+            public void run() {
+                serverHeapCheckPending.set(false);
+                checkServerHeap(serverConf);
+            }
+        });
+    }
+
+    /**
+     * Samples the memory used by the Rserve server after a server evaluation. When it is above the threshold, the
+     * server runs a full garbage collection, and its daemon is restarted if it stays above the threshold.
+     */
+    private static void checkServerHeap(RServeConf serverConf) {
+        try {
+            double used = RServeConnectionFactory.evalInNewSession(serverConf, HeapWatchdog.SAMPLE_EXPRESSION);
+            if (!serverHeapWatchdog.record(used)) {
+                return;
+            }
+            logger.info(serverHeapWatchdog.getName() + " uses " + used + "MB, running a full garbage collection");
+            RServeConnectionFactory.collectServer(serverConf);
+            used = RServeConnectionFactory.evalInNewSession(serverConf, HeapWatchdog.SAMPLE_EXPRESSION);
+            if (!serverHeapWatchdog.recordCollection(used)) {
+                return;
+            }
+            logger.warn(serverHeapWatchdog.getName() + " stays above " + serverHeapWatchdog.getThreshold() +
+                        "MB after a full garbage collection, restarting the Rserve daemon once its sessions end");
+            Runnable closePooledSessions = new Runnable() {
+                @Override
+                public void run() {
+                    if (sessionPool != null) {
+                        // pooled sessions were forked from the previous server
+                        sessionPool.recycle();
+                    }
+                }
+            };
+            boolean restarted = RServeConnectionFactory.restartDaemon(serverConf,
+                                                                      SERVER_RESTART_DRAIN_TIMEOUT,
+                                                                      closePooledSessions);
+            if (!restarted) {
+                return;
+            }
+            // the memory of the new server becomes the reference, as with a recycled JRI interpreter
+            used = RServeConnectionFactory.evalInNewSession(serverConf, HeapWatchdog.SAMPLE_EXPRESSION);
+            if (serverHeapWatchdog.recycled(used)) {
+                logger.warn(serverHeapWatchdog.getName() + " still uses " + used + "MB after the restart of the " +
+                            "Rserve daemon, it will not be restarted again before it uses more than " +
+                            serverHeapWatchdog.getLimit() + "MB");
+            } else {
+                logger.info("Rserve daemon restarted, " + serverHeapWatchdog.getName() + " uses " + used + "MB");
             }
+        } catch (RserveException | REXPMismatchException | RuntimeException e) {
+            logger.warn("Unable to check the memory used by the Rserve server", e);
         }
     }
 
-    private Object retrieveResultVariable(ScriptContext ctx, Bindings bindings, REXP rexp) {
+    /**
+     * Starts the script as an asynchronous evaluation in a detached session. The task result is the evaluation
+     * handle, which is also stored in the job variables so that later tasks can collect the evaluation result.
+     */
+    private Object evalAsync(String script, ScriptContext ctx, Bindings bindings,
+            Map<String, Serializable> jobVariables) throws ScriptException {
+        // the detached session is never given back, a pooled session cannot be used
+        Rsession session = Rsession.newInstanceTry("Async", rServeConf);
+        engine = new PARServeConnection(session, false);
+        try {
+            prepareExecution(ctx, bindings);
+            engine.checkParsing(script, ctx);
+
+            String handle = AsyncEvaluation.start(session, script);
+            logger.info("Asynchronous evaluation started with handle " + handle);
+            ctx.getWriter().write("Asynchronous evaluation started with handle " + handle + System.lineSeparator());
 
-        Object resultValue = null;
-        // If the 'result' variable is explicitly defined in the global
-        // environment it is considered as the task result instead of the
-        // result exp
-        REXP resultRexp = null;
-        if (!serverEval) {
-            resultRexp = engine.engineGet(TaskScript.RESULT_VARIABLE, ctx);
-            if (resultRexp != null) {
-                resultValue = engine.engineCast(resultRexp, null, ctx);
-            } else {
-                resultValue = engine.engineCast(rexp, null, ctx);
+            bindings.put(TaskScript.RESULT_VARIABLE, handle);
+            jobVariables.put(PARSERVE_ASYNC_HANDLE, handle);
+            // an asynchronous evaluation is for one task only, it must not be propagated
+            jobVariables.put(PARSERVE_ASYNC, "false");
+            return handle;
+        } catch (Exception ex) {
+            engine.writeExceptionToError(ex, ctx);
+            throw new ScriptException(ex.getMessage());
+        } finally {
+            engine.end();
+        }
+    }
+
+    /**
+     * Sessions are configured by the R runtime preloaded in the Rserve parent, the runtime source is sent to the
+     * sessions forked from a parent which was not started by PARServe or runs an older runtime version
+     */
+    @Override
+    protected RuntimeSetup getRuntimeSetup(boolean progress) {
+        return new RuntimeSetup(RRuntime.setupExpression(progress), RRuntime.getSource());
+    }
+
+    /**
+     * Files staged in the local space of the node cannot be read by a remote Rserve endpoint
+     */
+    @Override
+    protected boolean isLocalSpaceShared() {
+        return ((PARServeConnection) engine).isLocal();
+    }
+
+    /**
+     * Initialize the reader of the R output, streamed when possible or read from the output file otherwise
+     */
+    private void initializeOutputReader(Bindings bindings, ScriptContext ctx, Rsession session,
+            PARServeConnection connection) throws ScriptException {
+        if (serverEval) {
+            return;
+        }
+        if (isOutputStreamed(rServeConf, session.getEndpointConf())) {
+            try {
+                // R connects to the reader as soon as the output is initialized
+                startStreamReader(ctx.getWriter(), rServeConf.timeout > 0 ? (int) rServeConf.timeout : TAILER_TIMEOUT);
+                connection.initializeOutput(streamReader.getHost(), streamReader.getPort());
+                return;
+            } catch (Exception e) {
+                logger.warn("Unable to stream the R output, using an output file instead: " + e.getMessage());
+                closeStreamReader();
             }
         }
-        if (resultValue == null) {
-            resultValue = true; // TaskResult.getResult() returns true by default
+        outputCompleted = new CountDownLatch(1);
+        initializeTailer(bindings, ctx);
+    }
+
+    /**
+     * @return true if the output of a session using the given endpoint can be streamed to a local socket, false if
+     *         it must be read from the output file
+     */
+    static boolean isOutputStreamed(RServeConf conf, RServeConf endpointConf) {
+        return conf.outputChannel == Rsession.OutputChannel.STREAM && endpointConf.isLocal();
+    }
+
+    /**
+     * Starts reading the R output streamed to a local socket
+     *
+     * @param writer        receives the R output
+     * @param acceptTimeout time in milliseconds after which the reader stops if R did not connect
+     */
+    PARScriptStreamReader startStreamReader(Writer writer, int acceptTimeout) throws IOException {
+        outputCompleted = new CountDownLatch(1);
+        streamReader = new PARScriptStreamReader(writer, acceptTimeout);
+        streamReaderFuture = outputReaders.submit(streamReader);
+        return streamReader;
+    }
+
+    /**
+     * Waits until the R output has been delivered, then releases the output reader
+     *
+     * @param drainStart time at which the end of the output was requested from R
+     */
+    void terminateOutputReader(long drainStart) {
+        if (serverEval) {
+            return;
+        }
+        boolean completed = false;
+        try {
+            completed = outputCompleted.await(outputTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long drainTime = (completed ? outputCompletedTime : System.nanoTime()) - drainStart;
+        outputDrainStatistics.record(drainTime);
+        if (!completed) {
+            logger.warn("End of the R output not received after " + outputTimeout + "ms");
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("R output drained in " + TimeUnit.NANOSECONDS.toMicros(drainTime) + "us, " +
+                         outputDrainStatistics);
+        }
+        if (streamReader == null) {
+            terminateTailer();
+        } else {
+            closeStreamReader();
+        }
+    }
+
+    /**
+     * Signals that no more R output will be delivered
+     */
+    private void completeOutput(CountDownLatch completion) {
+        if (completion.getCount() > 0) {
+            outputCompletedTime = System.nanoTime();
+            completion.countDown();
         }
-        bindings.put(TaskScript.RESULT_VARIABLE, resultValue);
+    }
+
+    /**
+     * @return statistics of the time spent waiting for the last R output at the end of tasks
+     */
+    public static DurationStatistics getOutputDrainStatistics() {
+        return outputDrainStatistics;
+    }
 
-        return resultValue;
+    /**
+     * @return the memory metrics of the Rserve sessions, sampled at the end of their task
+     */
+    public static HeapWatchdog getSessionHeapWatchdog() {
+        return sessionHeapWatchdog;
+    }
+
+    /**
+     * @return the memory metrics of the Rserve server, sampled after server evaluations
+     */
+    public static HeapWatchdog getServerHeapWatchdog() {
+        return serverHeapWatchdog;
+    }
+
+    private void closeStreamReader() {
+        if (streamReader != null) {
+            streamReader.close();
+            streamReaderFuture.cancel(true);
+            streamReader = null;
+            streamReaderFuture = null;
+        }
+    }
+
+    /**
+     * Writes a line of R output to the script output, after extracting errors and progress
+     *
+     * @return true if the line marks the end of the R output
+     */
+    private boolean handleOutputLine(Writer writer, String line) throws IOException {
+        line = filterErrorsAndProgress(line, true);
+        if (line.contains(Rsession.ROUTPUT_END)) {
+            writer.close();
+            completeOutput(outputCompleted);
+            return true;
+        }
+        writer.append(line + "\n");
+        writer.flush();
+        return false;
     }
 
     /**
@@ -402,12 +780,11 @@ public class PARServeEngine extends PAREngine {
     private void terminateTailer() {
         if (!serverEval) {
             if (tailerThread != null) {
-                try {
-                    tailerThread.join(TAILER_TIMEOUT);
-                } catch (InterruptedException e) {
-
+                // the end of the output has been delivered or the wait timed out, the tailer is not needed anymore
+                if (listener.tailer != null) {
+                    listener.tailer.stop();
                 }
-                if (tailerThread.isAlive()) {
+                if (tailerThread.isAlive() && outputCompleted.getCount() > 0) {
                     tailerThread.interrupt();
                     logger.warn("Tailer thread was interrupted");
                 }
@@ -464,19 +841,80 @@ public class PARServeEngine extends PAREngine {
 
         public void handle(String line) {
             try {
-                line = filterErrorsAndProgress(line, true);
-                if (line.contains(Rsession.ROUTPUT_END)) {
-                    writer.close();
+                if (handleOutputLine(writer, line)) {
                     tailer.stop();
-                    return;
-                } else {
-                    writer.append(line + "\n");
-                    writer.flush();
                 }
-
             } catch (IOException e) {
                 logger.warn(e);
             }
         }
     }
+
+    /**
+     * This class reads the R output streamed to a local socket. R connects to the socket when the output is
+     * initialized, and closes it when the output is terminated.
+     */
+    public class PARScriptStreamReader implements Runnable {
+
+        private final Writer writer;
+
+        private final ServerSocket serverSocket;
+
+        private volatile Socket socket;
+
+        private final CountDownLatch completion;
+
+        private volatile boolean closed = false;
+
+        public PARScriptStreamReader(Writer wr, int acceptTimeout) throws IOException {
+            this.writer = wr;
+            this.completion = outputCompleted;
+            this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            this.serverSocket.setSoTimeout(acceptTimeout);
+        }
+
+        public String getHost() {
+            return serverSocket.getInetAddress().getHostAddress();
+        }
+
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket = serverSocket.accept();
+                // only one session writes to this socket
+                serverSocket.close();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (handleOutputLine(writer, line)) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.warn("Error while reading the R output stream: " + e.getMessage());
+                }
+            } finally {
+                close();
+                // the end marker may not have been read, but nothing else will be
+                completeOutput(completion);
+            }
+        }
+
+        public void close() {
+            closed = true;
+            try {
+                serverSocket.close();
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                logger.debug("Error while closing the R output stream", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPMismatchException;
+import org.rosuda.REngine.REXPString;
+import org.rosuda.REngine.REngineException;
+import org.rosuda.REngine.Rserve.RserveException;
+
+
+/**
+ * Asynchronous evaluation of a script in a detached Rserve session.
+ *
+ * The script is started by the R runtime ({@link RRuntime}) in a session which is detached right away, so that the
+ * task which started it does not wait for its end. Each evaluation is identified by a handle which names a
+ * directory of the Rserve host where the evaluation writes its status, output and result. Any later session of the
+ * same host can follow the evaluation with the handle, in java using the methods of this class or in R using
+ * pa.async.status(handle), pa.async.output(handle) and pa.async.result(handle, timeout = ...).
+ *
+ * @author Activeeon Team
+ */
+public class AsyncEvaluation {
+
+    public static final String STATUS_RUNNING = "running";
+
+    public static final String STATUS_DONE = "done";
+
+    public static final String STATUS_ERROR = "error";
+
+    /**
+     * the handle does not match any evaluation, or the evaluation has not created its directory yet
+     */
+    public static final String STATUS_UNKNOWN = "unknown";
+
+    /**
+     * R variable holding the script in the session before it is detached
+     */
+    static final String SCRIPT_VARIABLE = ".pa.async.script";
+
+    private static final Pattern HANDLE_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private AsyncEvaluation() {
+
+    }
+
+    /**
+     * Starts the script in the given session and detaches from it. The session runtime must be loaded and the
+     * session cannot be used anymore afterwards.
+     *
+     * @param session a connected session
+     * @param script  R script to evaluate
+     * @return the handle of the evaluation
+     */
+    public static String start(Rsession session, String script) throws RserveException {
+        String handle = "async-" + UUID.randomUUID();
+        session.set(SCRIPT_VARIABLE, new REXPString(script));
+        session.detachedEval(".pa.async.run('" + handle + "', " + SCRIPT_VARIABLE + ")");
+        return handle;
+    }
+
+    /**
+     * @return the status of the evaluation, one of the STATUS_ constants
+     */
+    public static String status(Rsession session, String handle) throws REngineException, REXPMismatchException {
+        return session.eval("pa.async.status('" + checkHandle(handle) + "')").asString();
+    }
+
+    /**
+     * @return the output printed so far by the evaluation
+     */
+    public static String output(Rsession session, String handle) throws REngineException, REXPMismatchException {
+        return session.eval("pa.async.output('" + checkHandle(handle) + "')").asString();
+    }
+
+    /**
+     * Reads the result of the evaluation without waiting for its end
+     *
+     * @return the result, or null if the evaluation is still running
+     * @throws REngineException if the evaluation failed
+     */
+    public static REXP result(Rsession session, String handle) throws REngineException, REXPMismatchException {
+        REXP result = session.eval("pa.async.result('" + checkHandle(handle) + "', wait = FALSE)");
+        return result == null || result.isNull() ? null : result;
+    }
+
+    /**
+     * handles are inserted in R expressions, only the characters of the generated handles are accepted
+     */
+    static String checkHandle(String handle) {
+        if (handle == null || !HANDLE_PATTERN.matcher(handle).matches()) {
+            throw new IllegalArgumentException("Invalid asynchronous evaluation handle: " + handle);
+        }
+        return handle;
+    }
+}
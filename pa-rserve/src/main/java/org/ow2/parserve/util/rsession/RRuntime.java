@@ -0,0 +1,123 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+
+/**
+ * R runtime shipped with PARServe (pa-runtime.R), preloaded into the Rserve parent process.
+ *
+ * The runtime defines the functions used to configure a session for a task. Sessions forked from a parent which
+ * did not load the runtime, or which loaded an older version, are detected by the engine and reloaded using
+ * {@link #getSource()}.
+ *
+ * @author Activeeon Team
+ */
+public class RRuntime {
+
+    private static final Logger logger = Logger.getLogger(RRuntime.class);
+
+    static final String RESOURCE = "pa-runtime.R";
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("\\.pa\\.runtime\\.version <- \"([^\"]+)\"");
+
+    private static final String SOURCE = readSource();
+
+    /**
+     * version of the runtime, as declared in the R source
+     */
+    public static final String VERSION = readVersion(SOURCE);
+
+    private RRuntime() {
+
+    }
+
+    /**
+     * @return the R source of the runtime
+     */
+    public static String getSource() {
+        return SOURCE;
+    }
+
+    /**
+     * R expression which configures a session for a task using the runtime, evaluates to TRUE if the expected
+     * runtime version was found in the session and to FALSE otherwise
+     *
+     * @param progress true if the task progress function must be defined
+     */
+    public static String setupExpression(boolean progress) {
+        return "if (exists('.pa.runtime.version') && identical(.pa.runtime.version, '" + VERSION + "')) " +
+               ".pa.setup(progress = " + (progress ? "TRUE" : "FALSE") + ") else FALSE";
+    }
+
+    /**
+     * Writes the runtime to the given directory, the file name contains the runtime version so that Rserve
+     * daemons of different versions can share the directory
+     *
+     * @return the runtime file, or null if it could not be written
+     */
+    public static File extractTo(File directory) {
+        File runtimeFile = new File(directory, "pa-runtime-" + VERSION + ".R");
+        try {
+            if (!runtimeFile.exists() || !SOURCE.equals(FileUtils.readFileToString(runtimeFile, StandardCharsets.UTF_8))) {
+                FileUtils.writeStringToFile(runtimeFile, SOURCE, StandardCharsets.UTF_8);
+            }
+            return runtimeFile;
+        } catch (IOException e) {
+            logger.warn("Unable to write the R runtime to " + runtimeFile + ", it will be loaded in each session", e);
+            return null;
+        }
+    }
+
+    private static String readSource() {
+        try (InputStream in = RRuntime.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("R runtime " + RESOURCE + " not found in the classpath");
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the R runtime " + RESOURCE, e);
+        }
+    }
+
+    static String readVersion(String source) {
+        Matcher matcher = VERSION_PATTERN.matcher(source);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No version declared in the R runtime " + RESOURCE);
+        }
+        return matcher.group(1);
+    }
+}
@@ -30,6 +30,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 
@@ -47,6 +50,14 @@ public class RServeConf {
 
     public final static long DEFAULT_TIMEOUT = 120000;
 
+    public final static long DEFAULT_POOL_IDLE_TIMEOUT = 300000;
+
+    public final static long DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    public final static int DEFAULT_CONNECT_THREADS = 16;
+
+    public final static long DEFAULT_ENDPOINT_COOLDOWN = 30000;
+
     public final static File DEFAULT_CONFIG_FILEPATH = new File(System.getProperty("java.io.tmpdir"), "Rserv.conf");
 
     public String host = DEFAULT_RSERVE_HOST;
@@ -63,10 +74,57 @@ public class RServeConf {
 
     public long timeout = DEFAULT_TIMEOUT;
 
+    /**
+     * Maximum duration of one connection attempt, retries are done until the global timeout is reached
+     */
+    public long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * Number of threads used to establish connections concurrently
+     */
+    public int connectThreads = DEFAULT_CONNECT_THREADS;
+
     public Properties additionalConf = new Properties();
 
     public Properties localRProperties = new Properties();
 
+    /**
+     * Number of idle sessions kept ready by the session pool
+     */
+    public int poolMinSize = 0;
+
+    /**
+     * Maximum number of sessions opened by the session pool, 0 disables the pool
+     */
+    public int poolMaxSize = 0;
+
+    /**
+     * Time after which an idle pooled session above the minimum is closed
+     */
+    public long poolIdleTimeout = DEFAULT_POOL_IDLE_TIMEOUT;
+
+    /**
+     * How the output of sessions is transmitted, streamed output is only possible with a local Rserve
+     */
+    public Rsession.OutputChannel outputChannel = Rsession.OutputChannel.STREAM;
+
+    /**
+     * How the output file is flushed while the output is sinked
+     */
+    public Rsession.SinkFlushMode sinkFlushMode = Rsession.SinkFlushMode.DEFERRED;
+
+    /**
+     * Rserve endpoints ("host:port") sessions are dispatched to, if empty only host and port are used
+     */
+    public List<String> endpoints = new ArrayList<>();
+
+    /**
+     * Time during which an unreachable endpoint is not used
+     */
+    public long endpointCooldown = DEFAULT_ENDPOINT_COOLDOWN;
+
+    private File confFile = DEFAULT_CONFIG_FILEPATH;
+
     public RServeConf(String host, int port, String login, String password, long timeout, boolean daemon, boolean debug,
             Properties additionalConf, Properties localRProperties) {
         this.host = host;
@@ -120,12 +178,18 @@ public class RServeConf {
 
     }
 
+    /**
+     * @return true if the server runs on this host, a host name which cannot be resolved is not local
+     */
     public boolean isLocal() {
+        if (host == null) {
+            return true;
+        }
         try {
-            return host == null || InetAddress.getLocalHost().getHostName() == host ||
-                   InetAddress.getByName(host).isLoopbackAddress();
+            return InetAddress.getByName(host).isLoopbackAddress() ||
+                   host.equals(InetAddress.getLocalHost().getHostName());
         } catch (UnknownHostException e) {
-            throw new IllegalStateException(e);
+            return false;
         }
     }
 
@@ -137,18 +201,75 @@ public class RServeConf {
                          : "") /* + " http_proxy=" + http_proxy + " RLibPath=" + RLibPath */;
     }
 
+    public boolean isPoolEnabled() {
+        return poolMaxSize > 0;
+    }
+
+    /**
+     * @return the configuration of each endpoint sessions are dispatched to, or this configuration alone if no
+     * endpoints are listed
+     */
+    public List<RServeConf> getEndpoints() {
+        if (endpoints == null || endpoints.isEmpty()) {
+            return Collections.singletonList(this);
+        }
+        List<RServeConf> confs = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            confs.add(forEndpoint(endpoint.trim()));
+        }
+        return confs;
+    }
+
+    /**
+     * @return a copy of this configuration targeting the given "host:port" (or "port" for a local daemon) endpoint,
+     * with its own Rserve configuration file
+     */
+    RServeConf forEndpoint(String endpoint) {
+        String endpointHost = endpoint;
+        int endpointPort = port;
+        int separator = endpoint.lastIndexOf(':');
+        if (separator >= 0) {
+            endpointHost = endpoint.substring(0, separator);
+            endpointPort = Integer.parseInt(endpoint.substring(separator + 1));
+        } else if (endpoint.matches("\\d+")) {
+            // a port alone designates a local daemon
+            endpointHost = "";
+            endpointPort = Integer.parseInt(endpoint);
+        }
+        RServeConf conf = new RServeConf(endpointHost.isEmpty() ? null : endpointHost,
+                                         endpointPort,
+                                         login,
+                                         password,
+                                         timeout,
+                                         daemon,
+                                         debug,
+                                         additionalConf,
+                                         localRProperties);
+        conf.connectTimeout = connectTimeout;
+        conf.connectThreads = connectThreads;
+        conf.poolMinSize = poolMinSize;
+        conf.poolMaxSize = poolMaxSize;
+        conf.poolIdleTimeout = poolIdleTimeout;
+        conf.outputChannel = outputChannel;
+        conf.sinkFlushMode = sinkFlushMode;
+        conf.endpointCooldown = endpointCooldown;
+        conf.confFile = new File(DEFAULT_CONFIG_FILEPATH.getParentFile(), "Rserv-" + endpointPort + ".conf");
+        return conf;
+    }
+
     public File getConfFilePath() {
-        return DEFAULT_CONFIG_FILEPATH;
+        return confFile;
     }
 
     public void writeConfToFile() throws IOException {
-        FileWriter fw = new FileWriter(DEFAULT_CONFIG_FILEPATH);
+        FileWriter fw = new FileWriter(confFile);
         if (port > 0) {
             fw.write("port " + port + "\n");
         }
         if (additionalConf != null) {
             for (String key : additionalConf.stringPropertyNames()) {
-                if (!(key.equals("daemon"))) {
+                // the port is written above, it is specific to each endpoint
+                if (!(key.equals("daemon")) && !(key.equals("port"))) {
                     fw.write(key + " " + additionalConf.get(key) + "\n");
                 }
             }
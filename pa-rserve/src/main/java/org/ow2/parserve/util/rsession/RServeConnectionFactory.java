@@ -25,13 +25,44 @@
  */
 package org.ow2.parserve.util.rsession;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.log4j.Logger;
+import org.rosuda.REngine.REXPMismatchException;
 import org.rosuda.REngine.Rserve.RConnection;
 import org.rosuda.REngine.Rserve.RserveException;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 
 /**
- * Handles the connections to RServe and the start of R sessions
+ * Handles the connections to RServe and the start of R sessions.
+ *
+ * Connections are established concurrently by a shared bounded pool of threads. Each attempt has its own deadline
+ * and is abandoned when it expires, failed attempts are retried with a jittered backoff until the configured
+ * timeout is reached. The connection of RConnection cannot be interrupted, see {@link ConnectAttempt} for the
+ * bounds of an attempt. The local RServe daemon is started at most once, threads arriving during its start wait for it.
+ *
+ * When several endpoints are configured, each session is sent to the healthy endpoint with the fewest active
+ * sessions. An endpoint which cannot be reached is left aside for a cooldown period, and the next one is tried.
  *
  * @author Activeeon Team
  */
@@ -39,108 +70,457 @@ public class RServeConnectionFactory {
 
     private static final Logger logger = Logger.getLogger(RServeConnectionFactory.class);
 
-    public static RServeConf conf;
+    /**
+     * initial delay between two connection attempts
+     */
+    public static final long MIN_RETRY_DELAY = 100;
+
+    /**
+     * maximum delay between two connection attempts
+     */
+    public static final long MAX_RETRY_DELAY = 2000;
+
+    public static volatile RServeConf conf;
 
-    static Rdaemon rServeDaemon;
+    private static volatile List<RServeEndpoint> endpoints;
 
-    public RConnection connection;
+    /**
+     * endpoint of each opened connection
+     */
+    private static final Map<RConnection, RServeEndpoint> openedConnections = new ConcurrentHashMap<>();
 
-    public RServeConnectionFactory(RServeConf conf) {
-        this.conf = conf;
+    /**
+     * rotates the first endpoint considered, so that endpoints with the same load are used in turn
+     */
+    private static final AtomicInteger nextEndpoint = new AtomicInteger();
+
+    private static ThreadPoolExecutor connectExecutor;
+
+    private static final Random jitter = new Random();
+
+    private RServeConnectionFactory() {
     }
 
     public synchronized static void initializeOnce(RServeConf conf) {
         if (RServeConnectionFactory.conf == null) {
             RServeConnectionFactory.conf = conf;
         }
-
+        if (endpoints == null) {
+            List<RServeEndpoint> list = new ArrayList<>();
+            for (RServeConf endpointConf : RServeConnectionFactory.conf.getEndpoints()) {
+                list.add(new RServeEndpoint(endpointConf));
+            }
+            endpoints = Collections.unmodifiableList(list);
+            if (list.size() > 1) {
+                logger.info("Rserve sessions dispatched to " + list.size() + " endpoints: " + list);
+            }
+        }
+        if (connectExecutor == null) {
+            int threads = Math.max(1, RServeConnectionFactory.conf.connectThreads);
+            connectExecutor = new ThreadPoolExecutor(threads,
+                                                     threads,
+                                                     60,
+                                                     TimeUnit.SECONDS,
+                                                     new LinkedBlockingQueue<Runnable>(threads * 4),
+                                                     new ThreadFactoryBuilder().setDaemon(true)
+                                                                               .setNameFormat("RServe connect-%d")
+                                                                               .build());
+            connectExecutor.allowCoreThreadTimeOut(true);
+        }
     }
 
     /**
-     * Returns a connection to the RServe engine
+     * Returns a connection to the RServe engine, which must be given back using {@link #release(RConnection)}
      *
-     * @return a RConnection
+     * @return a RConnection, or null if no connection could be established before the configured timeout
      */
-    public synchronized static RConnection connect() {
-
-        final RServeConnectionFactory instance = new RServeConnectionFactory(conf);
+    public static RConnection connect() {
+        RServeConf conf = RServeConnectionFactory.conf;
+        initializeOnce(conf);
+        long deadline = System.currentTimeMillis() + conf.timeout;
 
-        instance.tryToConnect();
-
-        if (instance.connection == null) {
-            startDaemonOnce();
-            instance.tryToConnect();
+        RServeEndpoint endpoint = null;
+        RConnection connection = null;
+        if (endpoints.size() == 1) {
+            endpoint = endpoints.get(0);
+            while (!endpoint.sessionOpened()) {
+                // the daemon is being restarted
+                endpoint.awaitRestart(deadline);
+                if (System.currentTimeMillis() >= deadline || Thread.currentThread().isInterrupted()) {
+                    logger.error("Connection " + conf.toString() + " failed, the Rserve daemon is being restarted");
+                    return null;
+                }
+            }
+            connection = connectOrRelease(endpoint, deadline, deadline, false);
+        } else {
+            long delay = MIN_RETRY_DELAY;
+            while (connection == null && System.currentTimeMillis() < deadline &&
+                   !Thread.currentThread().isInterrupted()) {
+                endpoint = selectEndpoint(endpoints);
+                if (endpoint == null) {
+                    // the only endpoint to try is being restarted
+                    sleep(Math.min(deadline - System.currentTimeMillis(), MIN_RETRY_DELAY));
+                    continue;
+                }
+                if (!endpoint.isHealthy()) {
+                    // all endpoints failed recently, wait before trying the first one to come back
+                    sleep(retryDelay(delay, deadline - System.currentTimeMillis()));
+                    delay = Math.min(MAX_RETRY_DELAY, delay * 2);
+                }
+                long endpointDeadline = Math.min(deadline, System.currentTimeMillis() + conf.connectTimeout);
+                connection = connectOrRelease(endpoint, endpointDeadline, deadline, true);
+            }
         }
 
-        if (instance.connection != null && instance.connection.isConnected()) {
+        if (connection != null) {
+            endpoint.markHealthy();
+            openedConnections.put(connection, endpoint);
             if (conf.localRProperties != null && !conf.localRProperties.isEmpty()) {
+                StringBuilder setenv = new StringBuilder();
                 for (String p : conf.localRProperties.stringPropertyNames()) {
-                    try {
-                        instance.connection.eval("Sys.setenv(" + p + "=" + conf.localRProperties.getProperty(p) + ")");
-                    } catch (RserveException ex) {
-                        ex.printStackTrace();
-                    }
+                    setenv.append(setenv.length() == 0 ? "" : ", ")
+                          .append(p)
+                          .append("=")
+                          .append(conf.localRProperties.getProperty(p));
+                }
+                try {
+                    connection.voidEval("Sys.setenv(" + setenv + ")");
+                } catch (RserveException ex) {
+                    logger.error("Could not set the R environment variables", ex);
                 }
             }
-
-            return instance.connection;
+            return connection;
         } else {
             logger.error("Connection " + conf.toString() + " failed.");
             return null;
         }
+    }
 
+    /**
+     * Gives back a connection obtained from {@link #connect()}, before closing it
+     */
+    public static void release(RConnection connection) {
+        RServeEndpoint endpoint = openedConnections.remove(connection);
+        if (endpoint != null) {
+            endpoint.sessionClosed();
+        }
+    }
+
+    /**
+     * @return the configuration of the endpoint the given connection was opened to, or null if unknown
+     */
+    public static RServeConf getEndpointConf(RConnection connection) {
+        RServeEndpoint endpoint = openedConnections.get(connection);
+        return endpoint != null ? endpoint.getConf() : null;
+    }
+
+    /**
+     * @return the endpoints sessions are dispatched to
+     */
+    public static List<RServeEndpoint> getEndpoints() {
+        return endpoints;
     }
 
     /**
-     * initiate a RServe start if an existing server could not be reached
+     * Opens a connection to the given server without dispatching nor retrying, used to manage a daemon
      */
-    private static void startDaemonOnce() {
-        if (rServeDaemon == null) {
-            logger.info("Trying to spawn " + conf.toString());
-            rServeDaemon = new Rdaemon(conf);
-            String http_proxy = null;
-            if (conf.localRProperties != null && conf.localRProperties.containsKey("http_proxy")) {
-                http_proxy = conf.localRProperties.getProperty("http_proxy");
+    static RConnection connectTo(RServeConf conf) {
+        initializeOnce(conf);
+        return tryToConnect(conf, System.currentTimeMillis() + conf.connectTimeout);
+    }
+
+    /**
+     * Evaluates an expression in a new session of the given endpoint, without dispatching nor retrying. The session
+     * is forked from the Rserve server, the memory it uses is the memory of the server.
+     *
+     * @param endpointConf configuration of the endpoint, as given by {@link #getEndpointConf(RConnection)}
+     * @param expression   R expression giving a number
+     */
+    public static double evalInNewSession(RServeConf endpointConf, String expression)
+            throws RserveException, REXPMismatchException {
+        RConnection connection = connectTo(endpointConf);
+        if (connection == null) {
+            throw new RserveException(null, "Unable to connect to " + endpointConf);
+        }
+        try {
+            return connection.eval(expression).asDouble();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Runs a full garbage collection in the Rserve server of the given endpoint
+     */
+    public static void collectServer(RServeConf endpointConf) throws RserveException {
+        RConnection connection = connectTo(endpointConf);
+        if (connection == null) {
+            throw new RserveException(null, "Unable to connect to " + endpointConf);
+        }
+        try {
+            connection.serverEval("invisible(gc())");
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Restarts the Rserve daemon of the given endpoint once its opened sessions are closed, new sessions wait for
+     * the end of the restart
+     *
+     * @param drainTimeout maximum time in milliseconds waited for the opened sessions to be closed
+     * @param onDrain      run once new sessions are held, to close the sessions kept opened by their owner
+     * @return true if the daemon was restarted and accepts connections again
+     */
+    public static boolean restartDaemon(RServeConf endpointConf, long drainTimeout, Runnable onDrain) {
+        for (RServeEndpoint endpoint : endpoints) {
+            if (endpoint.getConf() == endpointConf) {
+                return endpoint.restartDaemon(drainTimeout, onDrain);
             }
-            rServeDaemon.startDaemon(http_proxy);
         }
+        return false;
     }
 
     /**
-     * Try to connect to the engine, using the current configuration
+     * @return the healthy endpoint with the fewest active sessions, or the first unhealthy endpoint to come back if
+     * none is healthy, or null if all endpoints are being restarted. The returned endpoint counts the session as
+     * active.
      */
-    private void tryToConnect() {
-        Utils.TimeOut t = new Utils.TimeOut() {
+    static RServeEndpoint selectEndpoint(List<RServeEndpoint> endpoints) {
+        int size = endpoints.size();
+        int first = (nextEndpoint.getAndIncrement() & Integer.MAX_VALUE) % size;
+        RServeEndpoint selected = null;
+        for (int i = 0; i < size; i++) {
+            RServeEndpoint endpoint = endpoints.get((first + i) % size);
+            if (endpoint.isHealthy() &&
+                (selected == null || endpoint.getActiveSessions() < selected.getActiveSessions())) {
+                selected = endpoint;
+            }
+        }
+        if (selected == null) {
+            for (RServeEndpoint endpoint : endpoints) {
+                if (selected == null || (selected.isRestarting() && !endpoint.isRestarting()) ||
+                    (selected.isRestarting() == endpoint.isRestarting() &&
+                     endpoint.getUnhealthyUntil() < selected.getUnhealthyUntil())) {
+                    selected = endpoint;
+                }
+            }
+        }
+        return selected.sessionOpened() ? selected : null;
+    }
 
-            protected Object defaultResult() {
-                return -2;
+    /**
+     * Connects to the given endpoint, starting its daemon if it is local and cannot be reached
+     *
+     * @param deadline       time until which the endpoint is tried
+     * @param daemonDeadline time until which the endpoint is tried after starting its daemon
+     */
+    private static RConnection connect(RServeEndpoint endpoint, long deadline, long daemonDeadline) {
+        RServeConf conf = endpoint.getConf();
+        RConnection connection = tryToConnect(conf, deadline);
+        if (connection == null) {
+            if (conf.isLocal()) {
+                endpoint.startDaemonOnce(daemonDeadline);
+                deadline = daemonDeadline;
             }
+            connection = connectWithRetry(conf, deadline);
+        }
+        return connection;
+    }
 
-            protected Object command() {
-                try {
-                    logger.info("Connecting to " + conf);
-                    if (conf.port > 0) {
-                        connection = new RConnection(conf.host, conf.port);
-                    } else {
-                        connection = new RConnection(conf.host);
-                    }
-                    if (connection.needLogin()) {
-                        connection.login(conf.login, conf.password);
-                    }
-                    logger.info("Connected");
-
-                    return 0;
-                } catch (RserveException ex) {
-                    logger.error("Failed to connect: " + ex.getMessage());
-                    return -1;
+    /**
+     * Connects to an endpoint which already counts the session as active. On any failure, the session is no longer
+     * counted by the endpoint.
+     *
+     * @param dispatched true if other endpoints can be tried, the endpoint is then marked unhealthy on failure and
+     *                   connection errors are not thrown
+     * @return a connected RConnection, or null
+     */
+    static RConnection connectOrRelease(RServeEndpoint endpoint, long deadline, long daemonDeadline,
+            boolean dispatched) {
+        RConnection connection = null;
+        boolean connected = false;
+        try {
+            connection = connect(endpoint, deadline, daemonDeadline);
+            connected = connection != null && connection.isConnected();
+            return connected ? connection : null;
+        } catch (RuntimeException e) {
+            if (!dispatched) {
+                throw e;
+            }
+            logger.warn("Unable to connect to " + endpoint.getConf() + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (!connected) {
+                if (connection != null) {
+                    connection.close();
+                }
+                endpoint.sessionClosed();
+                if (dispatched) {
+                    endpoint.markUnhealthy();
                 }
             }
-        };
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
         try {
-            t.execute(conf.timeout);
-        } catch (Exception e) {
-            logger.error("  failed: " + e.getMessage());
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Try to connect until the deadline is reached, waiting a growing and jittered delay between two attempts
+     */
+    static RConnection connectWithRetry(RServeConf conf, long deadline) {
+        long delay = MIN_RETRY_DELAY;
+        while (true) {
+            RConnection connection = tryToConnect(conf, deadline);
+            if (connection != null) {
+                return connection;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            try {
+                Thread.sleep(retryDelay(delay, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            delay = Math.min(MAX_RETRY_DELAY, delay * 2);
         }
     }
 
+    /**
+     * @return the delay waited before the next attempt, between half and one and a half times the current delay and
+     * at most the remaining time
+     */
+    static long retryDelay(long delay, long remaining) {
+        return Math.min(remaining, delay / 2 + (long) (jitter.nextDouble() * delay));
+    }
+
+    /**
+     * Try to connect to the engine once, using the current configuration. The attempt is abandoned if it lasts more
+     * than the configured connection timeout.
+     */
+    static RConnection tryToConnect(RServeConf conf, long deadline) {
+        long attemptTimeout = Math.min(conf.connectTimeout, deadline - System.currentTimeMillis());
+        if (attemptTimeout <= 0) {
+            return null;
+        }
+        ConnectAttempt attempt = new ConnectAttempt(conf, attemptTimeout);
+        Future<RConnection> future;
+        try {
+            future = connectExecutor.submit(attempt);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Too many pending connections to " + conf + ", will retry");
+            return null;
+        }
+        try {
+            return future.get(attemptTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            RConnection late = attempt.abandon();
+            future.cancel(true);
+            if (late != null) {
+                logger.info("Connection to " + conf + " established after the attempt timeout of " + attemptTimeout +
+                            "ms");
+            } else {
+                logger.warn("Connection attempt to " + conf + " timed out after " + attemptTimeout + "ms");
+            }
+            return late;
+        } catch (ExecutionException e) {
+            logger.error("Failed to connect: " + e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            RConnection late = attempt.abandon();
+            future.cancel(true);
+            if (late != null) {
+                late.close();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Checks that the endpoint accepts connections within the given time
+     *
+     * @throws RserveException if the endpoint cannot be reached
+     */
+    static void probe(RServeConf conf, long timeout) throws RserveException {
+        int port = conf.port > 0 ? conf.port : RServeConf.RSERVER_DEFAULT_PORT;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(conf.host), port),
+                           (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout)));
+        } catch (IOException e) {
+            throw new RserveException(null, "Cannot connect to " + conf + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A single connection attempt. When the caller gives up, a connection established afterwards is closed.
+     *
+     * The connection of RConnection cannot be interrupted, the endpoint is first probed with a connect bounded by the
+     * attempt timeout, so that an unreachable endpoint releases the attempt thread in time. The Rserve handshake is
+     * not bounded, a server which accepts connections without answering still holds the thread.
+     */
+    private static class ConnectAttempt implements Callable<RConnection> {
+
+        private final RServeConf conf;
+
+        private final long timeout;
+
+        private RConnection connection;
+
+        private boolean abandoned = false;
+
+        ConnectAttempt(RServeConf conf, long timeout) {
+            this.conf = conf;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public RConnection call() throws RserveException {
+            logger.info("Connecting to " + conf);
+            probe(conf, timeout);
+            RConnection c;
+            if (conf.port > 0) {
+                c = new RConnection(conf.host, conf.port);
+            } else {
+                c = new RConnection(conf.host);
+            }
+            try {
+                if (c.needLogin()) {
+                    c.login(conf.login, conf.password);
+                }
+            } catch (RserveException e) {
+                c.close();
+                throw e;
+            }
+            synchronized (this) {
+                if (abandoned) {
+                    c.close();
+                    return null;
+                }
+                connection = c;
+            }
+            logger.info("Connected");
+            return c;
+        }
+
+        /**
+         * @return the connection if it was established before the caller gave up, null otherwise
+         */
+        synchronized RConnection abandon() {
+            abandoned = true;
+            return connection;
+        }
+    }
 }
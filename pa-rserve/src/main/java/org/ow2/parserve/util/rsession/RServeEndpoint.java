@@ -0,0 +1,254 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.rosuda.REngine.Rserve.RConnection;
+
+
+/**
+ * A Rserve server sessions can be dispatched to, with its number of active sessions and its health.
+ *
+ * An endpoint which could not be reached is considered unhealthy during a cooldown period, after which it is tried
+ * again. A local endpoint starts its own Rserve daemon the first time it cannot be reached.
+ *
+ * @author Activeeon Team
+ */
+public class RServeEndpoint {
+
+    private static final Logger logger = Logger.getLogger(RServeEndpoint.class);
+
+    private final RServeConf conf;
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    private volatile long unhealthyUntil = 0;
+
+    private final AtomicBoolean daemonStartRequested = new AtomicBoolean(false);
+
+    private final CountDownLatch daemonStartDone = new CountDownLatch(1);
+
+    private volatile RuntimeException daemonStartFailure;
+
+    volatile Rdaemon rServeDaemon;
+
+    /**
+     * guards the restart of the daemon, no session is opened while it is restarted
+     */
+    private final Object restartLock = new Object();
+
+    private boolean restarting = false;
+
+    RServeEndpoint(RServeConf conf) {
+        this.conf = conf;
+    }
+
+    public RServeConf getConf() {
+        return conf;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * @return false if the endpoint could not be reached recently, or if its daemon is being restarted
+     */
+    public boolean isHealthy() {
+        return System.currentTimeMillis() >= unhealthyUntil && !isRestarting();
+    }
+
+    public boolean isRestarting() {
+        synchronized (restartLock) {
+            return restarting;
+        }
+    }
+
+    long getUnhealthyUntil() {
+        return unhealthyUntil;
+    }
+
+    /**
+     * Counts a new active session
+     *
+     * @return false if the daemon is being restarted, the session is then not counted
+     */
+    boolean sessionOpened() {
+        synchronized (restartLock) {
+            if (restarting) {
+                return false;
+            }
+            activeSessions.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Waits until the restart of the daemon, if any, is over
+     */
+    void awaitRestart(long deadline) {
+        synchronized (restartLock) {
+            while (restarting) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                try {
+                    restartLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    void markHealthy() {
+        if (unhealthyUntil != 0) {
+            logger.info("Rserve endpoint " + conf + " is available again");
+            unhealthyUntil = 0;
+        }
+    }
+
+    void markUnhealthy() {
+        logger.warn("Rserve endpoint " + conf + " is unreachable, it will not be used during " +
+                    conf.endpointCooldown + "ms");
+        unhealthyUntil = System.currentTimeMillis() + conf.endpointCooldown;
+    }
+
+    /**
+     * @return a daemon serving this endpoint, not started yet
+     */
+    Rdaemon newDaemon() {
+        return new Rdaemon(conf);
+    }
+
+    /**
+     * initiate a RServe start if the endpoint could not be reached, only the first caller starts the daemon,
+     * the others wait until its start is finished
+     */
+    void startDaemonOnce(long deadline) {
+        if (daemonStartRequested.compareAndSet(false, true)) {
+            try {
+                logger.info("Trying to spawn " + conf.toString());
+                rServeDaemon = newDaemon();
+                rServeDaemon.startDaemon(getHttpProxy());
+            } catch (RuntimeException e) {
+                daemonStartFailure = e;
+                throw e;
+            } finally {
+                daemonStartDone.countDown();
+            }
+        } else {
+            try {
+                if (!daemonStartDone.await(Math.max(0, deadline - System.currentTimeMillis()),
+                                           TimeUnit.MILLISECONDS)) {
+                    logger.warn("Timeout while waiting for the start of " + conf);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (daemonStartFailure != null) {
+                throw daemonStartFailure;
+            }
+        }
+    }
+
+    /**
+     * Stops then starts again the daemon started by this endpoint, once the sessions opened on it are closed. No
+     * session is opened during the restart, new sessions wait for its end.
+     *
+     * @param drainTimeout maximum time in milliseconds waited for the opened sessions to be closed
+     * @param onDrain      run once new sessions are held, to close the sessions kept opened by their owner
+     * @return true if the daemon was restarted and accepts connections again
+     */
+    boolean restartDaemon(long drainTimeout, Runnable onDrain) {
+        Rdaemon daemon = rServeDaemon;
+        if (daemon == null) {
+            logger.warn("The Rserve daemon of " + conf + " was not started by PARServe, it cannot be restarted");
+            return false;
+        }
+        synchronized (restartLock) {
+            if (restarting) {
+                return false;
+            }
+            restarting = true;
+        }
+        try {
+            if (onDrain != null) {
+                onDrain.run();
+            }
+            long deadline = System.currentTimeMillis() + drainTimeout;
+            while (activeSessions.get() > 0) {
+                if (System.currentTimeMillis() >= deadline) {
+                    logger.warn("The Rserve daemon of " + conf + " still has " + activeSessions.get() +
+                                " sessions, its restart is postponed");
+                    return false;
+                }
+                Thread.sleep(100);
+            }
+            logger.info("Restarting the Rserve daemon of " + conf);
+            daemon.stopDaemon();
+            daemon.startDaemon(getHttpProxy());
+            RConnection connection = RServeConnectionFactory.connectTo(conf);
+            if (connection == null || !connection.isConnected()) {
+                logger.error("The Rserve daemon of " + conf + " does not accept connections after its restart");
+                return false;
+            }
+            connection.close();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            synchronized (restartLock) {
+                restarting = false;
+                restartLock.notifyAll();
+            }
+        }
+    }
+
+    private String getHttpProxy() {
+        if (conf.localRProperties != null && conf.localRProperties.containsKey("http_proxy")) {
+            return conf.localRProperties.getProperty("http_proxy");
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return conf + "[active=" + getActiveSessions() + (isHealthy() ? "" : ", unhealthy") + "]";
+    }
+}
@@ -27,6 +27,8 @@ package org.ow2.parserve.util.rsession;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.rosuda.REngine.Rserve.RConnection;
@@ -59,6 +61,8 @@ public class Rdaemon {
 
     Process process;
 
+    private boolean shutdownHookAdded = false;
+
     public Rdaemon(RServeConf conf, String R_HOME) {
         this.conf = conf;
         Utils.findR_HOME(R_HOME);
@@ -117,14 +121,19 @@ public class Rdaemon {
             rServeArgs = (conf.port > 0 ? "port = " + conf.port + ", " : "") + "config.file = '" +
                          Utils.toRpath(conf.getConfFilePath()) + "'";
         }
-        File preloadFile = null;
+        // the PARServe runtime is loaded first, so that a user preload file can use or override it
+        List<File> preloadFiles = new ArrayList<>();
+        File runtimeFile = RRuntime.extractTo(APP_DIR);
+        if (runtimeFile != null) {
+            preloadFiles.add(runtimeFile);
+        }
         String confPreload = conf.additionalConf.getProperty("source");
         if (confPreload != null) {
-            preloadFile = new File(confPreload);
+            preloadFiles.add(new File(confPreload));
         }
         boolean started = StartRserve.launchRserve(Utils.getRcommand(),
                                                    /* Rserve_HOME + "\\\\..", */ "--no-save --slave",
-                                                   preloadFile,
+                                                   preloadFiles,
                                                    rServeArgs,
                                                    daemon,
                                                    debug,
@@ -132,12 +141,16 @@ public class Rdaemon {
 
         if (started) {
             logger.info("  ok");
-            Runtime.getRuntime().addShutdownHook(new Thread() {
-                @Override
-                public void run() {
-                    stopDaemon();
-                }
-            });
+            // a restarted daemon keeps the hook of its first start
+            if (!shutdownHookAdded) {
+                shutdownHookAdded = true;
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    @Override
+                    public void run() {
+                        stopDaemon();
+                    }
+                });
+            }
         } else {
             logger.error("  failed");
         }
@@ -152,7 +165,7 @@ public class Rdaemon {
         }
 
         try {
-            RConnection s = RServeConnectionFactory.connect();
+            RConnection s = RServeConnectionFactory.connectTo(conf);
             if (s == null || !s.isConnected()) {
                 logger.info("R daemon already stoped.");
                 return;
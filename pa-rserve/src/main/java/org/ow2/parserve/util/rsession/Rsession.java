@@ -29,10 +29,12 @@ import java.io.File;
 
 import org.apache.log4j.Logger;
 import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPLogical;
 import org.rosuda.REngine.REXPMismatchException;
 import org.rosuda.REngine.REXPString;
 import org.rosuda.REngine.REngineException;
 import org.rosuda.REngine.Rserve.RConnection;
+import org.rosuda.REngine.Rserve.RSession;
 import org.rosuda.REngine.Rserve.RserveException;
 
 
@@ -58,6 +60,8 @@ public class Rsession {
 
     public final static String HEAD_SERVEREVAL = "[server-eval] ";
 
+    public final static String HEAD_DETACHEDEVAL = "[detached-eval] ";
+
     public final static String HEAD_EXCEPTION = "[exception] ";
 
     public final static String HEAD_ERROR = "[error] ";
@@ -66,6 +70,40 @@ public class Rsession {
 
     public final static String IO_HEAD = "[IO] ";
 
+    /**
+     * R expression flushing the output file connection
+     */
+    static final String SINK_FLUSH = "flush(.sink.file.con)";
+
+    /**
+     * Defines how the output of a session is transmitted
+     */
+    public enum OutputChannel {
+        /**
+         * output is written to a file, read by a tailer
+         */
+        FILE,
+        /**
+         * output is written to a local socket
+         */
+        STREAM
+    }
+
+    /**
+     * Defines when the output file is flushed while the output is sinked
+     */
+    public enum SinkFlushMode {
+        /**
+         * a flush request is sent after each evaluation (one more round trip per evaluation)
+         */
+        EACH_EVAL,
+        /**
+         * the flush is prepended to the next evaluation (on the same line, so that the line numbers of R errors are
+         * kept), and done by {@link #terminateOutput()} for the last one
+         */
+        DEFERRED
+    }
+
     private static final Logger logger = Logger.getLogger(Rsession.class);
 
     public static RServeConnectionFactory rserveConnectionFactory;
@@ -90,6 +128,11 @@ public class Rsession {
 
     private boolean sinkActivated = false;
 
+    /**
+     * true if output may have been written to the sink since the last flush
+     */
+    private boolean flushPending = false;
+
     /**
      * create rsession using System as a logger
      */
@@ -100,6 +143,18 @@ public class Rsession {
         begin();
     }
 
+    /**
+     * create a rsession on a connection which is already opened, or on no connection for the sessions which
+     * override the evaluation methods
+     */
+    Rsession(String name, RServeConf conf, RConnection connection) {
+        this.name = name;
+        this.conf = conf;
+        this.connection = connection;
+        this.connected = true;
+        this.status = STATUS_READY;
+    }
+
     /**
      * Build a new Rsession, connects to an existing server or fork a new one.
      *
@@ -110,6 +165,14 @@ public class Rsession {
         return new Rsession(name, conf);
     }
 
+    /**
+     * @return the configuration of the Rserve endpoint this session is connected to
+     */
+    public RServeConf getEndpointConf() {
+        RServeConf endpointConf = connection != null ? RServeConnectionFactory.getEndpointConf(connection) : null;
+        return endpointConf != null ? endpointConf : conf;
+    }
+
     /**
      * @return status of Rsession
      */
@@ -159,6 +222,7 @@ public class Rsession {
         }
 
         logger.info("[" + name + "]" + "Ending local session...");
+        RServeConnectionFactory.release(connection);
         connection.close();
 
         logger.info("[" + name + "]" + "Session teminated.");
@@ -166,6 +230,26 @@ public class Rsession {
         connection = null;
     }
 
+    /**
+     * Checks that the underlying connection is still usable, by sending a trivial expression to the R session
+     *
+     * @return true if the session answered correctly
+     */
+    public boolean isHealthy() {
+        if (connection == null || !connection.isConnected()) {
+            return false;
+        }
+        try {
+            synchronized (connection) {
+                REXP r = connection.parseAndEval("TRUE");
+                return r != null && r.isLogical() && ((REXPLogical) r).isTRUE()[0];
+            }
+        } catch (Exception e) {
+            logger.warn("[" + name + "]" + "Health check failed: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Initialize the output file of this session
      *
@@ -174,9 +258,25 @@ public class Rsession {
      */
     public void initializeOutput(File outputFile) throws REngineException, REXPMismatchException {
         this.outputFile = Utils.toRpath(outputFile);
+        initializeSink("file('" + this.outputFile + "', 'a')");
+    }
+
+    /**
+     * Initialize the output of this session as a stream, R connects to the given socket and writes its output to it
+     *
+     * @param host address of the socket, as seen from the R session
+     * @param port port of the socket
+     * @throws REngineException
+     * @throws REXPMismatchException
+     */
+    public void initializeOutput(String host, int port) throws REngineException, REXPMismatchException {
+        initializeSink("socketConnection('" + host + "', " + port + ", blocking=TRUE, open='w')");
+    }
+
+    private void initializeSink(String connectionExpr) throws REngineException, REXPMismatchException {
         // Warning, in the following expression, when using sink( ... , type=c('output', 'message'))
         // the message/stderr output is not redirected !
-        String expr = ".sink.file.con <- file('" + this.outputFile + "', 'a')\n" +
+        String expr = ".sink.file.con <- " + connectionExpr + "\n" +
                       "sink(.sink.file.con, append=TRUE, type='output')\n" +
                       "sink(.sink.file.con, append=TRUE, type='message')\n";
         eval(expr);
@@ -195,6 +295,7 @@ public class Rsession {
 
         // cat("" + ROUTPUT_END + "\n",file=.sink.file.con)
         sinkActivated = false;
+        flushPending = false;
         eval(expr);
 
     }
@@ -211,8 +312,8 @@ public class Rsession {
         synchronized (connection) {
             set(".tmp.", new REXPString(expression));
             try {
-                REXP r = connection.parseAndEval("try(parse(text=.tmp.), silent=TRUE)");
-                connection.parseAndEval("rm(.tmp.)");
+                REXP r = evalSinked("try(parse(text=.tmp.), silent=TRUE)");
+                evalSinked("rm(.tmp.)");
                 if (r.inherits("try-error"))
                     throw new REngineException(connection, r.asString());
             } catch (REngineException e) {
@@ -236,7 +337,7 @@ public class Rsession {
         logger.info("[" + name + "]" + HEAD_EVAL + expression);
         synchronized (connection) {
             try {
-                REXP r = connection.parseAndEval("try({" + expression + "}, silent=TRUE)");
+                REXP r = evalSinked("try({" + expression + "}, silent=TRUE)");
                 if (r != null && r.inherits("try-error"))
                     throw new REngineException(connection, r.asString());
             } catch (REngineException e) {
@@ -268,10 +369,7 @@ public class Rsession {
 
         try {
             synchronized (connection) {
-                e = connection.parseAndEval(expression);
-            }
-            if (sinkActivated) {
-                connection.parseAndEval("flush(.sink.file.con)");
+                e = evalSinked(expression);
             }
         } catch (REngineException ex) {
             logger.error("[" + name + "]" + HEAD_EXCEPTION + ex.getMessage() + "\n  " + expression);
@@ -284,6 +382,33 @@ public class Rsession {
         return e;
     }
 
+    /**
+     * Evaluates an expression which may write to the sink, all the evaluations of the session go through this method
+     * so that the sinked output stays in order. Assignments do not write to the sink and are sent directly.
+     */
+    private REXP evalSinked(String expression) throws REngineException, REXPMismatchException {
+        REXP e = connection.parseAndEval(withPendingFlush(expression));
+        if (sinkActivated && conf.sinkFlushMode == SinkFlushMode.EACH_EVAL) {
+            connection.parseAndEval(SINK_FLUSH);
+        }
+        return e;
+    }
+
+    /**
+     * In DEFERRED mode, the output of the previous evaluation is flushed before anything else is written to the
+     * sink, which keeps the output in order without an additional request
+     *
+     * @return the expression preceded by the pending flush, on the same line
+     */
+    private String withPendingFlush(String expression) {
+        if (!sinkActivated || conf.sinkFlushMode != SinkFlushMode.DEFERRED) {
+            return expression;
+        }
+        String sent = flushPending ? SINK_FLUSH + "; " + expression : expression;
+        flushPending = true;
+        return sent;
+    }
+
     /**
      * launch R command on RServe server directly (asynchronous).
      *
@@ -309,6 +434,34 @@ public class Rsession {
         }
     }
 
+    /**
+     * launch R command in this session and detach from it, the command keeps running in the Rserve child after
+     * the connection is closed. The session cannot be used anymore once this method returns.
+     *
+     * @param expression R expression to evaluate
+     * @return the detached Rserve session
+     */
+    public RSession detachedEval(String expression) throws RserveException {
+        assert connected : "R environment not initialized.";
+        logger.info("[" + name + "]" + HEAD_DETACHEDEVAL + expression);
+
+        RSession detached;
+        try {
+            synchronized (connection) {
+                detached = connection.voidEvalDetach(withPendingFlush(expression));
+            }
+        } catch (RserveException ex) {
+            logger.error("[" + name + "]" + HEAD_EXCEPTION + ex.getMessage() + "\n  " + expression);
+            throw ex;
+        }
+        // the connection was closed by Rserve when detaching
+        RServeConnectionFactory.release(connection);
+        connection = null;
+        connected = false;
+        sinkActivated = false;
+        return detached;
+    }
+
     /**
      * Set R object in R env.
      *
@@ -0,0 +1,404 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Bounded pool of Rserve sessions.
+ *
+ * Each pooled session is a forked Rserve child which has already gone through the connection, login and
+ * environment bootstrap. Idle sessions are checked before being lent, cleaned when given back and closed when they
+ * stay unused longer than the configured idle timeout (while keeping the configured minimum number of sessions).
+ *
+ * Cleaning a session removes the objects created by the task and the random seed, and restores the options,
+ * environment variables and working directory recorded when the session was opened, and closes the connections
+ * opened by the task. A session in which the task attached or detached packages is closed instead of being reused.
+ *
+ * @author Activeeon Team
+ */
+public class RsessionPool {
+
+    private static final Logger logger = Logger.getLogger(RsessionPool.class);
+
+    /**
+     * period between two eviction and pre-warming rounds
+     */
+    public static final long MAINTENANCE_PERIOD = 10000;
+
+    /**
+     * time waited on the idle queue before checking again the pool state
+     */
+    private static final long IDLE_POLL_PERIOD = 100;
+
+    /**
+     * hidden variable of the session holding the state restored when the session is given back
+     */
+    static final String BASELINE_VARIABLE = ".pa.pool.baseline";
+
+    /**
+     * records the state of a new session, evaluated before listing the inherited objects so that it is kept
+     */
+    static final String BASELINE_EXPRESSION = "assign(\"" + BASELINE_VARIABLE + "\", list(options = options(), " +
+                                              "search = search(), env = unclass(Sys.getenv()), " +
+                                              "connections = as.integer(getAllConnections()), wd = getwd()), " +
+                                              "envir = globalenv()); invisible(NULL)";
+
+    /**
+     * restores the recorded state, its value is 1 if the session can be reused, 0 if its search path changed or
+     * its recorded state was removed
+     */
+    static final String RESTORE_EXPRESSION = "local({ if (!exists(\"" + BASELINE_VARIABLE +
+                                             "\", envir = globalenv(), inherits = FALSE)) return(0L); " +
+                                             ".b <- get(\"" + BASELINE_VARIABLE + "\", envir = globalenv()); " +
+                                             "if (exists(\".Random.seed\", envir = globalenv(), inherits = FALSE)) " +
+                                             "rm(\".Random.seed\", envir = globalenv()); " +
+                                             ".added <- setdiff(names(options()), names(.b$options)); " +
+                                             "options(.b$options); " +
+                                             "if (length(.added) > 0) " +
+                                             "options(setNames(vector(\"list\", length(.added)), .added)); " +
+                                             ".e <- unclass(Sys.getenv()); " +
+                                             ".unset <- setdiff(names(.e), names(.b$env)); " +
+                                             "if (length(.unset) > 0) Sys.unsetenv(.unset); " +
+                                             ".changed <- names(.b$env)[is.na(.e[names(.b$env)]) | " +
+                                             ".e[names(.b$env)] != .b$env]; " +
+                                             "if (length(.changed) > 0) " +
+                                             "do.call(Sys.setenv, as.list(.b$env[.changed])); " +
+                                             "for (.c in setdiff(as.integer(getAllConnections()), .b$connections)) " +
+                                             "try(close(getConnection(.c)), silent = TRUE); " +
+                                             "setwd(.b$wd); " +
+                                             "as.integer(identical(search(), .b$search)) })";
+
+    private final RServeConf conf;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    /**
+     * idle sessions, the most recently released first
+     */
+    private final LinkedBlockingDeque<PooledSession> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * sessions currently lent to a task
+     */
+    private final Map<Rsession, PooledSession> lent = new ConcurrentHashMap<>();
+
+    /**
+     * one permit per session which can be lent
+     */
+    private final Semaphore permits;
+
+    /**
+     * number of opened sessions (idle and lent)
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+
+    /**
+     * incremented when the Rserve server is recycled, sessions forked from a previous server are not reused
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final ScheduledExecutorService maintenance;
+
+    private volatile boolean closed = false;
+
+    public RsessionPool(RServeConf conf) {
+        this.conf = conf;
+        this.maxSize = Math.max(1, conf.poolMaxSize);
+        this.minSize = Math.max(0, Math.min(conf.poolMinSize, maxSize));
+        this.permits = new Semaphore(maxSize, true);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                                                                                                .setNameFormat("RsessionPool maintenance")
+                                                                                                .build());
+    }
+
+    /**
+     * Starts the background maintenance of the pool, the first round opens the minimum number of sessions
+     */
+    public void start() {
+        logger.info("Starting Rserve session pool (min=" + minSize + ", max=" + maxSize + ", idle timeout=" +
+                    conf.poolIdleTimeout + "ms)");
+        maintenance.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    maintain();
+                } catch (Throwable t) {
+                    logger.error("Error during Rserve session pool maintenance", t);
+                }
+            }
+        }, 0, MAINTENANCE_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lends a healthy session, opening a new one if no idle session is available and the pool is not full.
+     * Waits at most the configured Rserve timeout when all sessions are in use.
+     *
+     * @return a connected Rsession which must be given back using {@link #release(Rsession, boolean)}
+     */
+    public Rsession borrow() {
+        if (closed) {
+            throw new IllegalStateException("Rserve session pool is closed");
+        }
+        long deadline = System.currentTimeMillis() + conf.timeout;
+        try {
+            if (!permits.tryAcquire(conf.timeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("No Rserve session available after " + conf.timeout + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a Rserve session", e);
+        }
+        try {
+            while (true) {
+                PooledSession pooled = idle.pollFirst();
+                if (pooled == null && reserve()) {
+                    try {
+                        pooled = open();
+                    } catch (RuntimeException e) {
+                        size.decrementAndGet();
+                        throw e;
+                    }
+                } else if (pooled == null) {
+                    // all sessions are opened, one of them is being checked or evicted
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IllegalStateException("No Rserve session available after " + conf.timeout + "ms");
+                    }
+                    pooled = idle.pollFirst(Math.min(remaining, IDLE_POLL_PERIOD), TimeUnit.MILLISECONDS);
+                    if (pooled == null) {
+                        continue;
+                    }
+                    if (!pooled.session.isHealthy()) {
+                        discard(pooled);
+                        continue;
+                    }
+                } else if (!pooled.session.isHealthy()) {
+                    discard(pooled);
+                    continue;
+                }
+                lent.put(pooled.session, pooled);
+                return pooled.session;
+            }
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a Rserve session", e);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back a session to the pool. Dirty sessions (for example after a task error) are closed, other sessions
+     * are cleaned from the objects and state changes of the task and kept idle.
+     *
+     * @param session a session obtained from {@link #borrow()}
+     * @param dirty   true if the session must not be reused
+     */
+    public void release(Rsession session, boolean dirty) {
+        PooledSession pooled = lent.remove(session);
+        if (pooled == null) {
+            // not a pooled session
+            session.end();
+            return;
+        }
+        try {
+            if (!dirty && !closed && pooled.generation == generation.get()) {
+                try {
+                    session.eval(pooled.resetExpression());
+                    if (session.eval(RESTORE_EXPRESSION).asInteger() == 1) {
+                        pooled.idleSince = System.currentTimeMillis();
+                        idle.offerFirst(pooled);
+                        return;
+                    }
+                    logger.debug("[" + session.name + "]" +
+                                 "The task changed the search path or removed the session state, closing the session");
+                } catch (Exception e) {
+                    logger.warn("[" + session.name + "]" + "Could not clean the session, it will be closed: " +
+                                e.getMessage());
+                }
+            }
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle sessions, lent sessions will be closed when released
+     */
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        PooledSession pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Closes the idle sessions and the lent sessions once released, used when the Rserve server they were forked
+     * from has been recycled
+     */
+    public void recycle() {
+        generation.incrementAndGet();
+        PooledSession pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public int getSize() {
+        return size.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getLentCount() {
+        return lent.size();
+    }
+
+    /**
+     * Closes sessions idle for too long, then opens sessions until the minimum size is reached
+     */
+    void maintain() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledSession> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && size.get() > minSize) {
+            PooledSession pooled = oldestFirst.next();
+            if (now - pooled.idleSince > conf.poolIdleTimeout && idle.removeFirstOccurrence(pooled)) {
+                logger.debug("[" + pooled.session.name + "]" + "Closing idle session");
+                discard(pooled);
+            }
+        }
+        while (!closed && size.get() < minSize && reserve()) {
+            try {
+                idle.offerLast(open());
+            } catch (RuntimeException e) {
+                size.decrementAndGet();
+                logger.warn("Could not pre-warm a Rserve session: " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = size.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Connects a new session to the Rserve server
+     */
+    Rsession newSession(String name) {
+        return Rsession.newInstanceTry(name, conf);
+    }
+
+    private PooledSession open() {
+        Rsession session = newSession("Pooled-" + sessionCounter.incrementAndGet());
+        try {
+            session.eval(BASELINE_EXPRESSION);
+            // objects inherited from the Rserve parent (preloaded sources) are kept when cleaning the session
+            String[] inherited = session.eval("ls(globalenv(), all.names = TRUE)").asStrings();
+            return new PooledSession(session, inherited, generation.get());
+        } catch (Exception e) {
+            session.end();
+            throw new IllegalStateException("Unable to initialize pooled session " + session.name, e);
+        }
+    }
+
+    private void discard(PooledSession pooled) {
+        size.decrementAndGet();
+        try {
+            pooled.session.end();
+        } catch (Exception e) {
+            logger.debug("[" + pooled.session.name + "]" + "Error while closing session: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RsessionPool[size=" + getSize() + ", idle=" + getIdleCount() + ", lent=" + getLentCount() + "]";
+    }
+
+    private static class PooledSession {
+
+        final Rsession session;
+
+        final String[] inherited;
+
+        final int generation;
+
+        volatile long idleSince = System.currentTimeMillis();
+
+        PooledSession(Rsession session, String[] inherited, int generation) {
+            this.session = session;
+            this.inherited = inherited;
+            this.generation = generation;
+        }
+
+        String resetExpression() {
+            StringBuilder keep = new StringBuilder("character(0)");
+            if (inherited != null && inherited.length > 0) {
+                keep = new StringBuilder("c(");
+                for (int i = 0; i < inherited.length; i++) {
+                    keep.append(i > 0 ? ", " : "").append('"').append(inherited[i].replace("\"", "\\\"")).append('"');
+                }
+                keep.append(")");
+            }
+            return "rm(list = setdiff(ls(globalenv(), all.names = TRUE), " + keep +
+                   "), envir = globalenv()); invisible(NULL)";
+        }
+    }
+}
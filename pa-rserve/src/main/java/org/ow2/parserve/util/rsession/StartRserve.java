@@ -27,6 +27,8 @@ package org.ow2.parserve.util.rsession;
 
 import java.io.File;
 import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.objectweb.proactive.utils.OperatingSystem;
@@ -167,7 +169,7 @@ public class StartRserve {
      * shortcut to <code>launchRserve(cmd, "--no-save --slave", "--no-save --slave", false)</code>
      */
     public static boolean launchRserve(String cmd) {
-        return launchRserve(cmd, /* null, */ "--no-save --slave", null, "--no-save --slave", false, false, -1);
+        return launchRserve(cmd, /* null, */ "--no-save --slave", (File) null, "--no-save --slave", false, false, -1);
     }
 
     /**
@@ -180,11 +182,37 @@ public class StartRserve {
      */
     public static boolean launchRserve(String cmd, /* String libloc, */ String rargs, File preloadFile, String rsrvargs,
             boolean daemon, boolean debug, int timeout) {
+        return launchRserve(cmd,
+                            rargs,
+                            preloadFile != null ? Collections.singletonList(preloadFile)
+                                                : Collections.<File> emptyList(),
+                            rsrvargs,
+                            daemon,
+                            debug,
+                            timeout);
+    }
+
+    /**
+     * attempt to start Rserve, after sourcing the given files in the Rserve parent process. Note: parameters are
+     * <b>not</b> quoted, so avoid using any quotes in arguments
+     *
+     * @param cmd          command necessary to start R
+     * @param rargs        arguments are are to be passed to R
+     * @param preloadFiles R files sourced, in order, before starting Rserve
+     * @param rsrvargs     arguments to be passed to Rserve
+     * @return <code>true</code> if Rserve is running or was successfully started, <code>false</code> otherwise.
+     */
+    public static boolean launchRserve(String cmd, String rargs, List<File> preloadFiles, String rsrvargs,
+            boolean daemon, boolean debug, int timeout) {
         logger.info("Waiting for Rserve to start ...");
+        StringBuilder preload = new StringBuilder();
+        for (File preloadFile : preloadFiles) {
+            preload.append("source('").append(Utils.toRpath(preloadFile)).append("');");
+        }
         boolean startRserve;
         if (daemon) {
             startRserve = doInR("library(Rserve);" +
-                                (preloadFile != null ? "source('" + Utils.toRpath(preloadFile) + "');" : "") +
+                                preload +
                                 "Rserve(" + (debug ? "TRUE" : "FALSE") + ",args='" + rsrvargs + "')",
                                 cmd,
                                 rargs,
@@ -193,7 +221,7 @@ public class StartRserve {
                                 null);
         } else {
             startRserve = doInR("library(Rserve);" +
-                                (preloadFile != null ? "source('" + Utils.toRpath(preloadFile) + "');" : "") +
+                                preload +
                                 "run.Rserve(" + rsrvargs + ")", cmd, rargs, false, null, null);
         }
         if (startRserve) {
@@ -418,72 +418,6 @@ public class Utils {
 
     }
 
-    public abstract static class TimeOut {
-
-        private boolean timedOut = false;
-
-        private Object result = null;
-
-        protected TimeOut() {
-        }
-
-        /**
-         * @return the result
-         */
-        public Object getResult() {
-            return result;
-        }
-
-        public synchronized void execute(long timeout) throws TimeOutException {
-            new Thread(new TimeoutThread()).start();
-
-            try {
-                this.wait(timeout);
-            } catch (InterruptedException e) {
-                if (getResult() == null) {
-                    timedOut = true;
-                    result = defaultResult();
-                    throw new TimeOutException("timed out");
-                } else {
-                    return;
-                }
-            }
-
-            if (getResult() != null) {
-                return;
-            } else {
-                timedOut = true;
-                result = defaultResult();
-                throw new TimeOutException("timed out");
-            }
-        }
-
-        protected abstract Object defaultResult();
-
-        protected abstract Object command();
-
-        public class TimeOutException extends Exception {
-
-            public TimeOutException(String why) {
-                super(why);
-            }
-        }
-
-        public class TimeoutThread implements Runnable {
-
-            public void run() {
-                Object res = command();
-                synchronized (TimeOut.this) {
-                    if (timedOut && res != null) {
-                    } else {
-                        result = res;
-                        TimeOut.this.notify();
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * helper class that consumes output of a process. In addition, it filter output of the REG command on Windows to look for InstallPath registry entry which specifies the location of R.
      */
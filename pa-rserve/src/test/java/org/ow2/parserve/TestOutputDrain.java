@@ -0,0 +1,127 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ow2.parengine.util.DurationStatistics;
+import org.ow2.parserve.util.rsession.Rsession;
+
+
+/**
+ * Checks that the end of a task waits for the streamed R output only until its end marker is read, and no longer
+ * than the output timeout when the marker is missing.
+ *
+ * @author Activeeon Team
+ */
+public class TestOutputDrain {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @After
+    public void stopThreads() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void returnsOnceTheEndMarkerIsRead() throws Exception {
+        PARServeEngine engine = new TestOutputStreamReader.TestEngine();
+        StringWriter output = new StringWriter();
+        PARServeEngine.PARScriptStreamReader reader = engine.startStreamReader(output, 5000);
+        DurationStatistics statistics = PARServeEngine.getOutputDrainStatistics();
+        long count = statistics.getCount();
+
+        // the socket stays open, as R keeps it open after the end marker
+        try (Socket socket = new Socket(reader.getHost(), reader.getPort())) {
+            final Writer rOutput = new OutputStreamWriter(socket.getOutputStream());
+            rOutput.write("output\n");
+            rOutput.flush();
+            threads.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Thread.sleep(200);
+                    rOutput.write(Rsession.ROUTPUT_END + "\n");
+                    rOutput.flush();
+                    return null;
+                }
+            });
+
+            long start = System.currentTimeMillis();
+            engine.terminateOutputReader(System.nanoTime());
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue("returned after " + elapsed + "ms", elapsed >= 150 && elapsed < 1000);
+        }
+        assertEquals("output\n", output.toString());
+        assertEquals(count + 1, statistics.getCount());
+    }
+
+    @Test
+    public void returnsAfterTheTimeoutWithoutEndMarker() throws Exception {
+        PARServeEngine engine = new TestOutputStreamReader.TestEngine();
+        engine.outputTimeout = 300;
+        StringWriter output = new StringWriter();
+        PARServeEngine.PARScriptStreamReader reader = engine.startStreamReader(output, 5000);
+        DurationStatistics statistics = PARServeEngine.getOutputDrainStatistics();
+        long count = statistics.getCount();
+        long total = statistics.getTotal(TimeUnit.MILLISECONDS);
+
+        try (Socket socket = new Socket(reader.getHost(), reader.getPort())) {
+            Writer rOutput = new OutputStreamWriter(socket.getOutputStream());
+            rOutput.write("partial output\n");
+            rOutput.flush();
+
+            long start = System.currentTimeMillis();
+            engine.terminateOutputReader(System.nanoTime());
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue("returned after " + elapsed + "ms", elapsed >= 300 && elapsed < PARServeEngine.TAILER_TIMEOUT);
+            // the reader is closed, R sees the end of the stream
+            assertEquals(-1, readClosed(socket));
+        }
+        assertEquals("partial output\n", output.toString());
+        assertEquals(count + 1, statistics.getCount());
+        assertTrue(statistics.getTotal(TimeUnit.MILLISECONDS) - total >= 300);
+    }
+
+    private static int readClosed(Socket socket) throws IOException {
+        socket.setSoTimeout(1000);
+        return socket.getInputStream().read();
+    }
+}
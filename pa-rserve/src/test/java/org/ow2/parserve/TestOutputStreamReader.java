@@ -0,0 +1,156 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.parengine.PAREngine;
+import org.ow2.parserve.util.rsession.RServeConf;
+import org.ow2.parserve.util.rsession.Rsession;
+
+
+/**
+ * Checks the reader of the R output streamed to a local socket, R being replaced by a plain socket client.
+ *
+ * @author Activeeon Team
+ */
+public class TestOutputStreamReader {
+
+    private File propertyFile;
+
+    private File savedPropertyFile;
+
+    @Before
+    public void savePropertyFile() throws IOException {
+        savedPropertyFile = PARServeEngine.rServePropertyFile;
+        propertyFile = File.createTempFile("rserve", ".properties");
+    }
+
+    @After
+    public void restorePropertyFile() {
+        PARServeEngine.rServePropertyFile = savedPropertyFile;
+        propertyFile.delete();
+    }
+
+    @Test
+    public void linesReachTheScriptWriterThroughTheErrorFilter() throws Exception {
+        TestEngine engine = new TestEngine();
+        StringWriter output = new StringWriter();
+        PARServeEngine.PARScriptStreamReader reader = engine.startStreamReader(output, 5000);
+
+        try (Socket socket = new Socket(reader.getHost(), reader.getPort())) {
+            Writer rOutput = new OutputStreamWriter(socket.getOutputStream());
+            rOutput.write("first line\n");
+            rOutput.write(PAREngine.ERROR_TAG_BEGIN + "something failed\n");
+            rOutput.write(PAREngine.ERROR_TAG_END + "\n");
+            rOutput.write("last line\n");
+            rOutput.write(Rsession.ROUTPUT_END + "\n");
+            rOutput.flush();
+            engine.terminateOutputReader(System.nanoTime());
+        }
+
+        assertEquals("first line\nsomething failed\n\nlast line\n", output.toString());
+        assertTrue(engine.getLastErrorMessage(), engine.getLastErrorMessage().contains("something failed"));
+    }
+
+    @Test
+    public void readerStopsWhenRNeverConnects() throws Exception {
+        TestEngine engine = new TestEngine();
+        long start = System.currentTimeMillis();
+        PARServeEngine.PARScriptStreamReader reader = engine.startStreamReader(new StringWriter(), 200);
+
+        engine.terminateOutputReader(System.nanoTime());
+
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("returned after " + elapsed + "ms", elapsed >= 150 && elapsed < PARServeEngine.TAILER_TIMEOUT);
+        try (Socket socket = new Socket(reader.getHost(), reader.getPort())) {
+            fail("the reader socket should be closed after the accept timeout");
+        } catch (ConnectException expected) {
+            // the server socket has been released
+        }
+    }
+
+    @Test
+    public void outputIsStreamedByDefault() throws Exception {
+        PARServeEngine.rServePropertyFile = propertyFile;
+
+        RServeConf conf = PARServeEngine.createConfig();
+
+        assertEquals(Rsession.OutputChannel.STREAM, conf.outputChannel);
+        assertTrue(PARServeEngine.isOutputStreamed(conf, conf));
+    }
+
+    @Test
+    public void outputFileIsUsedWhenConfigured() throws Exception {
+        try (FileWriter writer = new FileWriter(propertyFile)) {
+            writer.write("rserve.output=file\n");
+        }
+        PARServeEngine.rServePropertyFile = propertyFile;
+
+        RServeConf conf = PARServeEngine.createConfig();
+
+        assertEquals(Rsession.OutputChannel.FILE, conf.outputChannel);
+        assertFalse(PARServeEngine.isOutputStreamed(conf, conf));
+    }
+
+    @Test
+    public void outputFileIsUsedForRemoteEndpoints() throws Exception {
+        PARServeEngine.rServePropertyFile = propertyFile;
+        RServeConf conf = PARServeEngine.createConfig();
+        RServeConf remote = new RServeConf("10.255.255.1", 6311, null, null, -1, false, false, null, null);
+
+        assertFalse(PARServeEngine.isOutputStreamed(conf, remote));
+    }
+
+    /**
+     * Engine giving access to the errors extracted from the output
+     */
+    static class TestEngine extends PARServeEngine {
+
+        TestEngine() {
+            super(null);
+        }
+
+        String getLastErrorMessage() {
+            return lastErrorMessage;
+        }
+    }
+}
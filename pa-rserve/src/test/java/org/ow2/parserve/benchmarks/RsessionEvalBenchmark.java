@@ -0,0 +1,99 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.benchmarks;
+
+import java.io.File;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.ow2.parserve.PARServeEngine;
+import org.ow2.parserve.util.rsession.RServeConf;
+import org.ow2.parserve.util.rsession.Rsession;
+
+
+/**
+ * Measures the duration of small evaluations while the session output is sinked to a file, for each
+ * {@link Rsession.SinkFlushMode}.
+ *
+ * Usage: RsessionEvalBenchmark [number of evaluations]
+ *
+ * A local Rserve is started on the PARServe port if none is running.
+ *
+ * @author Activeeon Team
+ */
+public class RsessionEvalBenchmark {
+
+    private static final String EXPRESSION = "exists(\"result\")";
+
+    public static void main(String[] args) throws Exception {
+        BasicConfigurator.configure();
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int nbEvals = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        RServeConf conf = new RServeConf(null,
+                                         PARServeEngine.PARSERVE_RSERVE_PORT,
+                                         null,
+                                         null,
+                                         -1,
+                                         false,
+                                         false,
+                                         null,
+                                         null);
+
+        for (Rsession.SinkFlushMode mode : Rsession.SinkFlushMode.values()) {
+            conf.sinkFlushMode = mode;
+            // warm up
+            run(conf, 100);
+            long duration = run(conf, nbEvals);
+            System.out.println(String.format("%-10s %6d evals in %8.3f s : %8.1f us/eval",
+                                             mode,
+                                             nbEvals,
+                                             duration / 1e9,
+                                             duration / 1e3 / nbEvals));
+        }
+        System.exit(0);
+    }
+
+    private static long run(RServeConf conf, int nbEvals) throws Exception {
+        File output = File.createTempFile("benchmark", ".Rout");
+        Rsession session = Rsession.newInstanceTry("Benchmark", conf);
+        try {
+            session.initializeOutput(output);
+            long start = System.nanoTime();
+            for (int i = 0; i < nbEvals; i++) {
+                session.eval(EXPRESSION);
+            }
+            long duration = System.nanoTime() - start;
+            session.terminateOutput();
+            return duration;
+        } finally {
+            session.end();
+            output.delete();
+        }
+    }
+}
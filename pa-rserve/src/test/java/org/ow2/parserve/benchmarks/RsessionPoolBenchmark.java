@@ -0,0 +1,122 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.benchmarks;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.ow2.parserve.PARServeEngine;
+import org.ow2.parserve.util.rsession.RServeConf;
+import org.ow2.parserve.util.rsession.Rsession;
+import org.ow2.parserve.util.rsession.RsessionPool;
+
+
+/**
+ * Measures the number of short tasks per second executed with a new Rserve session per task, and with sessions
+ * lent by a {@link RsessionPool}.
+ *
+ * Usage: RsessionPoolBenchmark [number of tasks] [pool size]
+ *
+ * A local Rserve is started on the PARServe port if none is running.
+ *
+ * @author Activeeon Team
+ */
+public class RsessionPoolBenchmark {
+
+    private static final String TASK = "x <- sum(runif(100)); Sys.getpid()";
+
+    public static void main(String[] args) throws Exception {
+        BasicConfigurator.configure();
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int nbTasks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        RServeConf conf = new RServeConf(null,
+                                         PARServeEngine.PARSERVE_RSERVE_PORT,
+                                         null,
+                                         null,
+                                         -1,
+                                         false,
+                                         false,
+                                         null,
+                                         null);
+        conf.poolMinSize = poolSize;
+        conf.poolMaxSize = poolSize;
+
+        // warm up the daemon and the JIT
+        runWithoutPool(conf, 10);
+
+        long start = System.nanoTime();
+        runWithoutPool(conf, nbTasks);
+        report("without pool", nbTasks, System.nanoTime() - start);
+
+        RsessionPool pool = new RsessionPool(conf);
+        pool.start();
+        try {
+            runWithPool(pool, 10);
+            start = System.nanoTime();
+            runWithPool(pool, nbTasks);
+            report("with pool (size " + poolSize + ")", nbTasks, System.nanoTime() - start);
+        } finally {
+            pool.close();
+        }
+        System.exit(0);
+    }
+
+    private static void runWithoutPool(RServeConf conf, int nbTasks) throws Exception {
+        for (int i = 0; i < nbTasks; i++) {
+            Rsession session = Rsession.newInstanceTry("Benchmark", conf);
+            try {
+                session.eval(TASK);
+            } finally {
+                session.end();
+            }
+        }
+    }
+
+    private static void runWithPool(RsessionPool pool, int nbTasks) throws Exception {
+        for (int i = 0; i < nbTasks; i++) {
+            Rsession session = pool.borrow();
+            boolean failed = true;
+            try {
+                session.eval(TASK);
+                failed = false;
+            } finally {
+                pool.release(session, failed);
+            }
+        }
+    }
+
+    private static void report(String mode, int nbTasks, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        System.out.println(String.format("%-25s %6d tasks in %8.3f s : %8.1f tasks/s",
+                                         mode,
+                                         nbTasks,
+                                         seconds,
+                                         nbTasks / seconds));
+    }
+}
@@ -25,7 +25,9 @@
  */
 package org.ow2.parserve.tests;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.ow2.parserve.PARServeFactory;
 import org.ow2.proactive.scheduler.common.task.TaskResult;
 
@@ -38,8 +40,22 @@ import org.ow2.proactive.scheduler.common.task.TaskResult;
  * @author Activeeon Team
  */
 public class TestResults extends testabstract.TestResults {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test
     public void test() throws Exception {
         super.test(PARServeFactory.ENGINE_NAME);
     }
+
+    @Test
+    public void testSerialized() throws Exception {
+        super.testSerialized(PARServeFactory.ENGINE_NAME);
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        super.testLazy(PARServeFactory.ENGINE_NAME, tmpFolder.newFolder());
+    }
 }
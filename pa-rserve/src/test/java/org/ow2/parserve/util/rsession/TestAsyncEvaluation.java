@@ -0,0 +1,56 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+/**
+ * Checks the handles of asynchronous evaluations, the evaluations themselves are tested by
+ * {@link org.ow2.parserve.tests.TestAsyncEvaluation}.
+ *
+ * @author Activeeon Team
+ */
+public class TestAsyncEvaluation {
+
+    @Test
+    public void generatedHandlesAreAccepted() {
+        String handle = "async-" + java.util.UUID.randomUUID();
+        assertEquals(handle, AsyncEvaluation.checkHandle(handle));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handlesCannotInjectR() {
+        AsyncEvaluation.checkHandle("x'); unlink('~', recursive = TRUE); ('");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void handlesCannotEscapeTheAsyncDirectory() {
+        AsyncEvaluation.checkHandle("../../etc");
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.rosuda.REngine.Rserve.RConnection;
+
+
+/**
+ * Checks the connection attempts of {@link RServeConnectionFactory} against local sockets, without Rserve.
+ *
+ * @author Activeeon Team
+ */
+public class TestRServeConnections {
+
+    /**
+     * identification sent by a Rserve server when a client connects, without authentication
+     */
+    private static final byte[] RSERVE_ID = ("Rsrv0103QAP1\r\n\r\n" +
+                                             "--------------\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+
+    private ServerSocket server;
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @After
+    public void closeServer() throws IOException {
+        threads.shutdownNow();
+        if (server != null) {
+            server.close();
+        }
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void retryDelaysAreJitteredAndBounded() {
+        for (int i = 0; i < 1000; i++) {
+            long delay = RServeConnectionFactory.retryDelay(400, 10000);
+            assertTrue(delay >= 200 && delay < 600);
+        }
+        assertTrue("The delay does not go past the deadline", RServeConnectionFactory.retryDelay(400, 50) <= 50);
+    }
+
+    @Test
+    public void closedEndpointsAreRetriedUntilTheDeadline() throws Exception {
+        RServeConf conf = newConf(freePort());
+
+        long start = System.currentTimeMillis();
+        assertNull(RServeConnectionFactory.connectWithRetry(conf, start + 800));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("Attempts are retried until the deadline", elapsed >= 750);
+        assertTrue("No attempt is made after the deadline", elapsed < 3000);
+    }
+
+    @Test
+    public void attemptsToUnreachableEndpointsAreBounded() throws Exception {
+        // a non routable address, the connection is never answered (or immediately refused by the network)
+        RServeConf conf = new RServeConf("10.255.255.1", 6311, null, null, -1, false, false, null, null);
+        conf.connectTimeout = 50;
+        RServeConnectionFactory.initializeOnce(conf);
+        // more attempts than the connection threads and their queue can hold
+        int attempts = RServeConf.DEFAULT_CONNECT_THREADS * 6;
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < attempts; i++) {
+            assertNull(RServeConnectionFactory.tryToConnect(conf, System.currentTimeMillis() + 10000));
+        }
+        assertTrue(System.currentTimeMillis() - start < attempts * 500L);
+
+        // the abandoned attempts do not hold the connection threads
+        startServer(0);
+        RConnection connection = RServeConnectionFactory.tryToConnect(newConf(server.getLocalPort()),
+                                                                      System.currentTimeMillis() + 5000);
+        assertNotNull(connection);
+        connection.close();
+    }
+
+    @Test
+    public void connectionsAreEstablishedConcurrently() throws Exception {
+        // each connection is answered after 500ms, sequential connections would take 2 seconds
+        startServer(500);
+        final RServeConf conf = newConf(server.getLocalPort());
+        conf.connectTimeout = 5000;
+        List<Future<RConnection>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            futures.add(threads.submit(new Callable<RConnection>() {
+                @Override
+                public RConnection call() {
+                    return RServeConnectionFactory.tryToConnect(conf, System.currentTimeMillis() + 10000);
+                }
+            }));
+        }
+        for (Future<RConnection> future : futures) {
+            RConnection connection = future.get();
+            assertNotNull(connection);
+            assertTrue(connection.isConnected());
+            connection.close();
+        }
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void daemonIsStartedOnce() throws Exception {
+        final AtomicInteger starts = new AtomicInteger();
+        final RServeEndpoint endpoint = newEndpoint(starts, null);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(threads.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    endpoint.startDaemonOnce(System.currentTimeMillis() + 5000);
+                    return System.currentTimeMillis();
+                }
+            }));
+        }
+        for (Future<Long> future : futures) {
+            assertTrue("The other callers wait for the end of the start",
+                       future.get() >= ((StartCountingDaemon) endpoint.rServeDaemon).startEnd);
+        }
+        assertEquals("Only the first caller starts the daemon", 1, starts.get());
+    }
+
+    @Test
+    public void daemonStartFailureIsSeenByAllCallers() throws Exception {
+        final RuntimeException failure = new IllegalStateException("R not found");
+        final RServeEndpoint endpoint = newEndpoint(new AtomicInteger(), failure);
+        List<Future<RuntimeException>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(threads.submit(new Callable<RuntimeException>() {
+                @Override
+                public RuntimeException call() {
+                    try {
+                        endpoint.startDaemonOnce(System.currentTimeMillis() + 5000);
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }
+            }));
+        }
+        for (Future<RuntimeException> future : futures) {
+            assertSame(failure, future.get());
+        }
+    }
+
+    private RServeEndpoint newEndpoint(final AtomicInteger starts, final RuntimeException failure) {
+        final RServeConf conf = newConf(1);
+        return new RServeEndpoint(conf) {
+            @Override
+            Rdaemon newDaemon() {
+                return new StartCountingDaemon(conf, starts, failure);
+            }
+        };
+    }
+
+    /**
+     * Daemon whose start lasts 300ms
+     */
+    static class StartCountingDaemon extends Rdaemon {
+
+        volatile long startEnd;
+
+        private final AtomicInteger starts;
+
+        private final RuntimeException failure;
+
+        StartCountingDaemon(RServeConf conf, AtomicInteger starts, RuntimeException failure) {
+            super(conf);
+            this.starts = starts;
+            this.failure = failure;
+        }
+
+        @Override
+        public void startDaemon(String http_proxy) {
+            starts.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            startEnd = System.currentTimeMillis();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Starts a server which sends the Rserve identification to each client after the given delay
+     */
+    private void startServer(final long answerDelay) throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        threads.submit(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        accepted.add(socket);
+                        threads.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    Thread.sleep(answerDelay);
+                                    OutputStream out = socket.getOutputStream();
+                                    out.write(RSERVE_ID);
+                                    out.flush();
+                                } catch (IOException | InterruptedException e) {
+                                    // probe connections are closed by the client
+                                }
+                            }
+                        });
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static RServeConf newConf(int port) {
+        RServeConf conf = new RServeConf("127.0.0.1", port, null, null, -1, false, false, null, null);
+        conf.connectTimeout = 300;
+        RServeConnectionFactory.initializeOnce(conf);
+        return conf;
+    }
+}
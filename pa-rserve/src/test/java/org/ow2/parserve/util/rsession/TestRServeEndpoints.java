@@ -0,0 +1,164 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+/**
+ * Checks the parsing of Rserve endpoints and the dispatch of sessions between them, without connecting to Rserve.
+ *
+ * @author Activeeon Team
+ */
+public class TestRServeEndpoints {
+
+    @Test
+    public void endpointsHaveTheirOwnPortAndConfFile() {
+        RServeConf conf = newConf();
+        conf.endpoints = Arrays.asList("localhost:7001", "rbox:7002", "7003");
+
+        List<RServeConf> endpoints = conf.getEndpoints();
+
+        assertEquals(3, endpoints.size());
+        assertEquals("localhost", endpoints.get(0).host);
+        assertEquals(7001, endpoints.get(0).port);
+        assertEquals("rbox", endpoints.get(1).host);
+        assertEquals(7002, endpoints.get(1).port);
+        assertEquals(null, endpoints.get(2).host);
+        assertEquals(7003, endpoints.get(2).port);
+        assertNotEquals(endpoints.get(0).getConfFilePath(), endpoints.get(1).getConfFilePath());
+        assertEquals(conf.timeout, endpoints.get(1).timeout);
+    }
+
+    @Test
+    public void withoutEndpointsTheConfIsUsedAlone() {
+        RServeConf conf = newConf();
+        assertEquals(1, conf.getEndpoints().size());
+        assertSame(conf, conf.getEndpoints().get(0));
+    }
+
+    @Test
+    public void sessionsGoToTheLeastLoadedHealthyEndpoint() {
+        RServeConf conf = newConf();
+        conf.endpoints = Arrays.asList("localhost:7001", "localhost:7002");
+        RServeEndpoint first = new RServeEndpoint(conf.getEndpoints().get(0));
+        RServeEndpoint second = new RServeEndpoint(conf.getEndpoints().get(1));
+        List<RServeEndpoint> endpoints = Arrays.asList(first, second);
+
+        RServeEndpoint a = RServeConnectionFactory.selectEndpoint(endpoints);
+        RServeEndpoint b = RServeConnectionFactory.selectEndpoint(endpoints);
+        assertNotEquals(a, b);
+        assertEquals(1, first.getActiveSessions());
+        assertEquals(1, second.getActiveSessions());
+
+        first.markUnhealthy();
+        assertSame(second, RServeConnectionFactory.selectEndpoint(endpoints));
+        assertSame(second, RServeConnectionFactory.selectEndpoint(endpoints));
+
+        second.markUnhealthy();
+        // no healthy endpoint, the first one to come back is used
+        assertSame(first, RServeConnectionFactory.selectEndpoint(endpoints));
+
+        first.markHealthy();
+        second.sessionClosed();
+        second.sessionClosed();
+        second.sessionClosed();
+        assertSame(first, RServeConnectionFactory.selectEndpoint(endpoints));
+    }
+
+    @Test
+    public void unresolvedHostsAreNotLocal() {
+        assertTrue(newConf().isLocal());
+        assertFalse(new RServeConf("no-such-host.invalid", 6412, null, null, -1, false, false, null, null).isLocal());
+    }
+
+    @Test
+    public void failedConnectionsAreNotCounted() {
+        RServeConf conf = newConf();
+        conf.endpoints = Arrays.asList("no-such-host.invalid:7001", "localhost:7002");
+        RServeConnectionFactory.initializeOnce(conf);
+        RServeEndpoint unreachable = new RServeEndpoint(conf.getEndpoints().get(0));
+
+        unreachable.sessionOpened();
+        long deadline = System.currentTimeMillis() + 300;
+        assertNull(RServeConnectionFactory.connectOrRelease(unreachable, deadline, deadline, true));
+        assertEquals(0, unreachable.getActiveSessions());
+        assertFalse(unreachable.isHealthy());
+    }
+
+    @Test
+    public void daemonRestartWaitsForTheOpenedSessions() {
+        RServeConf conf = new RServeConf(null, 1, null, null, -1, false, false, null, null);
+        RServeConnectionFactory.initializeOnce(conf);
+        final RServeEndpoint endpoint = new RServeEndpoint(conf);
+        final List<String> calls = new ArrayList<>();
+        endpoint.rServeDaemon = new Rdaemon(conf) {
+            @Override
+            public void startDaemon(String http_proxy) {
+                calls.add("start");
+            }
+
+            @Override
+            public void stopDaemon() {
+                calls.add("stop");
+            }
+        };
+        Runnable checkSessionsAreHeld = new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(endpoint.isRestarting());
+                assertFalse("No session is opened during the restart", endpoint.sessionOpened());
+            }
+        };
+
+        assertTrue(endpoint.sessionOpened());
+        assertFalse(endpoint.restartDaemon(200, checkSessionsAreHeld));
+        assertTrue("The restart is postponed while a session is opened", calls.isEmpty());
+        assertEquals(1, endpoint.getActiveSessions());
+
+        endpoint.sessionClosed();
+        // nothing listens on the port after the restart, it is not counted as a restart
+        assertFalse(endpoint.restartDaemon(200, checkSessionsAreHeld));
+        assertEquals(Arrays.asList("stop", "start"), calls);
+        assertFalse(endpoint.isRestarting());
+        assertTrue(endpoint.sessionOpened());
+    }
+
+    private RServeConf newConf() {
+        return new RServeConf(null, 6412, null, null, -1, false, false, null, null);
+    }
+}
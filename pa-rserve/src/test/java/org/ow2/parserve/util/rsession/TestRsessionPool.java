@@ -0,0 +1,297 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.rosuda.REngine.REXP;
+import org.rosuda.REngine.REXPInteger;
+import org.rosuda.REngine.REXPString;
+
+
+/**
+ * Checks the lending, cleaning and eviction of pooled sessions, using stubbed sessions which need no Rserve. The
+ * restoration of the session state by R is checked by {@link TestRsessionRestore}.
+ *
+ * @author Activeeon Team
+ */
+public class TestRsessionPool {
+
+    private final List<StubSession> opened = new ArrayList<>();
+
+    private RsessionPool pool;
+
+    @After
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void borrowTimesOutWhenAllSessionsAreLent() {
+        pool = newPool(0, 1, 300);
+        Rsession session = pool.borrow();
+
+        long start = System.currentTimeMillis();
+        try {
+            pool.borrow();
+            fail("No session can be lent above the maximum size");
+        } catch (IllegalStateException e) {
+            assertTrue(System.currentTimeMillis() - start >= 250);
+        }
+        assertEquals(1, pool.getSize());
+
+        pool.release(session, false);
+        assertSame("The released session is lent again", session, pool.borrow());
+    }
+
+    @Test
+    public void borrowWaitsForAReleasedSession() throws Exception {
+        pool = newPool(0, 1, 10000);
+        final Rsession session = pool.borrow();
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pool.release(session, false);
+            }
+        });
+        releaser.start();
+
+        assertSame(session, pool.borrow());
+        releaser.join();
+    }
+
+    @Test
+    public void dirtySessionsAreDiscarded() {
+        pool = newPool(0, 2, 1000);
+        StubSession session = (StubSession) pool.borrow();
+
+        pool.release(session, true);
+
+        assertTrue(session.ended);
+        assertFalse("A dirty session is not cleaned", session.evaluated.contains(RsessionPool.RESTORE_EXPRESSION));
+        assertEquals(0, pool.getSize());
+        assertEquals(0, pool.getIdleCount());
+        assertNotSame(session, pool.borrow());
+    }
+
+    @Test
+    public void cleanSessionsAreRestoredAndKept() {
+        pool = newPool(0, 2, 1000);
+        StubSession session = (StubSession) pool.borrow();
+
+        pool.release(session, false);
+
+        assertFalse(session.ended);
+        assertTrue(session.evaluated.contains(RsessionPool.RESTORE_EXPRESSION));
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getLentCount());
+    }
+
+    @Test
+    public void sessionsWithAChangedSearchPathAreDiscarded() {
+        pool = newPool(0, 2, 1000);
+        StubSession session = (StubSession) pool.borrow();
+        // the restore expression returns 0 when search() changed
+        session.restoreResult = 0;
+
+        pool.release(session, false);
+
+        assertTrue(session.ended);
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void sessionsWhichCannotBeCleanedAreDiscarded() {
+        pool = newPool(0, 2, 1000);
+        StubSession session = (StubSession) pool.borrow();
+        session.failing = true;
+
+        pool.release(session, false);
+
+        assertTrue(session.ended);
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void deadSessionsAreNotLent() {
+        pool = newPool(0, 2, 1000);
+        StubSession session = (StubSession) pool.borrow();
+        pool.release(session, false);
+        session.healthy = false;
+
+        Rsession other = pool.borrow();
+
+        assertNotSame(session, other);
+        assertTrue(session.ended);
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void idleSessionsAreEvictedDownToTheMinimum() throws Exception {
+        pool = newPool(1, 3, 1000);
+        pool.getConf().poolIdleTimeout = 0;
+        List<Rsession> sessions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sessions.add(pool.borrow());
+        }
+        for (Rsession session : sessions) {
+            pool.release(session, false);
+        }
+        assertEquals(3, pool.getIdleCount());
+        Thread.sleep(10);
+
+        pool.maintain();
+
+        assertEquals(1, pool.getSize());
+        assertEquals(1, pool.getIdleCount());
+        int ended = 0;
+        for (StubSession session : opened) {
+            ended += session.ended ? 1 : 0;
+        }
+        assertEquals(2, ended);
+    }
+
+    @Test
+    public void maintenanceOpensTheMinimumNumberOfSessions() {
+        pool = newPool(2, 3, 1000);
+
+        pool.maintain();
+
+        assertEquals(2, pool.getSize());
+        assertEquals(2, pool.getIdleCount());
+        assertTrue(opened.get(0).evaluated.contains(RsessionPool.BASELINE_EXPRESSION));
+    }
+
+    @Test
+    public void recycledSessionsAreNotReused() {
+        pool = newPool(0, 2, 1000);
+        StubSession idleSession = (StubSession) pool.borrow();
+        StubSession lentSession = (StubSession) pool.borrow();
+        pool.release(idleSession, false);
+
+        pool.recycle();
+
+        assertTrue("Idle sessions of the previous server are closed", idleSession.ended);
+        pool.release(lentSession, false);
+        assertTrue("Lent sessions of the previous server are closed when released", lentSession.ended);
+        assertFalse(lentSession.evaluated.contains(RsessionPool.RESTORE_EXPRESSION));
+        assertEquals(0, pool.getSize());
+
+        Rsession session = pool.borrow();
+        assertNotSame(idleSession, session);
+        assertNotSame(lentSession, session);
+    }
+
+    private TestPool newPool(int min, int max, long timeout) {
+        RServeConf conf = new RServeConf(null, 6412, null, null, timeout, false, false, null, null);
+        conf.poolMinSize = min;
+        conf.poolMaxSize = max;
+        return new TestPool(conf);
+    }
+
+    private class TestPool extends RsessionPool {
+
+        private final RServeConf conf;
+
+        TestPool(RServeConf conf) {
+            super(conf);
+            this.conf = conf;
+        }
+
+        RServeConf getConf() {
+            return conf;
+        }
+
+        @Override
+        Rsession newSession(String name) {
+            StubSession session = new StubSession(name, conf);
+            opened.add(session);
+            return session;
+        }
+    }
+
+    /**
+     * Session answering the expressions sent by the pool without Rserve
+     */
+    static class StubSession extends Rsession {
+
+        final List<String> evaluated = new ArrayList<>();
+
+        volatile boolean healthy = true;
+
+        volatile boolean failing = false;
+
+        volatile int restoreResult = 1;
+
+        volatile boolean ended = false;
+
+        StubSession(String name, RServeConf conf) {
+            super(name, conf, null);
+        }
+
+        @Override
+        public synchronized REXP eval(String expression) {
+            if (failing) {
+                throw new IllegalStateException("Session " + name + " failed");
+            }
+            evaluated.add(expression);
+            if (expression.equals(RsessionPool.RESTORE_EXPRESSION)) {
+                return new REXPInteger(restoreResult);
+            }
+            if (expression.startsWith("ls(")) {
+                return new REXPString(new String[] { RsessionPool.BASELINE_VARIABLE });
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return healthy && !ended;
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import java.io.Serializable;
+
+import org.apache.log4j.BasicConfigurator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.parserve.PARServeFactory;
+import org.ow2.proactive.scripting.ScriptResult;
+import org.ow2.proactive.scripting.SimpleScript;
+import org.ow2.proactive.scripting.TaskScript;
+
+
+/**
+ * Checks in R that the state recorded when a pooled session is opened is restored when the session is given back.
+ *
+ * @author Activeeon Team
+ */
+public class TestRsessionRestore {
+
+    @Test
+    public void sessionStateIsRestored() throws Exception {
+        String rScript = RsessionPool.BASELINE_EXPRESSION + "\n" +
+                         "old.wd <- getwd(); old.connections <- length(getAllConnections())\n" +
+                         "options(pa.test.option = 1, digits = 3)\n" +
+                         "Sys.setenv(PA_TEST_ADDED = 'added', HOME = 'changed')\n" +
+                         "setwd(tempdir())\n" + "con <- file(tempfile(), 'w')\n" +
+                         ".restored <- " + RsessionPool.RESTORE_EXPRESSION + "\n" +
+                         "checks <- c(restored = identical(.restored, 1L), " +
+                         "option = is.null(getOption('pa.test.option')), " +
+                         "digits = identical(getOption('digits'), .pa.pool.baseline$options$digits), " +
+                         "added = Sys.getenv('PA_TEST_ADDED') == '', " +
+                         "changed = Sys.getenv('HOME') == .pa.pool.baseline$env[['HOME']], " +
+                         "wd = identical(getwd(), old.wd), " +
+                         "connections = length(getAllConnections()) == old.connections)\n" +
+                         "result <- paste(names(checks)[!checks], collapse = ',')";
+
+        Assert.assertEquals("All the session state changes should be restored", "", execute(rScript));
+    }
+
+    @Test
+    public void changedSearchPathIsReported() throws Exception {
+        String rScript = RsessionPool.BASELINE_EXPRESSION + "\n" +
+                         "attach(list(x = 1), name = 'pa.test.attached')\n" +
+                         ".restored <- " + RsessionPool.RESTORE_EXPRESSION + "\n" +
+                         "detach('pa.test.attached', character.only = TRUE)\n" +
+                         "result <- .restored";
+
+        Assert.assertEquals("A session whose search path changed must not be reused", 0, execute(rScript));
+    }
+
+    private Serializable execute(String rScript) throws Exception {
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure();
+
+        SimpleScript ss = new SimpleScript(rScript, PARServeFactory.ENGINE_NAME);
+        TaskScript taskScript = new TaskScript(ss);
+        ScriptResult<Serializable> res = taskScript.execute();
+
+        System.out.println("Script output:");
+        System.out.println(res.getOutput());
+
+        Assert.assertNull("The script must not fail", res.getException());
+        return res.getResult();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.parserve.util.rsession;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.parserve.PARServeEngine;
+import org.rosuda.REngine.REXPString;
+
+
+/**
+ * Checks that the output sinked to the output file keeps its order across the different kinds of session calls,
+ * with the flush prepended to the next evaluation or sent after each evaluation.
+ *
+ * @author Activeeon Team
+ */
+public class TestSinkedOutput {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private Rsession session;
+
+    @After
+    public void endSession() {
+        if (session != null) {
+            session.end();
+        }
+    }
+
+    @Test
+    public void deferredFlushKeepsTheOutputOrder() throws Exception {
+        assertEquals(expectedOutput(), sinkMixedCalls(Rsession.SinkFlushMode.DEFERRED));
+    }
+
+    @Test
+    public void flushAfterEachEvalKeepsTheOutputOrder() throws Exception {
+        assertEquals(expectedOutput(), sinkMixedCalls(Rsession.SinkFlushMode.EACH_EVAL));
+    }
+
+    private List<String> sinkMixedCalls(Rsession.SinkFlushMode mode) throws Exception {
+        RServeConf conf = new RServeConf(null,
+                                         PARServeEngine.PARSERVE_RSERVE_PORT,
+                                         null,
+                                         null,
+                                         -1,
+                                         false,
+                                         false,
+                                         null,
+                                         null);
+        conf.sinkFlushMode = mode;
+        session = Rsession.newInstanceTry("SinkedOutput", conf);
+        File outputFile = tmpFolder.newFile();
+
+        session.initializeOutput(outputFile);
+        session.eval("cat('1\\n')");
+        session.set("x", new REXPString("2"));
+        session.eval("cat(x, '\\n', sep = '')");
+        session.checkParsing("cat('not evaluated\\n')");
+        session.voidEvalWithTry("cat('3\\n')");
+        session.set("y", new REXPString("4"));
+        session.eval("message(y)\ncat('5\\n')");
+        session.terminateOutput();
+
+        return FileUtils.readLines(outputFile, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> expectedOutput() {
+        return Arrays.asList("1", "2", "3", "4", "5", "[1] \"" + Rsession.ROUTPUT_END + "\"");
+    }
+}